@@ -0,0 +1,152 @@
+package place;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock-free histogram of latencies in nanoseconds.  Values are
+ * grouped into buckets whose width doubles with every power of two, split
+ * into {@value #SUB_BUCKETS} linear sub-buckets, so any recorded value is
+ * reported within about 6% of its true value no matter how large it is.
+ *
+ * Recording is a couple of atomic increments and never allocates, so it can
+ * be called from any number of threads on hot paths.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class LatencyHistogram {
+    /** log2 of the number of sub-buckets in each power of two */
+    private static final int SUB_BITS = 4;
+    /** the number of sub-buckets in each power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** enough buckets for any non-negative long */
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /** the count of values in each bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** the number of values recorded */
+    private final AtomicLong total = new AtomicLong();
+    /** the sum of values recorded */
+    private final AtomicLong sum = new AtomicLong();
+    /** the largest value recorded */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a value.
+     *
+     * @param nanos the latency in nanoseconds; negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        this.counts.incrementAndGet(bucket(value));
+        this.total.incrementAndGet();
+        this.sum.addAndGet(value);
+        long largest;
+        while (value > (largest = this.max.get()) && !this.max.compareAndSet(largest, value)) {
+            // another thread raised the max, try again
+        }
+    }
+
+    /**
+     * Get the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() { return this.total.get(); }
+
+    /**
+     * Get the largest value recorded.
+     *
+     * @return the max, in nanoseconds
+     */
+    public long getMax() { return this.max.get(); }
+
+    /**
+     * Get the mean of the values recorded.
+     *
+     * @return the mean, in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = this.total.get();
+        return count == 0 ? 0.0 : (double) this.sum.get() / count;
+    }
+
+    /**
+     * Get the value below which a fraction of the recorded values fall.
+     *
+     * @param percentile the percentile, 0-100
+     * @return the upper bound of the bucket holding the percentile, in
+     *         nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        long count = this.total.get();
+        if (count == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Forget every recorded value.  Values recorded while this runs may or
+     * may not be kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.counts.set(i, 0L);
+        }
+        this.total.set(0L);
+        this.sum.set(0L);
+        this.max.set(0L);
+    }
+
+    /**
+     * Find the bucket for a value.
+     *
+     * @param value a non-negative value
+     * @return the bucket index
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Find the largest value that falls in a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the largest value in the bucket
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >> SUB_BITS) - 1;
+        long low = ((long) (SUB_BUCKETS | (bucket & (SUB_BUCKETS - 1)))) << shift;
+        return low + (1L << shift) - 1;
+    }
+
+    /**
+     * A one line summary in milliseconds.
+     *
+     * @return the summary
+     */
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(90) / 1e6,
+                getPercentile(99) / 1e6, getPercentile(99.9) / 1e6, getMax() / 1e6);
+    }
+}
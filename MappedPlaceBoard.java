@@ -0,0 +1,387 @@
+package place;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * A board whose tiles live in a memory mapped file instead of on the heap.
+ *
+ * The file holds a header and three planes, each DIM squared cells in row
+ * major order: a color byte (the color number plus one, 0 for a tile never
+ * set), an owner int and a time long.  Owners are stored as ids into the
+ * board's {@link PlaceOwners}, which is also written, in id order, to a
+ * ".owners" file next to the board so the ids survive a restart.  Id 0 is
+ * no owner.  A new file is all zeros, i.e. a blank board, and the operating
+ * system only backs the pages that are written.
+ *
+ * Writes go straight into the mapping and the page cache persists them, so
+ * a server can be restarted against the same file with no load step, and
+ * the board is never scanned by the garbage collector.  Tiles are built
+ * when read.  When sent to a client the board is replaced with an ordinary
+ * PlaceBoard holding its painted tiles.
+ *
+ * Like PlaceBoard, it is not thread safe; the server changes it under its
+ * lock.  The exception is sending it: a client's writer thread copies it
+ * without the server's lock, {@value #COPY_ROWS} rows at a time under the
+ * board's own lock, which setTile also takes.  So no tile is sent half
+ * written, and the server is never held up for the whole copy.  Bands
+ * copied earlier may miss changes made while later ones are copied.  Those
+ * changes are broadcast after the board was queued, so the client applies
+ * them on top of it, as it does for an ordinary board written while it
+ * changes.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class MappedPlaceBoard extends PlaceBoard implements Closeable {
+    /** identifies a board file */
+    private static final int MAGIC = 0x504C4342;
+    /** the file format version */
+    private static final int VERSION = 1;
+    /** the size of the header, in bytes */
+    private static final int HEADER = 64;
+    /** most bytes mapped by one buffer */
+    private static final long MAX_SEGMENT = 1L << 30;
+    /** the number of rows copied at a time when the board is sent */
+    private static final int COPY_ROWS = 64;
+
+    /** the board file */
+    private final FileChannel channel;
+    /** the color of each tile, plus one */
+    private final Plane colors;
+    /** the owner id of each tile */
+    private final Plane owners;
+    /** the time of each tile */
+    private final Plane times;
+    /** appends new owner names to the dictionary file */
+    private final DataOutputStream ownerLog;
+    /** the number of owner ids written to the dictionary file */
+    private int ownersWritten;
+
+    /**
+     * Open a board file, creating a blank board if it does not exist.
+     *
+     * @param file the board file
+     * @param DIM the square dimension of the board
+     * @throws PlaceException if the file cannot be opened, or holds a
+     *                        board of another dimension
+     */
+    public MappedPlaceBoard(Path file, int DIM) throws PlaceException {
+        super(DIM);
+        long cells = (long) DIM * DIM;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER);
+            if (header.getInt(0) == 0) {
+                header.putInt(4, VERSION);
+                header.putInt(8, DIM);
+                header.putInt(0, MAGIC);
+                header.force();
+            } else if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new PlaceException(file + " is not a board file");
+            } else if (header.getInt(8) != DIM) {
+                throw new PlaceException(file + " holds a board of dimension " + header.getInt(8));
+            }
+            this.colors = new Plane(this.channel, HEADER, DIM, Byte.BYTES);
+            this.owners = new Plane(this.channel, HEADER + cells, DIM, Integer.BYTES);
+            this.times = new Plane(this.channel, HEADER + cells * (Byte.BYTES + Integer.BYTES), DIM, Long.BYTES);
+
+            Path dictionary = file.resolveSibling(file.getFileName() + ".owners");
+            if (Files.exists(dictionary)) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(dictionary))) {
+                    while (true) {
+                        getOwners().intern(in.readUTF());
+                    }
+                } catch (EOFException e) {
+                    // the end of the dictionary, or a name cut off by a crash
+                    // before any tile could use it
+                }
+            }
+            OutputStream out = Files.newOutputStream(dictionary, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            this.ownerLog = new DataOutputStream(out);
+            this.ownersWritten = getOwners().size();
+        } catch (IOException e) {
+            throw new PlaceException(e);
+        }
+    }
+
+    /**
+     * Get a tile on the board
+     *
+     * @param row row
+     * @param col column
+     * @rit.pre row and column constitute a valid board coordinate
+     * @return the tile
+     */
+    @Override
+    public PlaceTile getTile(int row, int col) {
+        int color = this.colors.buffer(row).get(this.colors.offset(row, col));
+        if (color == 0) {
+            return blankTile(row, col);
+        }
+        return tile(row, col, color,
+                this.owners.buffer(row).getInt(this.owners.offset(row, col)),
+                this.times.buffer(row).getLong(this.times.offset(row, col)));
+    }
+
+    /**
+     * Read the color numbers of a run of tiles in one row, copied straight
+     * out of the color plane.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param dst where the color numbers are written, one per byte
+     * @param offset where in dst the first is written
+     * @rit.pre the run lies within the board
+     */
+    @Override
+    public void readColors(int row, int col, int width, byte[] dst, int offset) {
+        this.colors.buffer(row).get(this.colors.offset(row, col), dst, offset, width);
+        for (int i = offset; i < offset + width; ++i) {
+            dst[i] = dst[i] == 0 ? WHITE : (byte) (dst[i] - 1);
+        }
+    }
+
+    /**
+     * Read the owners and times of a run of tiles in one row, straight out
+     * of the planes.  Tiles never set have no owner and no time.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param owners where the owners' names are written, or null
+     * @param times where the times are written, or null
+     * @param offset where in owners and times the first is written
+     * @rit.pre the run lies within the board
+     */
+    @Override
+    public void readOwners(int row, int col, int width, String[] owners, long[] times, int offset) {
+        ByteBuffer colorBuffer = this.colors.buffer(row);
+        ByteBuffer ownerBuffer = this.owners.buffer(row);
+        ByteBuffer timeBuffer = this.times.buffer(row);
+        // neighbouring tiles often share an owner, so its name is looked up once
+        int lastId = -1;
+        String lastName = "";
+        for (int i = 0; i < width; ++i) {
+            boolean blank = colorBuffer.get(this.colors.offset(row, col + i)) == 0;
+            if (owners != null) {
+                if (blank) {
+                    owners[offset + i] = "";
+                } else {
+                    int id = ownerBuffer.getInt(this.owners.offset(row, col + i));
+                    if (id != lastId) {
+                        lastId = id;
+                        lastName = getOwners().getName(id);
+                    }
+                    owners[offset + i] = lastName;
+                }
+            }
+            if (times != null) {
+                times[offset + i] = blank ? 0L : timeBuffer.getLong(this.times.offset(row, col + i));
+            }
+        }
+    }
+
+    /**
+     * Change a tile in the board, writing it into the mapping.
+     *
+     * @param tile the new tile
+     * @rit.pre row and column constitute a valid board coordinate
+     */
+    @Override
+    public synchronized void setTile(PlaceTile tile) {
+        int row = tile.getRow();
+        int col = tile.getCol();
+        this.owners.buffer(row).putInt(this.owners.offset(row, col), ownerId(tile));
+        this.times.buffer(row).putLong(this.times.offset(row, col), tile.getTime());
+        this.colors.buffer(row).put(this.colors.offset(row, col), (byte) (tile.getColor().getNumber() + 1));
+    }
+
+    /**
+     * Visit every tile that has been set.  This scans the color plane, a
+     * byte per tile, but only builds the painted tiles.
+     *
+     * @param action what to do with each tile
+     */
+    @Override
+    public void forEachPainted(Consumer<PlaceTile> action) {
+        for (int row = 0; row < this.DIM; ++row) {
+            ByteBuffer buffer = this.colors.buffer(row);
+            int offset = this.colors.offset(row, 0);
+            for (int col = 0; col < this.DIM; ++col) {
+                if (buffer.get(offset + col) != 0) {
+                    action.accept(getTile(row, col));
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of chunks that have been allocated.  The whole board is
+     * mapped, so this is every chunk.
+     *
+     * @return the number of chunks
+     */
+    @Override
+    public int getPaintedChunks() {
+        return getChunkCount();
+    }
+
+    /**
+     * Write all changes through to the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void force() throws IOException {
+        this.colors.force();
+        this.owners.force();
+        this.times.force();
+        this.ownerLog.flush();
+    }
+
+    /**
+     * Write all changes through to the file and close it.  The board must
+     * not be used afterwards.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        force();
+        this.ownerLog.close();
+        this.channel.close();
+    }
+
+    /**
+     * Find the id of a tile's owner, adding the owner to the dictionary if it
+     * is new.  A new name is written out before the id can be stored in a
+     * tile.
+     *
+     * @param tile the tile
+     * @return the owner's id
+     */
+    @Override
+    protected int ownerId(PlaceTile tile) {
+        int id = super.ownerId(tile);
+        if (id >= this.ownersWritten) {
+            try {
+                while (this.ownersWritten <= id) {
+                    this.ownerLog.writeUTF(getOwners().getName(this.ownersWritten++));
+                }
+                this.ownerLog.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot record owner " + tile.getOwner(), e);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Send an ordinary board holding the painted tiles in place of the
+     * mapping.  The cells are copied as they are stored, sharing the
+     * dictionary, so no tile is built and no owner looked up.  This still
+     * scans the whole color plane, a byte per tile, each time the board is
+     * sent.
+     *
+     * @return the board to serialize
+     */
+    private Object writeReplace() {
+        PlaceBoard copy = new PlaceBoard(this.DIM, getOwners());
+        for (int top = 0; top < this.DIM; top += COPY_ROWS) {
+            synchronized (this) {
+                for (int row = top; row < Math.min(this.DIM, top + COPY_ROWS); ++row) {
+                    ByteBuffer colorBuffer = this.colors.buffer(row);
+                    int offset = this.colors.offset(row, 0);
+                    for (int col = 0; col < this.DIM; ++col) {
+                        byte color = colorBuffer.get(offset + col);
+                        if (color != 0) {
+                            copy.setCell(row, col, color,
+                                    this.owners.buffer(row).getInt(this.owners.offset(row, col)),
+                                    this.times.buffer(row).getLong(this.times.offset(row, col)));
+                        }
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * One plane of the file, mapped in segments of whole rows since a single
+     * mapping is limited to 2GB.
+     */
+    private static class Plane {
+        /** the mapped segments */
+        private final MappedByteBuffer[] segments;
+        /** the number of rows in each segment */
+        private final int rowsPerSegment;
+        /** the square dimension of the board */
+        private final int dim;
+        /** the size of a cell, in bytes */
+        private final int size;
+
+        /**
+         * Map a plane.
+         *
+         * @param channel the board file
+         * @param start where the plane starts in the file
+         * @param dim the square dimension of the board
+         * @param size the size of a cell, in bytes
+         * @throws IOException if the file cannot be mapped
+         */
+        Plane(FileChannel channel, long start, int dim, int size) throws IOException {
+            this.dim = dim;
+            this.size = size;
+            this.rowsPerSegment = (int) Math.max(1, MAX_SEGMENT / Math.max(1L, (long) dim * size));
+            this.segments = new MappedByteBuffer[Math.max(1, (dim + this.rowsPerSegment - 1) / this.rowsPerSegment)];
+            for (int i = 0; i < this.segments.length; ++i) {
+                int rows = Math.min(this.rowsPerSegment, dim - i * this.rowsPerSegment);
+                long position = start + (long) i * this.rowsPerSegment * dim * size;
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) rows * dim * size);
+            }
+        }
+
+        /**
+         * Get the segment holding a row.
+         *
+         * @param row row
+         * @return the segment
+         */
+        ByteBuffer buffer(int row) {
+            return this.segments[row / this.rowsPerSegment];
+        }
+
+        /**
+         * Find a cell within its segment.
+         *
+         * @param row row
+         * @param col column
+         * @return the byte offset of the cell
+         */
+        int offset(int row, int col) {
+            return ((row % this.rowsPerSegment) * this.dim + col) * this.size;
+        }
+
+        /**
+         * Write the plane's changes through to the file.
+         */
+        void force() {
+            for (MappedByteBuffer segment : this.segments) {
+                segment.force();
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package place;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Turns an RGB image into PlaceColors, so it can be painted onto the board
+ * as a single region.
+ *
+ * The nearest PlaceColor to every color, at 5 bits per channel, is worked
+ * out once into a {@value #LUT_SIZE} entry lookup table, so each pixel costs
+ * a few shifts and one table read.  Nearness is weighted by how sensitive
+ * the eye is to each channel; a color almost halfway between two
+ * PlaceColors may get the slightly farther one, as the table is worked out
+ * for the middle of each 8x8x8 cell of colors.  The image is split into bands of rows that
+ * are quantized in parallel with fork/join, straight into the packed color
+ * array of a PlaceRegion.
+ *
+ * Dithering is optional.  Ordered dithering nudges each pixel by a 4x4
+ * Bayer pattern before the lookup, and gives the same result however the
+ * image is split.  Error diffusion (Floyd-Steinberg) spreads each pixel's
+ * error to its neighbours; the error is not carried from one band to the
+ * next, which can leave a faint seam every {@value #BAND_ROWS} rows or so.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PaletteQuantizer {
+    /** how a quantized image is dithered */
+    public enum Dither {
+        /** every pixel takes its nearest color */
+        NONE,
+        /** a 4x4 Bayer pattern is added before the lookup */
+        ORDERED,
+        /** each pixel's error is spread to its neighbours, Floyd-Steinberg */
+        DIFFUSION
+    }
+
+    /** bits kept of each channel for the lookup, as index() assumes */
+    private static final int LUT_BITS = 5;
+    /** entries in the lookup table */
+    public static final int LUT_SIZE = 1 << (3 * LUT_BITS);
+    /** the most rows quantized by one task */
+    static final int BAND_ROWS = 64;
+    /** how far ordered dithering moves a channel, about half the palette's spacing */
+    private static final int ORDERED_SPREAD = 64;
+    /** the Bayer pattern, 0 to 15 */
+    private static final int[] BAYER = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5};
+    /** the colors by number */
+    private static final PlaceColor[] COLORS = PlaceColor.values();
+    /** the nearest color number for each 5 bit per channel color */
+    private static final byte[] LUT = new byte[LUT_SIZE];
+
+    static {
+        int step = 256 >> LUT_BITS;
+        for (int i = 0; i < LUT_SIZE; ++i) {
+            // the middle of the cell of colors the entry stands for
+            int red = (i >> (2 * LUT_BITS)) * step + step / 2;
+            int green = ((i >> LUT_BITS) & ((1 << LUT_BITS) - 1)) * step + step / 2;
+            int blue = (i & ((1 << LUT_BITS) - 1)) * step + step / 2;
+            LUT[i] = (byte) nearestNumber(red, green, blue);
+        }
+    }
+
+    private PaletteQuantizer() {
+    }
+
+    /**
+     * Find the nearest color by searching the palette, used to build the table.
+     *
+     * @param red red intensity, 0-255
+     * @param green green intensity, 0-255
+     * @param blue blue intensity, 0-255
+     * @return the color's number
+     */
+    private static int nearestNumber(int red, int green, int blue) {
+        int best = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (PlaceColor color : COLORS) {
+            int dr = red - color.getRed();
+            int dg = green - color.getGreen();
+            int db = blue - color.getBlue();
+            long distance = 2L * dr * dr + 4L * dg * dg + 3L * db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = color.getNumber();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Look up the nearest color number.
+     *
+     * @param red red intensity, clamped to 0-255
+     * @param green green intensity, clamped to 0-255
+     * @param blue blue intensity, clamped to 0-255
+     * @return the color's number
+     */
+    private static int lookup(int red, int green, int blue) {
+        int shift = 8 - LUT_BITS;
+        return LUT[(clamp(red) >> shift << (2 * LUT_BITS)) | (clamp(green) >> shift << LUT_BITS) | (clamp(blue) >> shift)];
+    }
+
+    /**
+     * Find a color's entry in the lookup table.
+     *
+     * @param rgb the color, as 0xRRGGBB; any alpha is ignored
+     * @return the entry's index
+     */
+    private static int index(int rgb) {
+        return (rgb >> 9) & 0x7C00 | (rgb >> 6) & 0x3E0 | (rgb >> 3) & 0x1F;
+    }
+
+    /**
+     * Keep a channel within 0-255.
+     *
+     * @param value the channel
+     * @return the clamped channel
+     */
+    private static int clamp(int value) {
+        return value < 0 ? 0 : Math.min(value, 255);
+    }
+
+    /**
+     * Find the nearest PlaceColor to an RGB color.
+     *
+     * @param rgb the color, as 0xRRGGBB; any alpha is ignored
+     * @return the nearest color
+     */
+    public static PlaceColor nearest(int rgb) {
+        return COLORS[LUT[index(rgb)]];
+    }
+
+    /**
+     * Quantize an image into a region to paint onto the board, with its top
+     * left pixel at a given tile.  Alpha is ignored.
+     *
+     * @param image the image
+     * @param row the row of the image's top left pixel
+     * @param col the column of the image's top left pixel
+     * @param dither how to dither
+     * @param owner the owner of the painted tiles
+     * @return the region
+     */
+    public static PlaceRegion quantize(BufferedImage image, int row, int col, Dither dither, String owner) {
+        return PlaceRegion.paint(row, col, image.getHeight(), image.getWidth(), quantize(image, dither), owner);
+    }
+
+    /**
+     * Quantize an image into packed color numbers, two per byte, row major,
+     * the even pixel in the high nibble.  Alpha is ignored.
+     *
+     * @param image the image
+     * @param dither how to dither
+     * @return the packed colors
+     */
+    public static byte[] quantize(BufferedImage image, Dither dither) {
+        byte[] packed = new byte[(int) (((long) image.getWidth() * image.getHeight() + 1) >> 1)];
+        ForkJoinPool.commonPool().invoke(new Band(image, dither, packed, 0, image.getHeight()));
+        return packed;
+    }
+
+    /**
+     * Quantizes a band of rows, splitting it in two while it is larger than
+     * BAND_ROWS
+     */
+    private static class Band extends RecursiveAction {
+        /** the image */
+        private final BufferedImage image;
+        /** how to dither */
+        private final Dither dither;
+        /** where the colors are packed */
+        private final byte[] packed;
+        /** the first row of the band */
+        private final int first;
+        /** the row after the band */
+        private final int end;
+
+        /**
+         * Create a task for a band of rows.
+         *
+         * @param image the image
+         * @param dither how to dither
+         * @param packed where the colors are packed
+         * @param first the first row of the band
+         * @param end the row after the band
+         */
+        Band(BufferedImage image, Dither dither, byte[] packed, int first, int end) {
+            this.image = image;
+            this.dither = dither;
+            this.packed = packed;
+            this.first = first;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.first > BAND_ROWS) {
+                int middle = (this.first + this.end) >>> 1;
+                // bands must start on a whole byte, which with an odd width
+                // means an even row
+                if ((this.image.getWidth() & 1) == 1) {
+                    middle &= ~1;
+                }
+                if (middle > this.first) {
+                    invokeAll(new Band(this.image, this.dither, this.packed, this.first, middle),
+                            new Band(this.image, this.dither, this.packed, middle, this.end));
+                    return;
+                }
+            }
+            quantizeBand();
+        }
+
+        /**
+         * Quantize the band's pixels into the packed array.
+         */
+        private void quantizeBand() {
+            int width = this.image.getWidth();
+            int[] numbers = readRows(width);
+            switch (this.dither) {
+                case NONE:
+                    for (int i = 0; i < numbers.length; ++i) {
+                        numbers[i] = LUT[index(numbers[i])];
+                    }
+                    break;
+                case ORDERED:
+                    order(numbers, width);
+                    break;
+                case DIFFUSION:
+                    diffuse(numbers, width);
+                    break;
+            }
+            // bands start on a whole byte, so each byte is written by one band
+            int at = (int) (((long) this.first * width) >> 1);
+            int i = 0;
+            for (; i + 1 < numbers.length; i += 2) {
+                this.packed[at++] = (byte) (numbers[i] << 4 | numbers[i + 1]);
+            }
+            if (i < numbers.length) {
+                this.packed[at] = (byte) (numbers[i] << 4);
+            }
+        }
+
+        /**
+         * Replace each pixel with its color number, nudged by the Bayer
+         * pattern first.
+         *
+         * @param pixels the band's pixels, replaced by their color numbers
+         * @param width the image's width
+         */
+        private void order(int[] pixels, int width) {
+            for (int y = 0, i = 0; i < pixels.length; ++y) {
+                int pattern = ((this.first + y) & 3) * 4;
+                for (int x = 0; x < width; ++x, ++i) {
+                    int offset = (BAYER[pattern + (x & 3)] * 2 - 15) * ORDERED_SPREAD / 32;
+                    int pixel = pixels[i];
+                    pixels[i] = lookup(((pixel >> 16) & 0xFF) + offset, ((pixel >> 8) & 0xFF) + offset,
+                            (pixel & 0xFF) + offset);
+                }
+            }
+        }
+
+        /**
+         * Replace each pixel with its color number, spreading the
+         * difference to the pixels not yet quantized.
+         *
+         * @param pixels the band's pixels, replaced by their color numbers
+         * @param width the image's width
+         */
+        private void diffuse(int[] pixels, int width) {
+            // the error carried to this row and the next, 3 channels per pixel
+            int[] error = new int[3 * (width + 2)];
+            int[] nextError = new int[3 * (width + 2)];
+            for (int i = 0; i < pixels.length; ) {
+                for (int x = 0; x < width; ++x, ++i) {
+                    int pixel = pixels[i];
+                    int e = 3 * (x + 1);
+                    int red = clamp(((pixel >> 16) & 0xFF) + error[e] / 16);
+                    int green = clamp(((pixel >> 8) & 0xFF) + error[e + 1] / 16);
+                    int blue = clamp((pixel & 0xFF) + error[e + 2] / 16);
+                    int number = lookup(red, green, blue);
+                    PlaceColor chosen = COLORS[number];
+                    spread(error, nextError, e, red - chosen.getRed());
+                    spread(error, nextError, e + 1, green - chosen.getGreen());
+                    spread(error, nextError, e + 2, blue - chosen.getBlue());
+                    pixels[i] = number;
+                }
+                int[] swap = error;
+                error = nextError;
+                nextError = swap;
+                Arrays.fill(nextError, 0);
+            }
+        }
+
+        /**
+         * Read the band's pixels as 0xRRGGBB, alpha ignored.  Images of
+         * packed ints are copied straight from the raster, which is many
+         * times faster than converting each pixel with getRGB.
+         *
+         * @param width the image's width
+         * @return the pixels, row major
+         */
+        private int[] readRows(int width) {
+            int rows = this.end - this.first;
+            int type = this.image.getType();
+            if (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB) {
+                return (int[]) this.image.getRaster().getDataElements(0, this.first, width, rows, null);
+            }
+            return this.image.getRGB(0, this.first, width, rows, null, 0, width);
+        }
+
+        /**
+         * Spread one channel of a pixel's error to the pixels right of it
+         * and below it, in sixteenths.
+         *
+         * @param error the error carried within this row
+         * @param nextError the error carried to the next row
+         * @param e where the pixel's channel is in the error arrays
+         * @param value the error
+         */
+        private static void spread(int[] error, int[] nextError, int e, int value) {
+            error[e + 3] += value * 7;
+            nextError[e - 3] += value * 3;
+            nextError[e] += value * 5;
+            nextError[e + 3] += value;
+        }
+    }
+}
@@ -1,19 +1,50 @@
 package place;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.function.Consumer;
 
 /**
  * The board is the place that holds the colored tiles.  The server creates
  * the initial Board and then transmits it only once to each client that
  * successfully logs in to the server.
  *
+ * The board is stored sparsely, in square chunks that are only allocated
+ * when one of their tiles is first set.  A tile that has never been set is
+ * blank (white, no owner, no time), so creating even a very large board is
+ * instant, and memory, including the board sent to clients, grows with the
+ * painted area rather than DIM squared.  Each chunk holds a plane of
+ * colors, one of owner ids and one of times rather than tile objects; owner
+ * names are kept once, in the board's {@link PlaceOwners}, and tiles are
+ * built when read.
+ *
  * @author Sean Strout @ RIT CS
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
  */
-public class PlaceBoard implements Serializable {
+public class PlaceBoard implements PlaceBoardView, Serializable {
     /** The square dimension of the board */
     public final int DIM;
-    /** The grid of tiles */
-    private PlaceTile[][] board;
+    /** log2 of the chunk size */
+    private static final int CHUNK_SHIFT = 6;
+    /** the width and height of a chunk, in tiles */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /** mask for a coordinate within a chunk */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** the color number of a tile that has never been set */
+    protected static final byte WHITE = (byte) PlaceColor.WHITE.getNumber();
+
+    /** the number of chunks across the board */
+    private final int chunksPerRow;
+    /** the chunks of the board, row major; null until a tile in it is set */
+    private Chunk[] chunks;
+    /** the number of chunks allocated */
+    private int paintedChunks;
+    /** the owners of the tiles */
+    private final PlaceOwners owners;
 
     /**
      * Create a new board of all white tiles.
@@ -21,45 +52,276 @@ public class PlaceBoard implements Serializable {
      * @param DIM the square dimension of the board
      */
     public PlaceBoard(int DIM) {
+        this(DIM, new PlaceOwners());
+    }
+
+    /**
+     * Create a new board of all white tiles, sharing a dictionary of owners.
+     *
+     * @param DIM the square dimension of the board
+     * @param owners the owners of the tiles
+     */
+    protected PlaceBoard(int DIM, PlaceOwners owners) {
         this.DIM = DIM;
-        this.board = new PlaceTile[DIM][DIM];
-        for (int row=0; row<DIM; ++row) {
-            for (int col=0; col<DIM; ++col) {
-                this.board[row][col] =
-                        new PlaceTile(row, col, "", PlaceColor.WHITE);
-            }
-        }
+        this.chunksPerRow = (DIM + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new Chunk[this.chunksPerRow * this.chunksPerRow];
+        this.owners = owners;
+    }
+
+    /**
+     * Create a blank tile, the state of every tile that has not been set.
+     *
+     * @param row row
+     * @param col column
+     * @return a new white tile with no owner and no time
+     */
+    public static PlaceTile blankTile(int row, int col) {
+        return new PlaceTile(row, col, "", PlaceColor.WHITE);
     }
 
     /**
-     * Get the entire board.
+     * Get the entire board.  Every tile is built, so avoid this for large
+     * boards; the grid is a copy.
      *
      * @return the board
      */
     public PlaceTile[][] getBoard() {
-        return this.board;
+        PlaceTile[][] grid = new PlaceTile[this.DIM][this.DIM];
+        for (int row = 0; row < this.DIM; ++row) {
+            for (int col = 0; col < this.DIM; ++col) {
+                grid[row][col] = getTile(row, col);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Get the square dimension of the board.
+     *
+     * @return the dimension
+     */
+    @Override
+    public int getDim() {
+        return this.DIM;
     }
 
     /**
-     * Get a tile on the board
+     * Get a tile on the board.  A tile that has never been set is a new
+     * blank tile.
      *
      * @param row row
      * @param col column
      * @rit.pre row and column constitute a valid board coordinate
      * @return the tile
      */
+    @Override
     public PlaceTile getTile(int row, int col){
-        return this.board[row][col];
+        Chunk chunk = this.chunks[chunkIndex(row, col)];
+        int cell = cellIndex(row, col);
+        if (chunk == null || chunk.colors[cell] == 0) {
+            return blankTile(row, col);
+        }
+        return tile(row, col, chunk.colors[cell], chunk.owners[cell], chunk.times[cell]);
+    }
+
+    /**
+     * Read the color numbers of a run of tiles in one row, a chunk at a
+     * time.  Runs through unallocated chunks are just filled with white.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param dst where the color numbers are written, one per byte
+     * @param offset where in dst the first is written
+     * @rit.pre the run lies within the board
+     */
+    @Override
+    public void readColors(int row, int col, int width, byte[] dst, int offset) {
+        int end = col + width;
+        while (col < end) {
+            int run = Math.min(end, (col | CHUNK_MASK) + 1) - col;
+            Chunk chunk = this.chunks[chunkIndex(row, col)];
+            if (chunk == null) {
+                Arrays.fill(dst, offset, offset + run, WHITE);
+            } else {
+                int cell = cellIndex(row, col);
+                for (int i = 0; i < run; ++i) {
+                    int color = chunk.colors[cell + i];
+                    dst[offset + i] = color == 0 ? WHITE : (byte) (color - 1);
+                }
+            }
+            col += run;
+            offset += run;
+        }
+    }
+
+    /**
+     * Read the owners and times of a run of tiles in one row, a chunk at a
+     * time.  Tiles never set have no owner and no time.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param owners where the owners' names are written, or null
+     * @param times where the times are written, or null
+     * @param offset where in owners and times the first is written
+     * @rit.pre the run lies within the board
+     */
+    @Override
+    public void readOwners(int row, int col, int width, String[] owners, long[] times, int offset) {
+        int end = col + width;
+        // neighbouring tiles often share an owner, so its name is looked up once
+        int lastId = -1;
+        String lastName = "";
+        while (col < end) {
+            int run = Math.min(end, (col | CHUNK_MASK) + 1) - col;
+            Chunk chunk = this.chunks[chunkIndex(row, col)];
+            int cell = cellIndex(row, col);
+            for (int i = 0; i < run; ++i) {
+                boolean blank = chunk == null || chunk.colors[cell + i] == 0;
+                if (owners != null) {
+                    if (blank) {
+                        owners[offset + i] = "";
+                    } else {
+                        int id = chunk.owners[cell + i];
+                        if (id != lastId) {
+                            lastId = id;
+                            lastName = this.owners.getName(id);
+                        }
+                        owners[offset + i] = lastName;
+                    }
+                }
+                if (times != null) {
+                    times[offset + i] = blank ? 0L : chunk.times[cell + i];
+                }
+            }
+            col += run;
+            offset += run;
+        }
     }
 
     /**
-     * Change a tile in the board.
+     * Change a tile in the board, allocating its chunk if it has none.  The
+     * tile is given its owner's id, adding the owner to the board's
+     * dictionary if it is new.
      *
      * @param tile the new tile
      * @rit.pre row and column constitute a valid board coordinate
      */
     public void setTile(PlaceTile tile) {
-        this.board[tile.getRow()][tile.getCol()] = tile;
+        setCell(tile.getRow(), tile.getCol(), (byte) (tile.getColor().getNumber() + 1), ownerId(tile), tile.getTime());
+    }
+
+    /**
+     * Store a tile as another board sharing this one's dictionary stores
+     * it, allocating its chunk if it has none, without building the tile
+     * or looking up its owner.
+     *
+     * @param row row
+     * @param col column
+     * @param color the stored color, the color number plus one
+     * @param owner the owner's id
+     * @param time the time
+     * @rit.pre row and column constitute a valid board coordinate
+     */
+    protected void setCell(int row, int col, byte color, int owner, long time) {
+        int index = chunkIndex(row, col);
+        if (this.chunks[index] == null) {
+            this.chunks[index] = new Chunk();
+            this.paintedChunks++;
+        }
+        Chunk chunk = this.chunks[index];
+        int cell = cellIndex(row, col);
+        chunk.colors[cell] = color;
+        chunk.owners[cell] = owner;
+        chunk.times[cell] = time;
+    }
+
+    /**
+     * Get the dictionary of the tiles' owners.
+     *
+     * @return the owners
+     */
+    public PlaceOwners getOwners() {
+        return this.owners;
+    }
+
+    /**
+     * Find the id of a tile's owner, adding the owner to the dictionary if
+     * it is new, and give the tile the id.  A tile that arrived with just an
+     * id takes its name from the dictionary.
+     *
+     * @param tile the tile
+     * @return the owner's id
+     */
+    protected int ownerId(PlaceTile tile) {
+        String name = tile.getOwner();
+        if (name == null) {
+            name = this.owners.getName(tile.getOwnerId());
+        }
+        if (name == null) {
+            name = "";
+        }
+        int id = this.owners.intern(name);
+        tile.setOwner(id, name);
+        return id;
+    }
+
+    /**
+     * Build a tile read from the board.
+     *
+     * @param row row
+     * @param col column
+     * @param color the stored color, the color number plus one
+     * @param owner the owner's id
+     * @param time the time
+     * @return the tile
+     */
+    protected PlaceTile tile(int row, int col, int color, int owner, long time) {
+        PlaceTile tile = new PlaceTile(row, col, "", PlaceColor.values()[color - 1], time);
+        tile.setOwner(owner, this.owners.getName(owner));
+        return tile;
+    }
+
+    /**
+     * Visit every tile that has been set, chunk by chunk.  Tiles that were
+     * never set are blank, so this is all a caller needs to summarize the
+     * board without visiting all DIM squared tiles.
+     *
+     * @param action what to do with each tile
+     */
+    public void forEachPainted(Consumer<PlaceTile> action) {
+        for (int index = 0; index < this.chunks.length; ++index) {
+            Chunk chunk = this.chunks[index];
+            if (chunk != null) {
+                int top = (index / this.chunksPerRow) << CHUNK_SHIFT;
+                int left = (index % this.chunksPerRow) << CHUNK_SHIFT;
+                for (int cell = 0; cell < chunk.colors.length; ++cell) {
+                    if (chunk.colors[cell] != 0) {
+                        action.accept(tile(top + (cell >> CHUNK_SHIFT), left + (cell & CHUNK_MASK),
+                                chunk.colors[cell], chunk.owners[cell], chunk.times[cell]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of chunks that have been allocated.
+     *
+     * @return the number of painted chunks
+     */
+    public int getPaintedChunks() {
+        return this.paintedChunks;
+    }
+
+    /**
+     * Get the number of chunks the board is divided into.
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return this.chunks.length;
     }
 
     /**
@@ -76,19 +338,55 @@ public class PlaceBoard implements Serializable {
 
     /**
      * Return a string representation of the board.  It displays the tile color as
-     * a single character hex value in the range 0-F.
+     * a single character hex value in the range 0-F.  For large boards, stream
+     * the board with a {@link PlaceBoardEncoder} instead.
      *
      * @return the string representation
+     * @throws IllegalArgumentException if the board is too large for a string
      */
     @Override
     public String toString() {
-        StringBuilder builder = new StringBuilder("");
-        for (int row=0; row<DIM; ++row) {
-            builder.append("\n");
-            for (int col=0; col<DIM; ++col) {
-                builder.append(this.board[row][col].getColor());
-            }
+        StringWriter writer = new StringWriter(PlaceBoardEncoder.encodedSize(DIM, DIM));
+        try {
+            new PlaceBoardEncoder(this).write(writer);
+        } catch (IOException e) {
+            // a StringWriter never throws
+            throw new UncheckedIOException(e);
         }
-        return builder.toString();
+        return writer.toString();
+    }
+
+    /**
+     * Find the chunk holding a coordinate.
+     *
+     * @param row row
+     * @param col column
+     * @return the chunk index
+     */
+    private int chunkIndex(int row, int col) {
+        return (row >> CHUNK_SHIFT) * this.chunksPerRow + (col >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Find a coordinate's position within its chunk.
+     *
+     * @param row row
+     * @param col column
+     * @return the index within the chunk
+     */
+    private static int cellIndex(int row, int col) {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+    }
+
+    /**
+     * The tiles of one chunk, as planes.
+     */
+    private static class Chunk implements Serializable {
+        /** the color of each tile, plus one; 0 for a tile never set */
+        final byte[] colors = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        /** the owner id of each tile */
+        final int[] owners = new int[CHUNK_SIZE * CHUNK_SIZE];
+        /** the time of each tile */
+        final long[] times = new long[CHUNK_SIZE * CHUNK_SIZE];
     }
 }
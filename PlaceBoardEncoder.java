@@ -0,0 +1,188 @@
+package place;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Streams a board, or a rectangular region of it, as rows of single
+ * character hex color values (0-F), the same format used by
+ * {@link PlaceBoard#toString()}.  Each row is preceded by a newline.
+ *
+ * Colors are looked up in a precomputed table and rows are encoded into a
+ * reusable buffer, so no objects are created per cell.  An encoder is not
+ * thread safe; use one per thread.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceBoardEncoder {
+    /** hex character for each color number */
+    private static final char[] HEX_CHARS = "0123456789ABCDEF".toCharArray();
+    /** hex byte (ASCII) for each color number */
+    private static final byte[] HEX_BYTES = new byte[PlaceColor.TOTAL_COLORS];
+
+    static {
+        for (int i = 0; i < PlaceColor.TOTAL_COLORS; ++i) {
+            HEX_BYTES[i] = (byte) HEX_CHARS[i];
+        }
+    }
+
+    /** the board being encoded */
+    private final PlaceBoardView board;
+    /** row buffer used when writing characters */
+    private char[] charRow = new char[0];
+    /** row buffer used when writing to a channel */
+    private ByteBuffer byteRow = ByteBuffer.allocate(0);
+
+    /**
+     * Create an encoder for a board.
+     *
+     * @param board the board to encode
+     */
+    public PlaceBoardEncoder(PlaceBoardView board) {
+        this.board = board;
+    }
+
+    /**
+     * Get the hex character for a color.
+     *
+     * @param color the color
+     * @return the hex character, 0-F
+     */
+    public static char hexChar(PlaceColor color) {
+        return HEX_CHARS[color.getNumber()];
+    }
+
+    /**
+     * Write the entire board.
+     *
+     * @param out where the rows are written
+     * @throws IOException if the writer fails
+     */
+    public void write(Writer out) throws IOException {
+        write(out, 0, 0, this.board.getDim(), this.board.getDim());
+    }
+
+    /**
+     * Write a region of the board.
+     *
+     * @param out where the rows are written
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     * @rit.pre the region lies within the board
+     * @throws IOException if the writer fails
+     */
+    public void write(Writer out, int row, int col, int height, int width) throws IOException {
+        checkRegion(row, col, height, width);
+        if (this.charRow.length < width + 1) {
+            this.charRow = new char[width + 1];
+        }
+        char[] line = this.charRow;
+        line[0] = '\n';
+        for (int r = row; r < row + height; ++r) {
+            for (int c = 0; c < width; ++c) {
+                line[c + 1] = HEX_CHARS[this.board.getTile(r, col + c).getColor().getNumber()];
+            }
+            out.write(line, 0, width + 1);
+        }
+    }
+
+    /**
+     * Encode a region of the board into a byte buffer as ASCII.
+     *
+     * @param dst the destination buffer
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     * @rit.pre the region lies within the board and dst has at least
+     *          {@link #encodedSize(int, int)} bytes remaining
+     */
+    public void encode(ByteBuffer dst, int row, int col, int height, int width) {
+        checkRegion(row, col, height, width);
+        if (dst.remaining() < encodedSize(height, width)) {
+            throw new IllegalArgumentException("buffer too small for region");
+        }
+        for (int r = row; r < row + height; ++r) {
+            dst.put((byte) '\n');
+            for (int c = col; c < col + width; ++c) {
+                dst.put(HEX_BYTES[this.board.getTile(r, c).getColor().getNumber()]);
+            }
+        }
+    }
+
+    /**
+     * Write the entire board to a channel.
+     *
+     * @param channel where the rows are written
+     * @throws IOException if the channel fails
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        write(channel, 0, 0, this.board.getDim(), this.board.getDim());
+    }
+
+    /**
+     * Write a region of the board to a channel, one row at a time.
+     *
+     * @param channel where the rows are written
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     * @rit.pre the region lies within the board
+     * @throws IOException if the channel fails
+     */
+    public void write(WritableByteChannel channel, int row, int col, int height, int width) throws IOException {
+        checkRegion(row, col, height, width);
+        if (this.byteRow.capacity() < width + 1) {
+            this.byteRow = ByteBuffer.allocateDirect(width + 1);
+        }
+        ByteBuffer line = this.byteRow;
+        for (int r = row; r < row + height; ++r) {
+            line.clear();
+            encode(line, r, col, 1, width);
+            line.flip();
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+        }
+    }
+
+    /**
+     * The number of bytes needed to encode a region.
+     *
+     * @param height the number of rows
+     * @param width the number of columns
+     * @return the encoded size in bytes
+     * @throws IllegalArgumentException if the region is too large to encode
+     *                                  into one buffer or string
+     */
+    public static int encodedSize(int height, int width) {
+        long size = (long) height * (width + 1L);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a " + height + "x" + width
+                    + " region is too large to encode at once; stream it instead");
+        }
+        return (int) size;
+    }
+
+    /**
+     * Make sure a region lies within the board.
+     *
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     */
+    private void checkRegion(int row, int col, int height, int width) {
+        if (row < 0 || col < 0 || height < 0 || width < 0 ||
+                row + height > this.board.getDim() || col + width > this.board.getDim()) {
+            throw new IndexOutOfBoundsException("region (" + row + "," + col + ") "
+                    + height + "x" + width + " is outside the board");
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package place;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Exports the colors of a board as an image, for archiving and sharing
+ * snapshots of the canvas.  Two formats are written:
+ *
+ * A PNG with a 4 bit indexed color palette of the PlaceColors, color number
+ * n being palette entry n, so the image holds the board exactly.
+ *
+ * A raw framebuffer: a header of the int {@value #FRAMEBUFFER_MAGIC}
+ * ("PLFB"), the int width and the int height, followed by the rows, each
+ * a whole number of bytes of packed color numbers, two per byte, the even
+ * column in the high nibble.  These are the PNG's rows without their filter
+ * bytes and compression, cheap to write and to read back.
+ *
+ * The board is read in bands of rows with {@link PlaceBoardView#readColors},
+ * never tile by tile.  Bands are packed, and for the PNG deflated, in
+ * parallel, while the calling thread writes the finished bands in order.
+ * Only a few bands are in flight at a time, so the memory used depends on
+ * the board's width and the number of cores, not on its size.  Each band
+ * is deflated on its own, ending on a byte boundary, and its Adler-32
+ * checksum is combined into the one the zlib stream needs, so the bands
+ * join into a single valid stream.
+ *
+ * The board is not locked; an export of a board that is changing may show
+ * some tiles from before and some from after changes made during it.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceBoardExporter {
+    /** marks a raw framebuffer */
+    public static final int FRAMEBUFFER_MAGIC = 0x504C4642;
+    /** the PNG signature */
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    /** the zlib header for a deflate stream with a 32K window */
+    private static final byte[] ZLIB_HEADER = {0x78, 0x01};
+    /** the type of a chunk of image data */
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    /** the modulus of Adler-32 */
+    private static final int ADLER_BASE = 65521;
+    /** the raw bytes aimed for in a band */
+    private static final int BAND_BYTES = 1 << 18;
+
+    /** the board being exported */
+    private final PlaceBoardView board;
+    /** runs the band tasks */
+    private final ExecutorService pool;
+    /** how many bands may be in flight at once */
+    private final int window;
+    /** the deflate level for PNGs */
+    private int level = Deflater.BEST_SPEED;
+
+    /**
+     * Create an exporter for a board, encoding bands on the common pool.
+     *
+     * @param board the board to export
+     */
+    public PlaceBoardExporter(PlaceBoardView board) {
+        this(board, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create an exporter for a board.
+     *
+     * @param board the board to export
+     * @param pool runs the band tasks
+     */
+    public PlaceBoardExporter(PlaceBoardView board, ExecutorService pool) {
+        this.board = board;
+        this.pool = pool;
+        this.window = 2 * Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Set how hard PNGs are compressed.
+     *
+     * @param level the deflate level, from Deflater.BEST_SPEED (the default)
+     *              to Deflater.BEST_COMPRESSION
+     */
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Get the number of bytes in a packed row.
+     *
+     * @param width the number of tiles in the row
+     * @return the bytes needed for the row's color numbers, two per byte
+     */
+    public static int rowBytes(int width) {
+        return (width + 1) >> 1;
+    }
+
+    /**
+     * Write the board as a raw framebuffer.
+     *
+     * @param out where the framebuffer is written; it is not closed
+     * @throws IOException if the stream fails
+     */
+    public void writeFramebuffer(OutputStream out) throws IOException {
+        int dim = this.board.getDim();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FRAMEBUFFER_MAGIC);
+        data.writeInt(dim);
+        data.writeInt(dim);
+        int rowBytes = rowBytes(dim);
+        stream(rows -> {
+            byte[] packed = new byte[rows.height * rowBytes];
+            pack(rows, packed, 0, rowBytes);
+            return packed;
+        }, out::write);
+        data.flush();
+    }
+
+    /**
+     * Write the board as an indexed PNG.
+     *
+     * @param out where the image is written; it is not closed
+     * @throws IOException if the stream fails
+     */
+    public void writePng(OutputStream out) throws IOException {
+        int dim = this.board.getDim();
+        out.write(PNG_SIGNATURE);
+
+        byte[] header = new byte[13];
+        putInt(header, 0, dim);
+        putInt(header, 4, dim);
+        header[8] = 4;      // bit depth
+        header[9] = 3;      // indexed color
+        header[10] = 0;     // deflate
+        header[11] = 0;     // adaptive filtering, though every row is unfiltered
+        header[12] = 0;     // not interlaced
+        writeChunk(out, "IHDR", header, header.length);
+
+        PlaceColor[] colors = PlaceColor.values();
+        byte[] palette = new byte[3 * colors.length];
+        for (PlaceColor color : colors) {
+            palette[3 * color.getNumber()] = (byte) color.getRed();
+            palette[3 * color.getNumber() + 1] = (byte) color.getGreen();
+            palette[3 * color.getNumber() + 2] = (byte) color.getBlue();
+        }
+        writeChunk(out, "PLTE", palette, palette.length);
+
+        writeChunk(out, "IDAT", ZLIB_HEADER, ZLIB_HEADER.length);
+        int rowBytes = 1 + rowBytes(dim);
+        long[] adler = {1};
+        stream(rows -> deflate(rows, rowBytes), band -> {
+            adler[0] = combineAdler(adler[0], band.adler & 0xFFFFFFFFL, band.rawLength);
+            band.write(out);
+        });
+        byte[] trailer = new byte[4];
+        putInt(trailer, 0, (int) adler[0]);
+        writeChunk(out, "IDAT", trailer, trailer.length);
+        writeChunk(out, "IEND", trailer, 0);
+        out.flush();
+    }
+
+    /**
+     * Pack a band into PNG rows, each a filter byte of 0 (none) followed
+     * by the row's colors, and deflate them into a whole IDAT chunk.
+     *
+     * @param rows the band
+     * @param rowBytes the bytes in each PNG row, with its filter byte
+     * @return the chunk
+     */
+    private Deflated deflate(Rows rows, int rowBytes) {
+        byte[] raw = new byte[rows.height * rowBytes];
+        pack(rows, raw, 1, rowBytes);
+        Adler32 adler = new Adler32();
+        adler.update(raw);
+
+        Deflater deflater = new Deflater(this.level, true);
+        try {
+            deflater.setInput(raw);
+            if (rows.last) {
+                deflater.finish();
+            }
+            // a band that is not the last is flushed to a byte boundary, so
+            // the next band's blocks can follow it
+            int flush = rows.last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+            byte[] chunk = new byte[12 + raw.length + (raw.length >> 3) + 64];
+            int end = 8;
+            while (true) {
+                end += deflater.deflate(chunk, end, chunk.length - 4 - end, flush);
+                if (end < chunk.length - 4 && (!rows.last || deflater.finished())) {
+                    break;
+                }
+                if (end == chunk.length - 4) {
+                    chunk = Arrays.copyOf(chunk, 2 * chunk.length);
+                }
+            }
+            int length = end - 8;
+            putInt(chunk, 0, length);
+            System.arraycopy(IDAT, 0, chunk, 4, IDAT.length);
+            CRC32 crc = new CRC32();
+            crc.update(chunk, 4, 4 + length);
+            putInt(chunk, end, (int) crc.getValue());
+            return new Deflated(chunk, end + 4, (int) adler.getValue(), raw.length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a band of the board and pack its colors, two to a byte.
+     *
+     * @param rows the band
+     * @param dst where the rows are packed
+     * @param skip bytes left at the start of each row, for a PNG filter byte
+     * @param stride the bytes from the start of one row to the next
+     */
+    private void pack(Rows rows, byte[] dst, int skip, int stride) {
+        int dim = this.board.getDim();
+        // one spare, left 0, pads an odd row
+        byte[] colors = new byte[dim + 1];
+        for (int r = 0; r < rows.height; ++r) {
+            this.board.readColors(rows.first + r, 0, dim, colors, 0);
+            int at = r * stride + skip;
+            for (int c = 0; c < dim; c += 2, ++at) {
+                dst[at] = (byte) (colors[c] << 4 | colors[c + 1]);
+            }
+        }
+    }
+
+    /**
+     * Split the board into bands, encode them on the pool no more than a
+     * window at a time, and hand them to the writer in order.
+     *
+     * @param encode encodes a band
+     * @param writer writes an encoded band
+     * @param <T> the encoded form of a band
+     * @throws IOException if the writer fails
+     */
+    private <T> void stream(Function<Rows, T> encode, BandWriter<T> writer) throws IOException {
+        int dim = this.board.getDim();
+        int height = Math.max(1, BAND_BYTES / Math.max(1, rowBytes(dim)));
+        Queue<CompletableFuture<T>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < dim || !inFlight.isEmpty()) {
+                while (next < dim && inFlight.size() < this.window) {
+                    Rows rows = new Rows(next, Math.min(height, dim - next), next + height >= dim);
+                    inFlight.add(CompletableFuture.supplyAsync(() -> encode.apply(rows), this.pool));
+                    next += rows.height;
+                }
+                writer.write(inFlight.remove().join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            for (CompletableFuture<T> band : inFlight) {
+                band.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Write a whole PNG chunk.
+     *
+     * @param out where the chunk is written
+     * @param type the chunk type
+     * @param data the chunk's data
+     * @param length the length of the data
+     * @throws IOException if the stream fails
+     */
+    private static void writeChunk(OutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] bytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] field = new byte[4];
+        putInt(field, 0, length);
+        out.write(field);
+        out.write(bytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        crc.update(data, 0, length);
+        putInt(field, 0, (int) crc.getValue());
+        out.write(field);
+    }
+
+    /**
+     * Store an int, big endian as PNG wants.
+     *
+     * @param dst where it is stored
+     * @param at where in dst
+     * @param value the int
+     */
+    private static void putInt(byte[] dst, int at, int value) {
+        dst[at] = (byte) (value >>> 24);
+        dst[at + 1] = (byte) (value >>> 16);
+        dst[at + 2] = (byte) (value >>> 8);
+        dst[at + 3] = (byte) value;
+    }
+
+    /**
+     * Work out the Adler-32 checksum of two runs of bytes one after the
+     * other from the checksums of each, as zlib's adler32_combine does.
+     *
+     * @param first the checksum of the first run
+     * @param second the checksum of the second run
+     * @param length the length of the second run
+     * @return the checksum of both
+     */
+    static long combineAdler(long first, long second, long length) {
+        long remainder = length % ADLER_BASE;
+        long sum1 = first & 0xFFFF;
+        long sum2 = (remainder * sum1) % ADLER_BASE;
+        sum1 += (second & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += ((first >>> 16) & 0xFFFF) + ((second >>> 16) & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum1 >= ADLER_BASE) {
+            sum1 -= ADLER_BASE;
+        }
+        if (sum2 >= 2L * ADLER_BASE) {
+            sum2 -= 2L * ADLER_BASE;
+        }
+        if (sum2 >= ADLER_BASE) {
+            sum2 -= ADLER_BASE;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    /**
+     * A band of whole rows of the board.
+     */
+    private static class Rows {
+        /** the first row */
+        final int first;
+        /** the number of rows */
+        final int height;
+        /** true if it is the band at the bottom of the board */
+        final boolean last;
+
+        Rows(int first, int height, boolean last) {
+            this.first = first;
+            this.height = height;
+            this.last = last;
+        }
+    }
+
+    /**
+     * A band deflated into an IDAT chunk.
+     */
+    private static class Deflated {
+        /** the chunk, with its length, type and CRC */
+        final byte[] chunk;
+        /** the length of the chunk */
+        final int length;
+        /** the Adler-32 checksum of the band's raw rows */
+        final int adler;
+        /** the length of the band's raw rows */
+        final int rawLength;
+
+        Deflated(byte[] chunk, int length, int adler, int rawLength) {
+            this.chunk = chunk;
+            this.length = length;
+            this.adler = adler;
+            this.rawLength = rawLength;
+        }
+
+        /**
+         * Write the chunk.
+         *
+         * @param out where it is written
+         * @throws IOException if the stream fails
+         */
+        void write(OutputStream out) throws IOException {
+            out.write(this.chunk, 0, this.length);
+        }
+    }
+
+    /**
+     * Writes encoded bands in order.
+     *
+     * @param <T> the encoded form of a band
+     */
+    @FunctionalInterface
+    private interface BandWriter<T> {
+        /**
+         * Write a band.
+         *
+         * @param band the encoded band
+         * @throws IOException if the stream fails
+         */
+        void write(T band) throws IOException;
+    }
+}
@@ -0,0 +1,70 @@
+package place;
+
+/**
+ * Read-only access to the tiles of a square board.  This is implemented by
+ * the board itself and by the snapshots the client model hands to its views.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public interface PlaceBoardView {
+    /**
+     * Get the square dimension of the board.
+     *
+     * @return the dimension
+     */
+    int getDim();
+
+    /**
+     * Get a tile on the board
+     *
+     * @param row row
+     * @param col column
+     * @rit.pre row and column constitute a valid board coordinate
+     * @return the tile
+     */
+    PlaceTile getTile(int row, int col);
+
+    /**
+     * Read the color numbers of a run of tiles in one row, for code that
+     * scans the whole board, e.g. to export it.  Boards override this to
+     * read their color plane directly instead of building every tile.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param dst where the color numbers are written, one per byte
+     * @param offset where in dst the first is written
+     * @rit.pre the run lies within the board
+     */
+    default void readColors(int row, int col, int width, byte[] dst, int offset) {
+        for (int i = 0; i < width; ++i) {
+            dst[offset + i] = (byte) getTile(row, col + i).getColor().getNumber();
+        }
+    }
+
+    /**
+     * Read the owners and times of a run of tiles in one row, e.g. to copy
+     * a region of the board.  Boards override this to read their planes
+     * directly instead of building every tile.
+     *
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param owners where the owners' names are written, or null
+     * @param times where the times are written, or null
+     * @param offset where in owners and times the first is written
+     * @rit.pre the run lies within the board
+     */
+    default void readOwners(int row, int col, int width, String[] owners, long[] times, int offset) {
+        for (int i = 0; i < width; ++i) {
+            PlaceTile tile = getTile(row, col + i);
+            if (owners != null) {
+                owners[offset + i] = tile.getOwner();
+            }
+            if (times != null) {
+                times[offset + i] = tile.getTime();
+            }
+        }
+    }
+}
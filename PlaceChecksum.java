@@ -0,0 +1,220 @@
+package place;
+
+/**
+ * A Merkle tree of checksums over a board, so two copies of the board can be
+ * compared by exchanging a few hashes instead of the board itself.
+ *
+ * The board is divided into {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE}
+ * chunks.  A chunk's hash is the sum of a hash of each of its tiles (row,
+ * column, color, owner and time), so changing a tile updates it in O(1).
+ * A blank tile hashes to 0, so chunks nobody has painted cost nothing to
+ * build;
+ * each change then rehashes the path from the chunk to the root, O(log n).
+ * Node 1 is the root, the children of node n are 2n and 2n+1, and the leaves
+ * are the chunks in row major order, padded to a power of two.
+ *
+ * Both the server and the client keep one, built the same way, so the
+ * client can compare roots and walk down only the nodes that differ.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceChecksum {
+    /** log2 of the chunk size */
+    private static final int CHUNK_SHIFT = 6;
+    /** the width and height of a chunk, in tiles */
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /** most node hashes asked for in one CHECKSUMS request */
+    public static final int MAX_REQUEST_NODES = 1 << 16;
+
+    /** The square dimension of the board */
+    public final int DIM;
+    /** the number of chunks across the board */
+    private final int chunksPerRow;
+    /** the index of the first leaf */
+    private final int leafBase;
+    /** the tree, indexed from 1 */
+    private final long[] nodes;
+
+    /**
+     * Build the checksums for a board.
+     *
+     * @param board the board
+     */
+    public PlaceChecksum(PlaceBoardView board) {
+        this(board.getDim());
+        for (int row = 0; row < this.DIM; ++row) {
+            for (int col = 0; col < this.DIM; ++col) {
+                this.nodes[leaf(row, col)] += hash(board.getTile(row, col));
+            }
+        }
+        rehash();
+    }
+
+    /**
+     * Build the checksums for a board, visiting only its painted tiles.
+     *
+     * @param board the board
+     */
+    public PlaceChecksum(PlaceBoard board) {
+        this(board.DIM);
+        board.forEachPainted(tile -> this.nodes[leaf(tile.getRow(), tile.getCol())] += hash(tile));
+        rehash();
+    }
+
+    /**
+     * Build the checksums for a blank board.
+     *
+     * @param DIM the square dimension of the board
+     */
+    public PlaceChecksum(int DIM) {
+        this.DIM = DIM;
+        this.chunksPerRow = (this.DIM + CHUNK_SIZE - 1) >> CHUNK_SHIFT;
+        int chunks = Math.max(1, this.chunksPerRow * this.chunksPerRow);
+        this.leafBase = Integer.highestOneBit(chunks) == chunks ? chunks : Integer.highestOneBit(chunks) << 1;
+        this.nodes = new long[2 * this.leafBase];
+        rehash();
+    }
+
+    /**
+     * Update the checksums for a changed tile.
+     *
+     * @param previous the tile before the change
+     * @param tile the tile after the change
+     * @rit.pre both tiles have the same, valid coordinates
+     */
+    public synchronized void tileChanged(PlaceTile previous, PlaceTile tile) {
+        int node = leaf(tile.getRow(), tile.getCol());
+        this.nodes[node] += hash(tile) - hash(previous);
+        for (node >>= 1; node >= 1; node >>= 1) {
+            this.nodes[node] = combine(this.nodes[2 * node], this.nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Get the root hash, which covers the whole board.
+     *
+     * @return the root hash
+     */
+    public synchronized long getRoot() {
+        return this.nodes[1];
+    }
+
+    /**
+     * Get the hashes of some nodes.
+     *
+     * @param nodes the node indexes
+     * @return the hashes, in the same order
+     * @throws IndexOutOfBoundsException if an index is not a node of the tree
+     */
+    public synchronized long[] getNodes(int[] nodes) {
+        long[] hashes = new long[nodes.length];
+        for (int i = 0; i < nodes.length; ++i) {
+            if (nodes[i] < 1) {
+                throw new IndexOutOfBoundsException("node " + nodes[i]);
+            }
+            hashes[i] = this.nodes[nodes[i]];
+        }
+        return hashes;
+    }
+
+    /**
+     * Tells whether a node is a leaf, i.e. a chunk of the board.
+     *
+     * @param node the node index
+     * @return true for a leaf
+     */
+    public boolean isLeaf(int node) {
+        return node >= this.leafBase;
+    }
+
+    /**
+     * Get the bounds of the chunk a leaf covers.
+     *
+     * @param node the leaf's node index
+     * @param withOwners should owners be included when the chunk is fetched?
+     * @param withTimes should times be included when the chunk is fetched?
+     * @return the chunk's bounds, or null for a padding leaf past the board
+     */
+    public PlaceRegion getChunk(int node, boolean withOwners, boolean withTimes) {
+        int chunk = node - this.leafBase;
+        if (chunk < 0 || chunk >= this.chunksPerRow * this.chunksPerRow) {
+            return null;
+        }
+        int row = (chunk / this.chunksPerRow) << CHUNK_SHIFT;
+        int col = (chunk % this.chunksPerRow) << CHUNK_SHIFT;
+        return new PlaceRegion(row, col, Math.min(CHUNK_SIZE, this.DIM - row), Math.min(CHUNK_SIZE, this.DIM - col),
+                withOwners, withTimes);
+    }
+
+    /**
+     * Hash every node above the leaves again.
+     */
+    private void rehash() {
+        for (int node = this.leafBase - 1; node >= 1; --node) {
+            this.nodes[node] = combine(this.nodes[2 * node], this.nodes[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Find the leaf holding a coordinate.
+     *
+     * @param row row
+     * @param col column
+     * @return the leaf's node index
+     */
+    private int leaf(int row, int col) {
+        return this.leafBase + (row >> CHUNK_SHIFT) * this.chunksPerRow + (col >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Hash a tile, relative to a blank tile at the same place so that blank
+     * tiles hash to 0.
+     *
+     * @param tile the tile
+     * @return the hash
+     */
+    private static long hash(PlaceTile tile) {
+        long place = mix(((long) tile.getRow() << 32) | (tile.getCol() & 0xFFFFFFFFL));
+        return hash(place, tile.getColor(), tile.getOwner(), tile.getTime())
+                - hash(place, PlaceColor.WHITE, "", 0L);
+    }
+
+    /**
+     * Hash the contents of a tile.
+     *
+     * @param place the mixed coordinates of the tile
+     * @param color the color
+     * @param owner the owner
+     * @param time the time
+     * @return the hash
+     */
+    private static long hash(long place, PlaceColor color, String owner, long time) {
+        long h = mix(place ^ color.getNumber());
+        h = mix(h ^ owner.hashCode());
+        return mix(h ^ time);
+    }
+
+    /**
+     * Hash two child hashes into their parent's.
+     *
+     * @param left the left child
+     * @param right the right child
+     * @return the parent hash
+     */
+    private static long combine(long left, long right) {
+        return mix(left * 31 + mix(right));
+    }
+
+    /**
+     * The SplitMix64 finalizer, which spreads every input bit over the output.
+     *
+     * @param z the value
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
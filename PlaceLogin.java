@@ -0,0 +1,109 @@
+package place;
+
+import java.io.Serializable;
+
+/**
+ * A login that asks for the board to be loaded progressively: a coarse
+ * preview first, then full detail a region at a time, starting with the
+ * viewport the client is showing.  A relay or cluster router logs in with
+ * the server's relay key instead, and is then not delayed after each
+ * placement, since it places on behalf of all its own clients.  A client
+ * reconnecting, e.g. to a standby that took over from a failed server,
+ * logs in with the last change sequence number it saw, to be sent just the
+ * changes it missed rather than the whole board.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceLogin implements Serializable {
+    /** the desired username */
+    private String username;
+    /** the part of the board the client shows first */
+    private PlaceRegion viewport;
+    /** the key identifying a relay, or null for a client */
+    private String relayKey;
+    /** the last change sequence number the client saw, or -1 */
+    private long resumeFrom = -1;
+
+    /**
+     * Create a progressive login.
+     *
+     * @param username the desired username
+     * @param viewport the part of the board the client shows first
+     */
+    public PlaceLogin(String username, PlaceRegion viewport) {
+        this(username, viewport, null);
+    }
+
+    /**
+     * Create a login.
+     *
+     * @param username the desired username
+     * @param viewport the part of the board the client shows first, or null
+     *                 to be sent the whole board at once
+     * @param relayKey the key identifying a relay, or null for a client
+     */
+    public PlaceLogin(String username, PlaceRegion viewport, String relayKey) {
+        this.username = username;
+        this.viewport = viewport;
+        this.relayKey = relayKey;
+    }
+
+    /**
+     * Create a login that resumes from where an earlier connection left off.
+     *
+     * @param username the desired username
+     * @param viewport the part of the board the client shows first, or null
+     *                 to be sent the whole board at once if the changes
+     *                 cannot be
+     * @param relayKey the key identifying a relay, or null for a client
+     * @param resumeFrom the last change sequence number the client saw, or
+     *                   -1 to be sent the board
+     */
+    public PlaceLogin(String username, PlaceRegion viewport, String relayKey, long resumeFrom) {
+        this(username, viewport, relayKey);
+        this.resumeFrom = resumeFrom;
+    }
+
+    /**
+     * Get the desired username.
+     *
+     * @return the username
+     */
+    public String getUsername() { return this.username; }
+
+    /**
+     * Get the part of the board the client shows first.
+     *
+     * @return the viewport
+     */
+    public PlaceRegion getViewport() { return this.viewport; }
+
+    /**
+     * Get the key identifying a relay.
+     *
+     * @return the key, or null for a client
+     */
+    public String getRelayKey() { return this.relayKey; }
+
+    /**
+     * Get the last change sequence number the client saw.
+     *
+     * @return the sequence number, or -1 if the client is not resuming
+     */
+    public long getResumeFrom() { return this.resumeFrom; }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the login as a string
+     */
+    @Override
+    public String toString() {
+        return "Login{" +
+                "username=" + this.username +
+                ", viewport=" + this.viewport +
+                ", resumeFrom=" + this.resumeFrom +
+                '}';
+    }
+}
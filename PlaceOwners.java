@@ -0,0 +1,157 @@
+package place;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dictionary of tile owners, giving each username a small int id so the
+ * board and the tiles sent between server and clients carry the id rather
+ * than the name.  Id 0 is the empty name of a tile nobody has set.
+ *
+ * The server's dictionary only grows.  A client is sent all of it when it
+ * logs in and then just the names added since, as OWNERS requests; it uses
+ * its copy to turn the ids in the tiles it receives back into names.  A
+ * dictionary sent this way may hold only the names from some id on.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceOwners implements Serializable {
+    /** the id of a tile whose owner has no id yet */
+    public static final int NO_ID = -1;
+
+    /** the id of the first name held */
+    private final int first;
+    /** the names, indexed by id - first; null for an id not yet learned */
+    private final ArrayList<String> names = new ArrayList<>();
+    /** the ids, by name */
+    private transient Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Create a dictionary holding just the empty name.
+     */
+    public PlaceOwners() {
+        this.first = 0;
+        this.names.add("");
+        this.ids.put("", 0);
+    }
+
+    /**
+     * Create a dictionary holding some of another's names.
+     *
+     * @param first the id of the first name
+     * @param names the names, in id order
+     */
+    private PlaceOwners(int first, List<String> names) {
+        this.first = first;
+        this.names.addAll(names);
+        for (int i = 0; i < names.size(); ++i) {
+            this.ids.put(names.get(i), first + i);
+        }
+    }
+
+    /**
+     * Get a name's id, adding the name if it is new.
+     *
+     * @param name the username
+     * @return the id
+     */
+    public synchronized int intern(String name) {
+        Integer id = this.ids.get(name);
+        if (id == null) {
+            id = this.first + this.names.size();
+            this.names.add(name);
+            this.ids.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Get the name with an id.
+     *
+     * @param id the id
+     * @return the name, or null if the id is not known
+     */
+    public synchronized String getName(int id) {
+        int index = id - this.first;
+        return index < 0 || index >= this.names.size() ? null : this.names.get(index);
+    }
+
+    /**
+     * Get the id the next new name will be given.
+     *
+     * @return one more than the last id
+     */
+    public synchronized int size() {
+        return this.first + this.names.size();
+    }
+
+    /**
+     * Copy the names added from some id on, to send to clients.
+     *
+     * @param from the first id wanted
+     * @return a dictionary holding just those names
+     */
+    public synchronized PlaceOwners since(int from) {
+        int start = Math.max(from, this.first) - this.first;
+        return new PlaceOwners(this.first + start, this.names.subList(Math.min(start, this.names.size()), this.names.size()));
+    }
+
+    /**
+     * Learn the names in a dictionary sent by the server, keeping their ids.
+     *
+     * @param other the names to learn
+     */
+    public synchronized void putAll(PlaceOwners other) {
+        List<String> learned;
+        int from;
+        synchronized (other) {
+            learned = new ArrayList<>(other.names);
+            from = other.first;
+        }
+        for (int i = 0; i < learned.size(); ++i) {
+            int index = from + i - this.first;
+            if (index < 0 || learned.get(i) == null) {
+                continue;
+            }
+            while (this.names.size() <= index) {
+                this.names.add(null);
+            }
+            this.names.set(index, learned.get(i));
+            this.ids.put(learned.get(i), from + i);
+        }
+    }
+
+    /**
+     * Write the dictionary while no names are being added.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    /**
+     * Read the dictionary and rebuild the ids by name.
+     *
+     * @param in the stream
+     * @throws IOException if the stream fails
+     * @throws ClassNotFoundException never
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.ids = new HashMap<>();
+        for (int i = 0; i < this.names.size(); ++i) {
+            if (this.names.get(i) != null) {
+                this.ids.put(this.names.get(i), this.first + i);
+            }
+        }
+    }
+}
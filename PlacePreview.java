@@ -0,0 +1,92 @@
+package place;
+
+import java.io.Serializable;
+
+/**
+ * A low resolution preview of the whole board, sent first when a client
+ * loads the board progressively.  Each cell of the preview stands for a
+ * square block of tiles and has the color of the tile in the middle of the
+ * block, so building one only looks at one tile per block.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlacePreview implements Serializable {
+    /** The square dimension of the board */
+    public final int DIM;
+    /** the width and height of the block of tiles each cell stands for */
+    private int scale;
+    /** the preview cells */
+    private PlaceRegion cells;
+
+    /**
+     * Create a preview.
+     *
+     * @param DIM the square dimension of the board
+     * @param scale the width and height of the block each cell stands for
+     * @param cells the preview cells
+     */
+    private PlacePreview(int DIM, int scale, PlaceRegion cells) {
+        this.DIM = DIM;
+        this.scale = scale;
+        this.cells = cells;
+    }
+
+    /**
+     * Build a preview of a board.
+     *
+     * @param board the board
+     * @param maxSide the most cells across the preview
+     * @return the preview
+     */
+    public static PlacePreview of(PlaceBoardView board, int maxSide) {
+        int dim = board.getDim();
+        int scale = Math.max(1, (dim + maxSide - 1) / maxSide);
+        int side = (dim + scale - 1) / scale;
+        PlaceBoardView scaled = new PlaceBoardView() {
+            @Override
+            public int getDim() {
+                return side;
+            }
+
+            @Override
+            public PlaceTile getTile(int row, int col) {
+                return board.getTile(Math.min(row * scale + scale / 2, dim - 1),
+                        Math.min(col * scale + scale / 2, dim - 1));
+            }
+        };
+        return new PlacePreview(dim, scale, PlaceRegion.read(scaled, new PlaceRegion(0, 0, side, side, false, false)));
+    }
+
+    /**
+     * Get the width and height of the block of tiles each cell stands for.
+     *
+     * @return the scale
+     */
+    public int getScale() { return this.scale; }
+
+    /**
+     * Get the preview color of a tile.
+     *
+     * @param row row
+     * @param col column
+     * @rit.pre row and column constitute a valid board coordinate
+     * @return the color of the tile's block
+     */
+    public PlaceColor getColor(int row, int col) {
+        return this.cells.getColor(row / this.scale, col / this.scale);
+    }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the preview as a string
+     */
+    @Override
+    public String toString() {
+        return "Preview{" +
+                "DIM=" + this.DIM +
+                ", scale=" + this.scale +
+                '}';
+    }
+}
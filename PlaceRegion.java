@@ -0,0 +1,346 @@
+package place;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rectangle of the board in a packed form: colors two to a byte, owners
+ * as indexes into a list of distinct names, and times as a plain array.
+ * Owners and times are optional.
+ *
+ * Like a Tile, a region is used both ways: a client asks for a region by
+ * sending one with just its bounds, and the server replies with one holding
+ * the tiles.  A client can also send a region of colors painted by one
+ * owner, such as an imported image, for the server to apply in bulk.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceRegion implements Serializable {
+    /** the colors by number, since PlaceColor.values() copies them */
+    private static final PlaceColor[] COLORS = PlaceColor.values();
+
+    /** the first row */
+    private int row;
+    /** the first column */
+    private int col;
+    /** the number of rows */
+    private int height;
+    /** the number of columns */
+    private int width;
+    /** are owners wanted or included? */
+    private boolean withOwners;
+    /** are times wanted or included? */
+    private boolean withTimes;
+
+    /** color numbers, two per byte, row major; the even cell is the high nibble */
+    private byte[] colors;
+    /** the distinct owners in the region */
+    private ArrayList<String> ownerNames;
+    /** each cell's index into ownerNames, row major; null if there is one owner */
+    private int[] owners;
+    /** each cell's time, row major */
+    private long[] times;
+
+    /**
+     * Create a region with bounds only, to ask the server for its tiles.
+     *
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     * @param withOwners should owners be included?
+     * @param withTimes should times be included?
+     */
+    public PlaceRegion(int row, int col, int height, int width, boolean withOwners, boolean withTimes) {
+        this.row = row;
+        this.col = col;
+        this.height = height;
+        this.width = width;
+        this.withOwners = withOwners;
+        this.withTimes = withTimes;
+    }
+
+    /**
+     * Create a region of colors painted by one owner, to be applied to the
+     * board.  Times are left to the server.
+     *
+     * @param row the first row
+     * @param col the first column
+     * @param height the number of rows
+     * @param width the number of columns
+     * @param colors color numbers, two per byte, row major; the even cell is
+     *               the high nibble
+     * @param owner the owner of every tile
+     * @return the region
+     */
+    public static PlaceRegion paint(int row, int col, int height, int width, byte[] colors, String owner) {
+        PlaceRegion region = new PlaceRegion(row, col, height, width, true, false);
+        region.colors = colors;
+        region.ownerNames = new ArrayList<>(List.of(owner));
+        return region;
+    }
+
+    /**
+     * Read the tiles of a region from a board.
+     *
+     * @param board the board
+     * @param bounds the region to read, and whether owners and times are wanted
+     * @rit.pre the region lies within the board
+     * @return the region holding the tiles
+     */
+    public static PlaceRegion read(PlaceBoardView board, PlaceRegion bounds) {
+        PlaceRegion region = new PlaceRegion(bounds.row, bounds.col, bounds.height, bounds.width,
+                bounds.withOwners, bounds.withTimes);
+        int cells = bounds.height * bounds.width;
+        region.colors = new byte[(cells + 1) >> 1];
+        Map<String, Integer> ownerIndex = null;
+        if (bounds.withOwners) {
+            region.ownerNames = new ArrayList<>();
+            region.owners = new int[cells];
+            ownerIndex = new HashMap<>();
+        }
+        if (bounds.withTimes) {
+            region.times = new long[cells];
+        }
+        // a row at a time, straight from the board's planes
+        byte[] rowColors = new byte[bounds.width];
+        String[] rowOwners = ownerIndex == null ? null : new String[bounds.width];
+        long[] rowTimes = region.times == null ? null : new long[bounds.width];
+        int i = 0;
+        for (int r = bounds.row; r < bounds.row + bounds.height; ++r) {
+            board.readColors(r, bounds.col, bounds.width, rowColors, 0);
+            if (rowOwners != null || rowTimes != null) {
+                board.readOwners(r, bounds.col, bounds.width, rowOwners, rowTimes, 0);
+            }
+            if (rowTimes != null) {
+                System.arraycopy(rowTimes, 0, region.times, i, bounds.width);
+            }
+            String lastOwner = null;
+            int lastIndex = -1;
+            for (int c = 0; c < bounds.width; ++c, ++i) {
+                int number = rowColors[c];
+                region.colors[i >> 1] |= (byte) ((i & 1) == 0 ? number << 4 : number);
+                if (rowOwners != null) {
+                    String owner = rowOwners[c];
+                    if (!owner.equals(lastOwner)) {
+                        Integer index = ownerIndex.get(owner);
+                        if (index == null) {
+                            index = region.ownerNames.size();
+                            ownerIndex.put(owner, index);
+                            region.ownerNames.add(owner);
+                        }
+                        lastOwner = owner;
+                        lastIndex = index;
+                    }
+                    region.owners[i] = lastIndex;
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Get the first row.
+     *
+     * @return the row
+     */
+    public int getRow() { return this.row; }
+
+    /**
+     * Get the first column.
+     *
+     * @return the column
+     */
+    public int getCol() { return this.col; }
+
+    /**
+     * Get the number of rows.
+     *
+     * @return the height
+     */
+    public int getHeight() { return this.height; }
+
+    /**
+     * Get the number of columns.
+     *
+     * @return the width
+     */
+    public int getWidth() { return this.width; }
+
+    /**
+     * Tells whether owners are wanted, or included in a reply.
+     *
+     * @return true if owners are included
+     */
+    public boolean hasOwners() { return this.withOwners; }
+
+    /**
+     * Tells whether times are wanted, or included in a reply.
+     *
+     * @return true if times are included
+     */
+    public boolean hasTimes() { return this.withTimes; }
+
+    /**
+     * Tells whether this region holds tiles, or is only bounds.
+     *
+     * @return true if the tiles are included
+     */
+    public boolean isLoaded() {
+        return this.colors != null && this.colors.length == ((long) this.height * this.width + 1) >> 1;
+    }
+
+    /**
+     * Tells whether this region lies within a board of a given size.
+     *
+     * @param dim the square dimension of the board
+     * @return are the bounds within the board?
+     */
+    public boolean isWithin(int dim) {
+        return this.row >= 0 && this.col >= 0 && this.height >= 0 && this.width >= 0 &&
+                (long) this.row + this.height <= dim && (long) this.col + this.width <= dim;
+    }
+
+    /**
+     * Tells whether a coordinate lies within this region.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @return is the coordinate within the bounds?
+     */
+    public boolean contains(int row, int col) {
+        return row >= this.row && row - this.row < this.height && col >= this.col && col - this.col < this.width;
+    }
+
+    /**
+     * Find a coordinate's position in the packed arrays.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @return the index
+     */
+    private int index(int row, int col) {
+        return (row - this.row) * this.width + (col - this.col);
+    }
+
+    /**
+     * Get the color of a tile.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @rit.pre the region is loaded and the coordinate lies within it
+     * @return the color
+     */
+    public PlaceColor getColor(int row, int col) {
+        int i = index(row, col);
+        int packed = this.colors[i >> 1];
+        return COLORS[(i & 1) == 0 ? (packed >> 4) & 0xF : packed & 0xF];
+    }
+
+    /**
+     * Get the owner of a tile.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @rit.pre the region is loaded and the coordinate lies within it
+     * @return the owner, or "" if owners are not included
+     */
+    public String getOwner(int row, int col) {
+        if (this.owners == null) {
+            return this.ownerNames == null ? "" : this.ownerNames.get(0);
+        }
+        return this.ownerNames.get(this.owners[index(row, col)]);
+    }
+
+    /**
+     * Get the time a tile was changed.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @rit.pre the region is loaded and the coordinate lies within it
+     * @return the time, or 0 if times are not included
+     */
+    public long getTime(int row, int col) {
+        return this.times == null ? 0L : this.times[index(row, col)];
+    }
+
+    /**
+     * Get a tile.
+     *
+     * @param row row, in board coordinates
+     * @param col column, in board coordinates
+     * @rit.pre the region is loaded and the coordinate lies within it
+     * @return a new tile with the color, owner and time
+     */
+    public PlaceTile getTile(int row, int col) {
+        return new PlaceTile(row, col, getOwner(row, col), getColor(row, col), getTime(row, col));
+    }
+
+    /**
+     * Copy part of this region.
+     *
+     * @param bounds the part wanted
+     * @rit.pre the region is loaded and the bounds lie within it
+     * @return a region holding the part's tiles
+     */
+    public PlaceRegion crop(PlaceRegion bounds) {
+        PlaceRegion part = new PlaceRegion(bounds.row, bounds.col, bounds.height, bounds.width,
+                this.withOwners, this.withTimes);
+        int cells = bounds.height * bounds.width;
+        part.colors = new byte[(cells + 1) >> 1];
+        if (this.ownerNames != null) {
+            part.ownerNames = new ArrayList<>(this.ownerNames);
+        }
+        if (this.owners != null) {
+            part.owners = new int[cells];
+        }
+        if (this.times != null) {
+            part.times = new long[cells];
+        }
+        int i = 0;
+        for (int r = bounds.row; r < bounds.row + bounds.height; ++r) {
+            for (int c = bounds.col; c < bounds.col + bounds.width; ++c, ++i) {
+                int number = getColor(r, c).getNumber();
+                part.colors[i >> 1] |= (byte) ((i & 1) == 0 ? number << 4 : number);
+                if (part.owners != null) {
+                    part.owners[i] = this.owners[index(r, c)];
+                }
+                if (part.times != null) {
+                    part.times[i] = this.times[index(r, c)];
+                }
+            }
+        }
+        return part;
+    }
+
+    /**
+     * Get the distinct owners in the region.
+     *
+     * @return the owners, empty if owners are not included
+     */
+    public List<String> getOwners() {
+        return this.ownerNames == null ? List.of() : List.copyOf(this.ownerNames);
+    }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the region as a string
+     */
+    @Override
+    public String toString() {
+        return "Region{" +
+                "row=" + this.row +
+                ", col=" + this.col +
+                ", height=" + this.height +
+                ", width=" + this.width +
+                ", owners=" + this.withOwners +
+                ", times=" + this.withTimes +
+                ", loaded=" + isLoaded() +
+                '}';
+    }
+}
@@ -0,0 +1,139 @@
+package place;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Live statistics about a board, as reported by the server: how many tiles
+ * there are of each color, who places the most tiles and which regions are
+ * busiest right now.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceStatistics implements Serializable {
+    /** the number of tiles of each color, by color number */
+    private long[] colorCounts;
+    /** the users placing the most tiles, most first */
+    private ArrayList<String> topUsers;
+    /** the number of tiles placed by each top user; may overestimate */
+    private long[] topUserCounts;
+    /** the width and height of a region, in tiles */
+    private int regionSize;
+    /** the first row of each of the busiest regions, busiest first */
+    private int[] hotRegionRows;
+    /** the first column of each of the busiest regions, busiest first */
+    private int[] hotRegionCols;
+    /** the recent activity in each of the busiest regions */
+    private double[] hotRegionHeat;
+
+    /**
+     * Create the statistics.
+     *
+     * @param colorCounts the number of tiles of each color, by color number
+     * @param topUsers the users placing the most tiles, most first
+     * @param topUserCounts the number of tiles placed by each top user
+     * @param regionSize the width and height of a region, in tiles
+     * @param hotRegionRows the first row of each of the busiest regions
+     * @param hotRegionCols the first column of each of the busiest regions
+     * @param hotRegionHeat the recent activity in each of the busiest regions
+     */
+    public PlaceStatistics(long[] colorCounts, List<String> topUsers, long[] topUserCounts, int regionSize,
+                           int[] hotRegionRows, int[] hotRegionCols, double[] hotRegionHeat) {
+        this.colorCounts = colorCounts;
+        this.topUsers = new ArrayList<>(topUsers);
+        this.topUserCounts = topUserCounts;
+        this.regionSize = regionSize;
+        this.hotRegionRows = hotRegionRows;
+        this.hotRegionCols = hotRegionCols;
+        this.hotRegionHeat = hotRegionHeat;
+    }
+
+    /**
+     * Get the number of tiles of a color.
+     *
+     * @param color the color
+     * @return the count
+     */
+    public long getColorCount(PlaceColor color) { return this.colorCounts[color.getNumber()]; }
+
+    /**
+     * Get the users placing the most tiles.
+     *
+     * @return the usernames, most first
+     */
+    public List<String> getTopUsers() { return Collections.unmodifiableList(this.topUsers); }
+
+    /**
+     * Get the number of tiles placed by a top user.  This may overestimate,
+     * but never underestimates.
+     *
+     * @param rank the user's position in {@link #getTopUsers()}
+     * @return the count
+     */
+    public long getTopUserCount(int rank) { return this.topUserCounts[rank]; }
+
+    /**
+     * Get the width and height of a region, in tiles.
+     *
+     * @return the region size
+     */
+    public int getRegionSize() { return this.regionSize; }
+
+    /**
+     * Get the number of busiest regions reported.
+     *
+     * @return the number of regions
+     */
+    public int getHotRegionCount() { return this.hotRegionRows.length; }
+
+    /**
+     * Get the first row of a busy region.
+     *
+     * @param rank the region's position, busiest first
+     * @return the row
+     */
+    public int getHotRegionRow(int rank) { return this.hotRegionRows[rank]; }
+
+    /**
+     * Get the first column of a busy region.
+     *
+     * @param rank the region's position, busiest first
+     * @return the column
+     */
+    public int getHotRegionCol(int rank) { return this.hotRegionCols[rank]; }
+
+    /**
+     * Get the recent activity in a busy region: its placements, each
+     * counted less the longer ago it happened.
+     *
+     * @param rank the region's position, busiest first
+     * @return the heat
+     */
+    public double getHotRegionHeat(int rank) { return this.hotRegionHeat[rank]; }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the statistics as a string
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Statistics{colors=[");
+        for (PlaceColor color : PlaceColor.values()) {
+            builder.append(color.getName()).append('=').append(getColorCount(color)).append(' ');
+        }
+        builder.append("], topUsers=[");
+        for (int i = 0; i < this.topUsers.size(); i++) {
+            builder.append(this.topUsers.get(i)).append('=').append(this.topUserCounts[i]).append(' ');
+        }
+        builder.append("], hotRegions=[");
+        for (int i = 0; i < getHotRegionCount(); i++) {
+            builder.append('(').append(this.hotRegionRows[i]).append(',').append(this.hotRegionCols[i])
+                    .append(")=").append(String.format("%.1f", this.hotRegionHeat[i])).append(' ');
+        }
+        return builder.append("]}").toString();
+    }
+}
@@ -1,11 +1,18 @@
 package place;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 
 /**
  * The Board contains a grid of Tile objects at each board coordinate. This is
  * the primary thing the clients are interested in changing.
  *
+ * Once a tile is on the server's board it also has its owner's id in the
+ * server's {@link PlaceOwners}.  A tile with an id is sent with just the id,
+ * so its owner is null until the receiver looks the name up and sets it.
+ *
  * @author Sean Strout @ RIT CS
  */
 public class PlaceTile implements Serializable {
@@ -15,8 +22,10 @@ public class PlaceTile implements Serializable {
     private int col;
     /** the color */
     private PlaceColor color;
-    /** the owner */
-    private String user;
+    /** the owner, sent only when there is no id */
+    private transient String user;
+    /** the owner's id, or PlaceOwners.NO_ID */
+    private int owner = PlaceOwners.NO_ID;
 
     /**
      * the time the tile was changed, in milliseconds.  it is the difference,
@@ -96,12 +105,71 @@ public class PlaceTile implements Serializable {
      */
     public void setTime(long time) { this.time = time; }
 
+    /**
+     * Get the tile's owner.
+     *
+     * @return the username, or null if the tile arrived with just an id
+     *         that has not been looked up
+     */
     public String getOwner() {
         return this.user;
     }
 
+    /**
+     * Change the tile's owner.  Any id the tile had no longer applies.
+     *
+     * @param user the username
+     */
     public void setOwner(String user)    {
         this.user = user;
+        this.owner = PlaceOwners.NO_ID;
+    }
+
+    /**
+     * Get the id of the tile's owner.
+     *
+     * @return the id, or PlaceOwners.NO_ID if it has none
+     */
+    public int getOwnerId() {
+        return this.owner;
+    }
+
+    /**
+     * Set the tile's owner along with its id.
+     *
+     * @param id the owner's id
+     * @param user the username
+     */
+    public void setOwner(int id, String user) {
+        this.owner = id;
+        this.user = user;
+    }
+
+    /**
+     * Write the tile, with the owner's name only if it has no id.
+     *
+     * @param out the stream
+     * @throws IOException if the stream fails
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        if (this.owner == PlaceOwners.NO_ID) {
+            out.writeObject(this.user);
+        }
+    }
+
+    /**
+     * Read the tile, and the owner's name if it has no id.
+     *
+     * @param in the stream
+     * @throws IOException if the stream fails
+     * @throws ClassNotFoundException never
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (this.owner == PlaceOwners.NO_ID) {
+            this.user = (String) in.readObject();
+        }
     }
 
     /**
@@ -0,0 +1,68 @@
+package place;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A group of tiles sent in a single request, so that clients placing many
+ * tiles at once pay for one round trip instead of one per tile.  The server
+ * also uses it to broadcast all the tiles of a batch together.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceTileBatch implements Serializable {
+    /** the tiles, in the order they are applied */
+    private ArrayList<PlaceTile> tiles;
+    /** should the server apply all of the tiles or none of them? */
+    private boolean atomic;
+
+    /**
+     * Create a batch.
+     *
+     * @param tiles the tiles, in the order they are applied
+     * @param atomic true if one invalid tile should reject the whole batch,
+     *               false to apply the valid tiles and skip the rest
+     */
+    public PlaceTileBatch(Collection<PlaceTile> tiles, boolean atomic) {
+        this.tiles = new ArrayList<>(tiles);
+        this.atomic = atomic;
+    }
+
+    /**
+     * Get the tiles.
+     *
+     * @return the tiles, in the order they are applied
+     */
+    public List<PlaceTile> getTiles() { return Collections.unmodifiableList(this.tiles); }
+
+    /**
+     * Get the number of tiles.
+     *
+     * @return the number of tiles
+     */
+    public int size() { return this.tiles.size(); }
+
+    /**
+     * Tells whether one invalid tile rejects the whole batch.
+     *
+     * @return true if the batch is all or nothing
+     */
+    public boolean isAtomic() { return this.atomic; }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the batch as a string
+     */
+    @Override
+    public String toString() {
+        return "PlaceTileBatch{" +
+                "size=" + this.tiles.size() +
+                ", atomic=" + this.atomic +
+                '}';
+    }
+}
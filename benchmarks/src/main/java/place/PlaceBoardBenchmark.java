@@ -0,0 +1,99 @@
+package place;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the board operations every placement goes through:
+ * {@link PlaceBoard#isValid(PlaceTile)}, {@link PlaceBoard#setTile(PlaceTile)}
+ * and {@link PlaceBoard#getTile(int, int)}.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceBoardBenchmark {
+    /** the number of precomputed tiles cycled through */
+    private static final int TILES = 1024;
+
+    @Param({"16", "256", "2048"})
+    public int dim;
+
+    private PlaceBoard board;
+    private PlaceTile[] tiles;
+    private int next;
+
+    @Setup
+    public void setup() {
+        this.board = new PlaceBoard(this.dim);
+        this.tiles = new PlaceTile[TILES];
+        // a fixed seed keeps the access pattern the same from run to run
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < TILES; ++i) {
+            this.tiles[i] = new PlaceTile(random.nextInt(this.dim), random.nextInt(this.dim), "bench",
+                    PlaceColor.values()[random.nextInt(PlaceColor.TOTAL_COLORS)]);
+        }
+    }
+
+    /**
+     * Get the next precomputed tile.
+     *
+     * @return the tile
+     */
+    private PlaceTile nextTile() {
+        PlaceTile tile = this.tiles[this.next];
+        this.next = (this.next + 1) & (TILES - 1);
+        return tile;
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return this.board.isValid(nextTile());
+    }
+
+    @Benchmark
+    public void setTile() {
+        this.board.setTile(nextTile());
+    }
+
+    @Benchmark
+    public PlaceTile getTile() {
+        PlaceTile tile = nextTile();
+        return this.board.getTile(tile.getRow(), tile.getCol());
+    }
+
+    /**
+     * Board construction, which happens once at server start up.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 10)
+    @Fork(1)
+    public static class Construction {
+        @Param({"256", "1024", "4096"})
+        public int dim;
+
+        @Benchmark
+        public PlaceBoard construct() {
+            return new PlaceBoard(this.dim);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package place;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks exporting a whole board with {@link PlaceBoardExporter}, as a
+ * PNG and as a raw framebuffer, into a stream that only counts the bytes.
+ * The board has a third of its tiles painted at random, which is close to
+ * the worst case for the PNG's compression.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PlaceBoardExporterBenchmark {
+    @Param({"1024", "4096"})
+    public int dim;
+
+    private PlaceBoard board;
+    private CountingStream out;
+
+    /**
+     * Discards what is written, counting the bytes.
+     */
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            this.count += len;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        this.board = new PlaceBoard(this.dim);
+        // a fixed seed keeps the board the same from run to run
+        Random random = new Random(42);
+        for (long i = 0; i < (long) this.dim * this.dim / 3; ++i) {
+            this.board.setTile(new PlaceTile(random.nextInt(this.dim), random.nextInt(this.dim), "bench",
+                    PlaceColor.values()[random.nextInt(PlaceColor.TOTAL_COLORS)]));
+        }
+        this.out = new CountingStream();
+    }
+
+    @Benchmark
+    public long png() throws IOException {
+        new PlaceBoardExporter(this.board).writePng(this.out);
+        return this.out.count;
+    }
+
+    @Benchmark
+    public long framebuffer() throws IOException {
+        new PlaceBoardExporter(this.board).writeFramebuffer(this.out);
+        return this.out.count;
+    }
+}
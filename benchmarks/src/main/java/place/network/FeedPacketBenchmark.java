@@ -0,0 +1,166 @@
+package place.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import place.PlaceColor;
+import place.PlaceTile;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the multicast feed's encode and decode path, which is meant
+ * not to allocate at all: writing a full packet of changes into a pooled
+ * direct buffer through a reused {@link FeedPacket}, reading one back in
+ * place, sending one through a DatagramChannel and receiving it, and
+ * reading the wall clock.  Compare with
+ * {@link PlaceRequestBenchmark}, which serializes a request per message.
+ *
+ * Run with the GC profiler to see the bytes allocated per operation:
+ *
+ *     java -jar benchmarks/target/benchmarks.jar FeedPacketBenchmark -prof gc
+ *
+ * or run this class's main method, which does so and fails if any of the
+ * benchmarks allocates in steady state:
+ *
+ *     java -cp benchmarks/target/benchmarks.jar place.network.FeedPacketBenchmark
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedPacketBenchmark {
+    /** the most bytes per operation still counted as not allocating, for measurement noise */
+    private static final double ALLOCATION_TOLERANCE = 1.0;
+
+    private final BufferPool pool = new BufferPool(2, FeedPacket.MAX_SIZE);
+    private final FeedPacket packet = new FeedPacket();
+    private PlaceTile[] tiles;
+    private ByteBuffer out;
+    private ByteBuffer in;
+    private DatagramChannel sender;
+    private DatagramChannel receiver;
+    private SocketAddress target;
+    private long sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        this.tiles = new PlaceTile[FeedPacket.MAX_TILES];
+        for (int i = 0; i < this.tiles.length; ++i) {
+            this.tiles[i] = new PlaceTile(i, i * 3, "bench",
+                    PlaceColor.values()[i & (PlaceColor.TOTAL_COLORS - 1)], System.currentTimeMillis());
+        }
+        this.out = this.pool.acquire();
+        this.in = this.pool.acquire();
+        this.receiver = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        this.sender = DatagramChannel.open();
+        this.target = this.receiver.getLocalAddress();
+        // a packet ready to be read
+        encode();
+        this.in.put(this.out).flip();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.sender.close();
+        this.receiver.close();
+        this.pool.release(this.out);
+        this.pool.release(this.in);
+    }
+
+    @Benchmark
+    public int encode() {
+        this.out.clear();
+        this.packet.start(this.out, ++this.sequence);
+        for (PlaceTile tile : this.tiles) {
+            this.packet.add(tile);
+        }
+        this.packet.finish();
+        return this.out.remaining();
+    }
+
+    @Benchmark
+    public long decode() {
+        this.in.rewind();
+        long sum = 0;
+        if (this.packet.wrap(this.in)) {
+            for (int i = 0; i < this.packet.getCount(); ++i) {
+                sum += this.packet.getRow(i) + this.packet.getCol(i)
+                        + this.packet.getColor(i).getNumber() + this.packet.getTime(i);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long sendAndReceive() throws IOException {
+        encode();
+        this.sender.send(this.out, this.target);
+        this.in.clear();
+        this.receiver.receive(this.in);
+        this.in.flip();
+        return this.packet.wrap(this.in) ? this.packet.getNext() : -1;
+    }
+
+    @Benchmark
+    public long clock() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Run the benchmarks with the GC profiler and check none of them
+     * allocates.
+     *
+     * @param args ignored
+     * @throws RunnerException if the benchmarks cannot be run
+     */
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(FeedPacketBenchmark.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+        boolean allocates = false;
+        for (RunResult run : results) {
+            Result<?> allocated = run.getSecondaryResults().get("gc.alloc.rate.norm");
+            String name = run.getParams().getBenchmark();
+            if (allocated == null) {
+                System.out.println(name + ": no allocation figures from the GC profiler");
+                allocates = true;
+            } else if (allocated.getScore() > ALLOCATION_TOLERANCE) {
+                System.out.printf("%s: allocates %.1f bytes/op%n", name, allocated.getScore());
+                allocates = true;
+            } else {
+                System.out.printf("%s: allocation free (%.3f bytes/op)%n", name, allocated.getScore());
+            }
+        }
+        if (allocates) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package place.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import place.PlaceBoard;
+import place.PlaceColor;
+import place.PlaceTile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the Java serialization of the two requests that dominate
+ * traffic: the per-placement TILE_CHANGED / CHANGE_TILE request and the
+ * one-off BOARD request sent at login.
+ *
+ * Each request is written to and read from a fresh object stream, as a
+ * standalone message.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlaceRequestBenchmark {
+    @Param({"64", "512"})
+    public int dim;
+
+    private PlaceRequest<PlaceTile> tileRequest;
+    private PlaceRequest<PlaceBoard> boardRequest;
+    private byte[] tileBytes;
+    private byte[] boardBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        this.tileRequest = new PlaceRequest<>(PlaceRequest.RequestType.TILE_CHANGED,
+                new PlaceTile(3, 4, "bench", PlaceColor.RED, System.currentTimeMillis()));
+        this.boardRequest = new PlaceRequest<>(PlaceRequest.RequestType.BOARD, new PlaceBoard(this.dim));
+        this.tileBytes = serialize(this.tileRequest);
+        this.boardBytes = serialize(this.boardRequest);
+    }
+
+    /**
+     * Write a request to a byte array.
+     *
+     * @param request the request
+     * @return the serialized request
+     * @throws IOException never, the stream is in memory
+     */
+    private static byte[] serialize(PlaceRequest<?> request) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUnshared(request);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Read a request from a byte array.
+     *
+     * @param bytes the serialized request
+     * @return the request
+     * @throws IOException never, the stream is in memory
+     * @throws ClassNotFoundException never, the classes are local
+     */
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readUnshared();
+        }
+    }
+
+    @Benchmark
+    public byte[] writeTile() throws IOException {
+        return serialize(this.tileRequest);
+    }
+
+    @Benchmark
+    public Object readTile() throws IOException, ClassNotFoundException {
+        return deserialize(this.tileBytes);
+    }
+
+    @Benchmark
+    public byte[] writeBoard() throws IOException {
+        return serialize(this.boardRequest);
+    }
+
+    @Benchmark
+    public Object readBoard() throws IOException, ClassNotFoundException {
+        return deserialize(this.boardBytes);
+    }
+}
@@ -0,0 +1,110 @@
+package place.server;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import place.PlaceColor;
+import place.PlaceException;
+import place.PlaceTile;
+import place.network.PlaceRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link PlaceServer#changeTile(PlaceTile)}, whose cost is
+ * dominated by queueing the TILE_CHANGED request for every connected client.
+ * Clients are simulated by {@link ServerThread}s whose writer threads write
+ * to in-memory sinks that discard their output, so only the server's own
+ * work is measured.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    @Param({"1", "100", "1000"})
+    public int clients;
+
+    private PlaceServer server;
+    private List<ServerThread> threads;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException, ClassNotFoundException, PlaceException {
+        this.server = new PlaceServer(0, 256);
+        this.threads = new ArrayList<>(this.clients);
+        for (int i = 0; i < this.clients; ++i) {
+            ServerThread thread = new ServerThread(new ObjectOutputStream(OutputStream.nullOutputStream()),
+                    login("bench" + i), this.server);
+            this.server.addUser(thread);
+            // just the writer; there is nothing for a reader to read
+            thread.startWriter();
+            this.threads.add(thread);
+        }
+    }
+
+    /**
+     * Create a client input stream holding just a LOGIN request.
+     *
+     * @param username the username to log in with
+     * @return the input stream
+     * @throws IOException never, the stream is in memory
+     */
+    private static ObjectInputStream login(String username) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN, username));
+        }
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /**
+     * Object streams remember every object written to them; forget them
+     * between iterations so the handle tables don't grow without bound.
+     * Each writer is let finish first, since the streams are its.
+     */
+    @TearDown(Level.Iteration)
+    public void resetStreams() throws IOException {
+        for (ServerThread thread : this.threads) {
+            while (thread.getOutboundBacklog() > 0) {
+                Thread.onSpinWait();
+            }
+            thread.getNetworkOut().reset();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.server.close();
+    }
+
+    @Benchmark
+    public boolean changeTile() throws IOException {
+        int i = this.next++;
+        return this.server.changeTile(new PlaceTile(i & 255, (i >> 8) & 255, "bench",
+                PlaceColor.values()[i & (PlaceColor.TOTAL_COLORS - 1)], i));
+    }
+}
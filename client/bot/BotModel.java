@@ -0,0 +1,74 @@
+package place.client.bot;
+
+import place.PlaceBoard;
+import place.PlaceChecksum;
+import place.PlacePreview;
+import place.PlaceRegion;
+import place.PlaceTile;
+import place.model.BoardModel;
+
+import java.util.function.Consumer;
+
+/**
+ * The model of a load generator bot.  A bot never draws the board, so
+ * instead of keeping every tile it keeps just the board's dimension, to
+ * know where it may place, and hands each change straight to a callback
+ * on its listener thread, with no dispatch thread of its own.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class BotModel implements BoardModel {
+    /** is told of every change the bot receives */
+    private final Consumer<PlaceTile> changed;
+    /** the square dimension of the board, 0 until it arrives */
+    private volatile int dim;
+
+    /**
+     * Create a bot's model.
+     *
+     * @param changed is told of every change the bot receives; must be quick
+     */
+    BotModel(Consumer<PlaceTile> changed) {
+        this.changed = changed;
+    }
+
+    /**
+     * Get the square dimension of the board.
+     *
+     * @return the dimension, or 0 if the board has not arrived
+     */
+    int getDim() {
+        return this.dim;
+    }
+
+    @Override
+    public void setBoard(PlaceBoard board) {
+        this.dim = board.DIM;
+    }
+
+    @Override
+    public void setPreview(PlacePreview preview) {
+        this.dim = preview.DIM;
+    }
+
+    @Override
+    public void changeTile(PlaceTile tile) {
+        this.changed.accept(tile);
+    }
+
+    @Override
+    public void applyRegion(PlaceRegion region) {
+        // the bot doesn't keep the tiles
+    }
+
+    @Override
+    public void repairRegion(PlaceRegion region) {
+        // the bot doesn't keep the tiles
+    }
+
+    @Override
+    public PlaceChecksum getChecksum() {
+        throw new UnsupportedOperationException("Bots don't keep the board");
+    }
+}
@@ -0,0 +1,144 @@
+package place.client.bot;
+
+import place.PaletteQuantizer;
+import place.PlaceException;
+import place.PlaceRegion;
+import place.model.ClientModel;
+import place.network.NetworkClient;
+import place.server.PlaceServer;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Paints an image onto a Place board.  The image is quantized to the
+ * PlaceColors with {@link PaletteQuantizer} and sent as CHANGE_REGION
+ * requests, each a band of rows as large as the server accepts.  It is run
+ * on the command line as:
+ *
+ * $ java PlaceImageImport host port username image row col [dither [width]]
+ *
+ * Where row and col are where the image's top left pixel goes, dither is
+ * NONE (the default), ORDERED or DIFFUSION, and width, if given, scales the
+ * image to that many tiles across first.  The part of the image off the
+ * board is dropped.  The server only lets clients logged in with its relay
+ * key paint regions, so the PLACE_RELAY_KEY environment variable must hold
+ * it; the import logs in with it and sends regions of up to
+ * PlaceServer.MAX_REGION_AREA tiles.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceImageImport {
+    private PlaceImageImport() {
+    }
+
+    /**
+     * Scale an image to a width, keeping its shape.
+     *
+     * @param image the image
+     * @param width the width wanted
+     * @return the scaled image
+     */
+    private static BufferedImage scale(BufferedImage image, int width) {
+        int height = Math.max(1, (int) ((long) image.getHeight() * width / image.getWidth()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    /**
+     * Quantize an image and paint it onto the board.
+     *
+     * @param client the connection, with its listener started
+     * @param dim the square dimension of the board
+     * @param image the image
+     * @param row the row of the image's top left pixel
+     * @param col the column of the image's top left pixel
+     * @param dither how to dither
+     * @param owner the owner of the painted tiles
+     * @param maxArea the most tiles the server accepts in one region
+     * @return the number of tiles changed
+     * @throws PlaceException if the server refuses a region
+     * @throws InterruptedException if interrupted while waiting for the server
+     */
+    public static int paint(NetworkClient client, int dim, BufferedImage image, int row, int col,
+                            PaletteQuantizer.Dither dither, String owner, int maxArea)
+            throws PlaceException, InterruptedException {
+        int height = Math.min(image.getHeight(), dim - row);
+        int width = Math.min(image.getWidth(), dim - col);
+        if (row < 0 || col < 0 || height <= 0 || width <= 0) {
+            throw new PlaceException("The image is not on the board");
+        }
+        long start = System.nanoTime();
+        PlaceRegion region = PaletteQuantizer.quantize(image.getSubimage(0, 0, width, height), row, col, dither, owner);
+        System.out.printf("quantized %dx%d in %.1fms%n", width, height, (System.nanoTime() - start) / 1e6);
+
+        int rows = Math.max(1, maxArea / width);
+        int changed = 0;
+        for (int top = 0; top < height; top += rows) {
+            PlaceRegion band = region.crop(new PlaceRegion(row + top, col, Math.min(rows, height - top), width,
+                    false, false));
+            try {
+                changed += client.changeRegion(band).get();
+            } catch (ExecutionException e) {
+                throw new PlaceException(e.getCause());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Runs the import.
+     *
+     * @param args host port username image row col [dither [width]]
+     */
+    public static void main(String[] args) {
+        if (args.length < 6 || args.length > 8) {
+            System.out.println("Usage: java PlaceImageImport host port username image row col"
+                    + " [NONE|ORDERED|DIFFUSION [width]]");
+            System.exit(1);
+        }
+        PaletteQuantizer.Dither dither = args.length > 6 ?
+                PaletteQuantizer.Dither.valueOf(args[6].toUpperCase()) : PaletteQuantizer.Dither.NONE;
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            System.out.println(PlaceServer.RELAY_KEY_VARIABLE + " must be set to the server's relay key");
+            System.exit(1);
+        }
+        try {
+            BufferedImage image = ImageIO.read(new File(args[3]));
+            if (image == null) {
+                System.out.println("Cannot read " + args[3] + " as an image");
+                System.exit(1);
+            }
+            if (args.length > 7) {
+                image = scale(image, Integer.parseInt(args[7]));
+            }
+            ClientModel model = new ClientModel();
+            NetworkClient client = NetworkClient.admin(args[0], Integer.parseInt(args[1]), model, args[2], relayKey);
+            client.connect();
+            client.startListener();
+            int changed = paint(client, model.getBoard().DIM, image, Integer.parseInt(args[4]),
+                    Integer.parseInt(args[5]), dither, args[2], PlaceServer.MAX_REGION_AREA);
+            System.out.println(changed + " tiles changed");
+            client.close();
+        } catch (PlaceException e) {
+            System.err.println("Failed to import the image!");
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Cannot read " + args[3] + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println(e.getMessage());
+        }
+        System.exit(0);
+    }
+}
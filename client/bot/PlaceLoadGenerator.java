@@ -0,0 +1,283 @@
+package place.client.bot;
+
+import place.LatencyHistogram;
+import place.PlaceColor;
+import place.PlaceException;
+import place.PlaceTile;
+import place.network.NetworkClient;
+import place.network.PlaceRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless load generator that logs many bots in to a Place server through
+ * the normal {@link NetworkClient} protocol and has each one place tiles at a
+ * steady rate.  It is run on the command line as:
+ *
+ * $ java PlaceLoadGenerator host port bots seconds [distribution] [intervalMs]
+ *
+ * Where distribution is UNIFORM (the default), HOTSPOT or ZIPF, and intervalMs
+ * is how often each bot places a tile (default 500, the server's own limit).
+ * Start the server with a connectionDelay of 0 so the bots may all connect
+ * from the same address.
+ *
+ * The bots are made to be many to a process.  Each keeps just the board's
+ * dimension rather than the board, handles the changes it receives on its
+ * listener thread, and writes its requests from a pool shared by all the
+ * bots, so each bot costs one thread, the listener, and no board.  They
+ * log in {@value #JOIN_THREADS} at a time.
+ *
+ * It reports, as percentiles:
+ *      join: from opening the connection to receiving the board<br>
+ *      ack: from sending CHANGE_TILE to receiving the server's ACK<br>
+ *      broadcast: from sending CHANGE_TILE to each bot's model receiving
+ *          the TILE_CHANGED (measured for every bot, not just the sender)<br>
+ * along with placement and broadcast throughput.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceLoadGenerator {
+    /** how long to wait for replies still in flight once placing stops */
+    private static final long DRAIN_MILLIS = 2000;
+    /** how long a tile waits for its broadcasts before it is forgotten */
+    private static final long EXPIRE_MILLIS = 30000;
+    /** how many bots may be logging in at once */
+    private static final int JOIN_THREADS = 16;
+    /** how many threads the bots' requests are written from */
+    private static final int WRITE_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final String hostName;
+    private final int port;
+    private final PlacementDistribution distribution;
+
+    /** the connected bots */
+    private final List<NetworkClient> clients = new ArrayList<>();
+    /** writes every bot's requests */
+    private final ExecutorService writers = Executors.newFixedThreadPool(WRITE_THREADS);
+    /** the square dimension of the board */
+    private volatile int dim;
+    /** the number of bots each broadcast should reach */
+    private volatile int bots;
+    /** the tiles in flight, by owner and coordinates */
+    private final Map<String, InFlight> sent = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram join = new LatencyHistogram();
+    private final LatencyHistogram ack = new LatencyHistogram();
+    private final LatencyHistogram broadcast = new LatencyHistogram();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Create a load generator.
+     *
+     * @param hostName the name of the host running the server
+     * @param port the port the server is running on
+     * @param distribution where bots place their tiles
+     */
+    public PlaceLoadGenerator(String hostName, int port, PlacementDistribution distribution) {
+        this.hostName = hostName;
+        this.port = port;
+        this.distribution = distribution;
+    }
+
+    /**
+     * The key identifying a tile in flight.
+     *
+     * @param tile the tile
+     * @return the key
+     */
+    private static String key(PlaceTile tile) {
+        return tile.getOwner() + ':' + tile.getRow() + ',' + tile.getCol();
+    }
+
+    /**
+     * Log in a bot and start listening for changes.
+     *
+     * @param name the bot's username
+     * @return the bot's connection
+     * @throws PlaceException if the bot can't log in
+     */
+    private NetworkClient join(String name) throws PlaceException {
+        long start = System.nanoTime();
+        BotModel model = new BotModel(this::received);
+        NetworkClient client = NetworkClient.pooled(this.hostName, this.port, model, name, this.writers);
+        client.connect();
+        this.join.record(System.nanoTime() - start);
+        this.dim = model.getDim();
+        client.startListener();
+        return client;
+    }
+
+    /**
+     * Record a bot receiving a change, on its listener thread.
+     *
+     * @param tile the changed tile
+     */
+    private void received(PlaceTile tile) {
+        String key = key(tile);
+        InFlight inFlight = this.sent.get(key);
+        if (inFlight != null) {
+            this.broadcast.record(System.nanoTime() - inFlight.time);
+            // forget the tile once every bot has seen it
+            if (inFlight.received.incrementAndGet() >= this.bots) {
+                this.sent.remove(key, inFlight);
+            }
+        }
+    }
+
+    /**
+     * Have a bot place one tile.
+     *
+     * @param client the bot's connection
+     * @param name the bot's username
+     * @param dim the square dimension of the board
+     */
+    private void place(NetworkClient client, String name, int dim) {
+        Random random = ThreadLocalRandom.current();
+        PlaceTile tile = new PlaceTile(this.distribution.next(random, dim), this.distribution.next(random, dim),
+                name, PlaceColor.values()[random.nextInt(PlaceColor.TOTAL_COLORS)]);
+        long start = System.nanoTime();
+        String key = key(tile);
+        InFlight inFlight = new InFlight(start);
+        this.sent.put(key, inFlight);
+        client.changeTile(new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILE, tile))
+                .whenComplete((reply, error) -> {
+                    if (error == null) {
+                        this.ack.record(System.nanoTime() - start);
+                        this.accepted.incrementAndGet();
+                    } else {
+                        // a refused tile is never broadcast
+                        this.sent.remove(key, inFlight);
+                        this.rejected.incrementAndGet();
+                    }
+                });
+    }
+
+    /**
+     * Forget the tiles whose broadcasts have not all arrived in time, so
+     * lost or overwritten ones don't pile up.
+     */
+    private void expire() {
+        long oldest = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(EXPIRE_MILLIS);
+        this.sent.values().removeIf(inFlight -> inFlight.time - oldest < 0);
+    }
+
+    /**
+     * Connect the bots, run the load and print a report.
+     *
+     * @param bots the number of bots
+     * @param seconds how long to place tiles for
+     * @param intervalMillis how often each bot places a tile
+     * @throws PlaceException if a bot can't log in
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(int bots, int seconds, long intervalMillis) throws PlaceException, InterruptedException {
+        this.bots = bots;
+        long joinStart = System.nanoTime();
+        ExecutorService joining = Executors.newFixedThreadPool(JOIN_THREADS);
+        try {
+            List<Future<NetworkClient>> joined = new ArrayList<>();
+            for (int i = 0; i < bots; i++) {
+                String name = "bot" + i;
+                joined.add(joining.submit(() -> join(name)));
+            }
+            for (Future<NetworkClient> client : joined) {
+                this.clients.add(client.get());
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof PlaceException ? (PlaceException) e.getCause()
+                    : new PlaceException(e.getCause());
+        } finally {
+            joining.shutdownNow();
+        }
+        System.out.printf("%d bots joined in %.1fs%n", bots, (System.nanoTime() - joinStart) / 1e9);
+
+        int dim = this.dim;
+        ScheduledExecutorService scheduler =
+                Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+        long start = System.nanoTime();
+        for (int i = 0; i < bots; i++) {
+            NetworkClient client = this.clients.get(i);
+            String name = "bot" + i;
+            // spread the bots out over one interval so they don't all fire together
+            scheduler.scheduleAtFixedRate(() -> place(client, name, dim),
+                    ThreadLocalRandom.current().nextLong(intervalMillis), intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleAtFixedRate(this::expire, EXPIRE_MILLIS, EXPIRE_MILLIS, TimeUnit.MILLISECONDS);
+        Thread.sleep(seconds * 1000L);
+        scheduler.shutdownNow();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Thread.sleep(DRAIN_MILLIS);
+
+        System.out.println("join:      " + this.join);
+        System.out.println("ack:       " + this.ack);
+        System.out.println("broadcast: " + this.broadcast);
+        System.out.printf("placements: %d accepted, %d rejected, %.1f/s%n",
+                this.accepted.get(), this.rejected.get(), this.accepted.get() / elapsed);
+        System.out.printf("broadcasts: %.1f received/s%n", this.broadcast.getCount() / elapsed);
+
+        for (NetworkClient client : this.clients) {
+            client.close();
+        }
+        this.writers.shutdownNow();
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args host port bots seconds [distribution] [intervalMs]
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 6) {
+            System.out.println("Usage: java PlaceLoadGenerator host port bots seconds"
+                    + " [UNIFORM|HOTSPOT|ZIPF] [intervalMs]");
+            System.exit(1);
+        }
+        PlacementDistribution distribution = args.length > 4 ?
+                PlacementDistribution.valueOf(args[4].toUpperCase()) : PlacementDistribution.UNIFORM;
+        long interval = args.length > 5 ? Long.parseLong(args[5]) : 500L;
+        try {
+            new PlaceLoadGenerator(args[0], Integer.parseInt(args[1]), distribution)
+                    .run(Integer.parseInt(args[2]), Integer.parseInt(args[3]), interval);
+        } catch (PlaceException e) {
+            System.err.println("Failed to run load!");
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            System.out.println(e.getMessage());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * A tile in flight: when it was sent and how many bots have seen it
+     */
+    private static class InFlight {
+        /** when the tile was sent, from System.nanoTime */
+        private final long time;
+        /** the bots that have received its broadcast */
+        private final AtomicInteger received = new AtomicInteger();
+
+        /**
+         * Create a tile in flight.
+         *
+         * @param time when the tile was sent
+         */
+        InFlight(long time) {
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package place.client.bot;
+
+import java.util.Random;
+
+/**
+ * Where simulated users place their tiles.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public enum PlacementDistribution {
+    /** every tile on the board is equally likely */
+    UNIFORM {
+        @Override
+        int next(Random random, int dim) {
+            return random.nextInt(dim);
+        }
+    },
+
+    /**
+     * most placements land near the center of the board, normally
+     * distributed with a standard deviation of a tenth of the board
+     */
+    HOTSPOT {
+        @Override
+        int next(Random random, int dim) {
+            int coord = (int) Math.round(dim / 2.0 + random.nextGaussian() * dim / 10.0);
+            return Math.max(0, Math.min(dim - 1, coord));
+        }
+    },
+
+    /**
+     * each row and column is picked by a Zipf distribution (exponent 1), so
+     * a few rows and columns, and the tiles where they cross, get most of the
+     * placements
+     */
+    ZIPF {
+        @Override
+        int next(Random random, int dim) {
+            // inverse of the harmonic CDF, H(k) ~ ln(k) + gamma
+            double target = random.nextDouble() * (Math.log(dim) + EULER_GAMMA);
+            int rank = (int) Math.exp(target - EULER_GAMMA);
+            return Math.max(0, Math.min(dim - 1, rank));
+        }
+    };
+
+    /** the Euler-Mascheroni constant */
+    private static final double EULER_GAMMA = 0.5772156649;
+
+    /**
+     * Pick a row or column.
+     *
+     * @param random the random source
+     * @param dim the square dimension of the board
+     * @return a coordinate, 0 to dim-1
+     */
+    abstract int next(Random random, int dim);
+}
@@ -14,6 +14,7 @@ import javafx.stage.Stage;
 import place.PlaceColor;
 import place.PlaceException;
 import place.PlaceTile;
+import place.model.BoardSnapshot;
 import place.model.ClientModel;
 import place.model.Observer;
 import place.network.NetworkClient;
@@ -22,18 +23,18 @@ import place.network.PlaceRequest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.TimeZone;
 
-import static java.lang.Thread.sleep;
-
 /**
  * PlaceGUI uses JavaFX graphics to visualize Place
  *
  * @author Frank Abbey @fra1489
  * @author Will Andrews @wta9748
  */
-public class PlaceGUI extends Application implements Observer<ClientModel, PlaceTile> {
+public class PlaceGUI extends Application implements Observer<ClientModel, List<PlaceTile>> {
 
     // Place data members
     private ClientModel clientModel;
@@ -70,7 +71,8 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
     @Override
     public void start(Stage primaryStage) {
 
-        boardDim = clientModel.getBoard().DIM;
+        BoardSnapshot snapshot = clientModel.getBoard();
+        boardDim = snapshot.DIM;
 
         borderPane = new BorderPane();
         gridPane = new GridPane();
@@ -86,7 +88,7 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
         for(int i = 0; i < boardDim; i++) {
             for(int k = 0; k < boardDim; k++) {
                 //get Color of Tile at this position from Model
-                fillColor = clientModel.getBoard().getTile(i, k).getColor();
+                fillColor = snapshot.getTile(i, k).getColor();
 
                 box = new Rectangle(scaling / (boardDim * 1.1),scaling / (boardDim *1.1),
                         Paint.valueOf(fillColor.getName()));
@@ -100,17 +102,17 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
                 box.setOnMouseClicked(e -> {
                     networkClient.changeTile(
                             new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILE,
-                                    new PlaceTile(tempI, tempK, userName, fillColor, new Date().getTime())));
-                    try {
-                        sleep(500);
-                    } catch (InterruptedException e1) {
-                        e1.printStackTrace();
-                    }
+                                    new PlaceTile(tempI, tempK, userName, fillColor, System.currentTimeMillis())))
+                            // sent in the background so the UI thread never waits on the server
+                            .exceptionally(e1 -> {
+                                System.out.println(e1.getMessage());
+                                return null;
+                            });
                 });
 
                 gridPane.add(box, k, i);
 
-                PlaceTile currentTile = clientModel.getBoard().getTile(k, i);
+                PlaceTile currentTile = snapshot.getTile(k, i);
                 currentOwner = currentTile.getOwner();
 
             }
@@ -206,20 +208,32 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
      * the PLaceGUI class
      *
      * @param model - the current model
-     * @param tile - the PlaceTile that has changed
+     * @param tiles - the PlaceTiles that have changed (null if the whole board changed)
      */
     @Override
-    public void update(ClientModel model, PlaceTile tile) {
+    public void update(ClientModel model, List<PlaceTile> tiles) {
         javafx.application.Platform.runLater( () -> {
-            this.refresh(model, tile);
+            this.refresh(model, tiles);
         });
     }
 
     /**
-     * refresh is used to update the graphics interface in real time, updating the tile
-     * sent in
+     * refresh is used to update the graphics interface in real time, updating the tiles
+     * sent in, or every tile if the whole board changed
+     *
+     * @param model - the current model
+     * @param tiles - the PlaceTiles that have changed (null if the whole board changed)
      */
-    public void refresh(ClientModel model, PlaceTile tile) {
+    public void refresh(ClientModel model, List<PlaceTile> tiles) {
+        // positions of the changed tiles, so each Node is checked in constant time
+        Set<Long> changed = new HashSet<>();
+        if (tiles != null) {
+            for (PlaceTile tile : tiles) {
+                changed.add(((long) tile.getRow() << 32) | tile.getCol());
+            }
+        }
+        // read the whole refresh from one consistent version of the board
+        BoardSnapshot snapshot = model.getBoard();
         // loop through all Nodes on GridPane (only known way to get a Node by coordinates
         for(Node currentNode : gridPane.getChildren()) {
             if(currentNode instanceof Rectangle) {
@@ -227,7 +241,7 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
                 Rectangle currentBox = (Rectangle) currentNode;
                 int row = GridPane.getRowIndex(currentBox);
                 int col = GridPane.getColumnIndex(currentBox);
-                PlaceTile currentTile = model.getBoard().getTile(row, col);
+                PlaceTile currentTile = snapshot.getTile(row, col);
 
                 currentOwner = currentTile.getOwner();
 
@@ -239,8 +253,13 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
                 String timeFormatted = timeFormatter.format(date);
                 String dateFormatted = dateFormatter.format(date);
 
-                // if this is the PlaceTile to be updated (initially the tile sent is null)
-                if ((tile != null) && (row == tile.getRow() && col == tile.getCol())) {
+                // the whole board changed, e.g. it was loaded, resynced or the
+                // dispatcher overflowed, so repaint every tile from the snapshot
+                if (tiles == null) {
+                    currentBox.setFill(Paint.valueOf(currentTile.getColor().getName()));
+                }
+                // if this is a PlaceTile to be updated
+                else if (changed.contains(((long) row << 32) | col)) {
                     currentBox.setFill(Paint.valueOf(currentTile.getColor().getName()));
                     // output Tile Changes to terminal
                     System.out.println("Tile Change: (" + col + "," + row + ") "
@@ -286,6 +305,7 @@ public class PlaceGUI extends Application implements Observer<ClientModel, Place
         }
         catch(PlaceException e) {
             System.out.println(e.getMessage());
+            System.exit(1);
         }
 
     }
@@ -1,5 +1,6 @@
 package place.client.ptui;
 
+import place.PlaceBoardEncoder;
 import place.PlaceColor;
 import place.PlaceException;
 import place.PlaceTile;
@@ -10,20 +11,19 @@ import place.network.PlaceRequest;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.util.List;
 import java.util.Scanner;
 
-import static java.lang.Thread.sleep;
-
 /**
  * PlacePTUI is the plain text UI for Place
  *
  * @author Frank Abbey @fra1489
  * @author Will Andrews @wta9748
  */
-public class PlacePTUI extends ConsoleApplication implements Observer<ClientModel, PlaceTile> {
+public class PlacePTUI extends ConsoleApplication implements Observer<ClientModel, List<PlaceTile>> {
 
     private ClientModel clientModel;
     private Scanner in;
@@ -34,10 +34,10 @@ public class PlacePTUI extends ConsoleApplication implements Observer<ClientMode
      * Calls private refresh method to get an updated board
      * and ask for input
      * @param model
-     * @param tile
+     * @param tiles the changed tiles (null if the whole board changed)
      */
     @Override
-    public void update(ClientModel model, PlaceTile tile) {
+    public void update(ClientModel model, List<PlaceTile> tiles) {
         this.refresh();
     }
 
@@ -49,8 +49,17 @@ public class PlacePTUI extends ConsoleApplication implements Observer<ClientMode
         final Reader reader = new InputStreamReader(System.in);
         //Used a InputStreamReader to only get input from keyboard when there is something present
         in = new Scanner(reader);
-        System.out.println("\n" + clientModel.getBoard());
-        System.out.println("\nMake a move: ");
+        // stream the board rather than building it into one String
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out));
+        out.println();
+        try {
+            new PlaceBoardEncoder(clientModel.getBoard()).write(out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        out.println();
+        out.println("\nMake a move: ");
+        out.flush();
 
         try {
             if(reader.ready()) {
@@ -62,9 +71,12 @@ public class PlacePTUI extends ConsoleApplication implements Observer<ClientMode
                             new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILE,
                                     new PlaceTile(Integer.parseInt(moves[0]),
                                             Integer.parseInt(moves[1]),
-                                            userName, PlaceColor.values()[Integer.parseInt(moves[2])])));
-
-                    sleep(500);
+                                            userName, PlaceColor.values()[Integer.parseInt(moves[2])])))
+                            // the request is sent in the background, report a rejected move when it comes back
+                            .exceptionally(e -> {
+                                System.out.println(e.getMessage());
+                                return null;
+                            });
                 }
                 else {
                     networkClient.close();
@@ -72,7 +84,7 @@ public class PlacePTUI extends ConsoleApplication implements Observer<ClientMode
                     System.exit(1);
                 }
             }
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -95,7 +107,8 @@ public class PlacePTUI extends ConsoleApplication implements Observer<ClientMode
             networkClient.connect();
 
         } catch (PlaceException e) {
-            e.printStackTrace();
+            System.out.println(e.getMessage());
+            System.exit(1);
         }
 
     }
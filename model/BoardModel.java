@@ -0,0 +1,65 @@
+package place.model;
+
+import place.PlaceBoard;
+import place.PlaceChecksum;
+import place.PlacePreview;
+import place.PlaceRegion;
+import place.PlaceTile;
+
+/**
+ * What a NetworkClient hands the server's board and its changes to.  The
+ * views use a ClientModel, which keeps every tile; a headless client that
+ * never draws the board can keep just what it needs.  Every method but
+ * getChecksum is called on the client's listener thread.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public interface BoardModel {
+    /**
+     * Sets the board, sent on login or instead of changes the client fell
+     * too far behind on.
+     *
+     * @param board the server's board
+     */
+    void setBoard(PlaceBoard board);
+
+    /**
+     * Sets the board from a preview, when it is loaded progressively; the
+     * detail arrives later as regions.
+     *
+     * @param preview the low resolution preview of the board
+     */
+    void setPreview(PlacePreview preview);
+
+    /**
+     * Applies a change to one tile.
+     *
+     * @param tile the changed tile
+     */
+    void changeTile(PlaceTile tile);
+
+    /**
+     * Applies a region sent while the board loads progressively, keeping
+     * tiles that have changed since it was read.
+     *
+     * @param region the loaded region
+     */
+    void applyRegion(PlaceRegion region);
+
+    /**
+     * Replaces a region with a copy fetched after its checksum was found to
+     * differ from the server's.
+     *
+     * @param region the loaded region
+     */
+    void repairRegion(PlaceRegion region);
+
+    /**
+     * Gets the checksums over the board, to compare with the server's.
+     *
+     * @return the board's checksums
+     * @throws UnsupportedOperationException if the model doesn't keep the tiles
+     */
+    PlaceChecksum getChecksum();
+}
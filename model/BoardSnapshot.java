@@ -0,0 +1,82 @@
+package place.model;
+
+import place.PlaceBoardView;
+import place.PlacePreview;
+import place.PlaceTile;
+
+/**
+ * An immutable, consistent view of the client's board as of one version.
+ * Taking a snapshot only copies the references to the board's chunks, so
+ * views can take one per refresh without holding up the network listener.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class BoardSnapshot implements PlaceBoardView {
+    /** The square dimension of the board */
+    public final int DIM;
+    /** the number of changes applied to the board when this was taken */
+    private final long version;
+    /** the chunks of the board, row major */
+    private final PlaceTile[][] chunks;
+    /** the number of chunks across the board */
+    private final int chunksPerRow;
+    /** the preview tiles not yet loaded read as, or null */
+    private final PlacePreview preview;
+
+    /**
+     * Create a snapshot.
+     *
+     * @param DIM the square dimension of the board
+     * @param version the board version
+     * @param chunks the chunks, which are never changed once published
+     * @param chunksPerRow the number of chunks across the board
+     * @param preview the preview tiles not yet loaded read as, or null
+     */
+    BoardSnapshot(int DIM, long version, PlaceTile[][] chunks, int chunksPerRow, PlacePreview preview) {
+        this.DIM = DIM;
+        this.version = version;
+        this.chunks = chunks;
+        this.chunksPerRow = chunksPerRow;
+        this.preview = preview;
+    }
+
+    /**
+     * Get the number of changes applied to the board when this was taken.
+     * A later snapshot with the same version has the same tiles.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    @Override
+    public int getDim() {
+        return this.DIM;
+    }
+
+    @Override
+    public PlaceTile getTile(int row, int col) {
+        return ClientBoard.tile(this.chunks[ClientBoard.chunkIndex(row, col, this.chunksPerRow)], row, col,
+                this.preview);
+    }
+
+    @Override
+    public void readColors(int row, int col, int width, byte[] dst, int offset) {
+        ClientBoard.readColors(this.chunks, this.chunksPerRow, this.preview, row, col, width, dst, offset);
+    }
+
+    /**
+     * Utility method for debugging only.
+     *
+     * @return the snapshot as a string
+     */
+    @Override
+    public String toString() {
+        return "BoardSnapshot{" +
+                "DIM=" + this.DIM +
+                ", version=" + this.version +
+                '}';
+    }
+}
@@ -0,0 +1,322 @@
+package place.model;
+
+import place.PlaceBoard;
+import place.PlaceChecksum;
+import place.PlaceColor;
+import place.PlacePreview;
+import place.PlaceRegion;
+import place.PlaceTile;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The client's copy of the board, written by the network listener and read
+ * by any number of views without locking.
+ *
+ * The board is split into square chunks that are never changed once
+ * published: a tile change copies its chunk, sets the tile and swaps the
+ * new chunk in.  A sequence number, odd while a swap is in progress, lets
+ * {@link #snapshot()} copy the chunk references and retry if a change
+ * landed part way through, so every snapshot matches exactly one version
+ * of the board.
+ *
+ * Every chunk starts out as one shared blank chunk, whose cells are all
+ * null; a null cell is a blank tile, built when it is read.  Since a change
+ * copies its chunk anyway, a chunk is only allocated the first time one of
+ * its tiles is set, and a board copied from the server costs memory for
+ * its painted chunks only, as the server's board does.
+ *
+ * A board loaded progressively starts out as one shared chunk of unloaded
+ * cells instead, which read as the color of their block of the preview, so
+ * the first render costs nothing per tile.  Cells are filled in as the
+ * server's regions arrive, and the checksum, which starts out blank, is
+ * updated with each one; it matches the server's once every region has.
+ *
+ * Changes are serialized with a lock, which is uncontended in practice
+ * since the network listener does nearly all of them; readers never lock.
+ * Each change also updates the board's {@link PlaceChecksum}, which is
+ * compared with the server's to find chunks that have drifted.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class ClientBoard {
+    /** log2 of the chunk size */
+    private static final int CHUNK_SHIFT = 4;
+    /** the width and height of a chunk, in tiles */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    /** mask for a coordinate within a chunk */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** the chunk every chunk is until one of its tiles is set; never written */
+    private static final PlaceTile[] BLANK = new PlaceTile[CHUNK_SIZE * CHUNK_SIZE];
+    /** marks a cell whose region has not arrived, which reads as the preview */
+    private static final PlaceTile UNLOADED = PlaceBoard.blankTile(-1, -1);
+    /** the chunk every chunk of a progressive board is until one of its tiles is set; never written */
+    private static final PlaceTile[] PREVIEW = new PlaceTile[CHUNK_SIZE * CHUNK_SIZE];
+
+    static {
+        Arrays.fill(PREVIEW, UNLOADED);
+    }
+
+    /** The square dimension of the board */
+    final int DIM;
+    /** the number of chunks across the board */
+    private final int chunksPerRow;
+    /** the chunks of the board, row major */
+    private final AtomicReferenceArray<PlaceTile[]> chunks;
+    /** twice the number of changes applied, plus one while a change is in progress */
+    private volatile long sequence;
+    /** checksums over the board, kept up to date with every change */
+    private final PlaceChecksum checksum;
+    /** the preview unloaded cells read as, or null if every cell is loaded */
+    private final PlacePreview preview;
+
+    /**
+     * Create a client board holding the tiles of a board sent by the server.
+     *
+     * @param board the board to copy
+     */
+    ClientBoard(PlaceBoard board) {
+        this.DIM = board.DIM;
+        this.chunksPerRow = (this.DIM + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new AtomicReferenceArray<>(this.chunksPerRow * this.chunksPerRow);
+        for (int i = 0; i < this.chunks.length(); ++i) {
+            this.chunks.set(i, BLANK);
+        }
+        // the board is not published yet, so its chunks are filled in place
+        board.forEachPainted(tile -> {
+            int index = chunkIndex(tile.getRow(), tile.getCol(), this.chunksPerRow);
+            PlaceTile[] chunk = this.chunks.get(index);
+            if (chunk == BLANK) {
+                chunk = new PlaceTile[CHUNK_SIZE * CHUNK_SIZE];
+                this.chunks.set(index, chunk);
+            }
+            chunk[cellIndex(tile.getRow(), tile.getCol())] = tile;
+        });
+        this.checksum = new PlaceChecksum(board);
+        this.preview = null;
+    }
+
+    /**
+     * Create a client board from a preview, every tile reading as the color
+     * of its block until its region arrives.
+     *
+     * @param preview the preview of the board
+     */
+    ClientBoard(PlacePreview preview) {
+        this.DIM = preview.DIM;
+        this.chunksPerRow = (this.DIM + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new AtomicReferenceArray<>(this.chunksPerRow * this.chunksPerRow);
+        for (int i = 0; i < this.chunks.length(); ++i) {
+            this.chunks.set(i, PREVIEW);
+        }
+        // unloaded tiles count as blank, as the server's board starts out
+        this.checksum = new PlaceChecksum(this.DIM);
+        this.preview = preview;
+    }
+
+    /**
+     * Tells whether the coordinates of the tile are valid or not
+     * @param tile the tile
+     * @return are the coordinates within the dimensions of the board?
+     */
+    boolean isValid(PlaceTile tile) {
+        return tile.getRow() >= 0 &&
+                tile.getRow() < this.DIM &&
+                tile.getCol() >= 0 &&
+                tile.getCol() < this.DIM;
+    }
+
+    /**
+     * Get a tile on the board
+     *
+     * @param row row
+     * @param col column
+     * @rit.pre row and column constitute a valid board coordinate
+     * @return the tile
+     */
+    PlaceTile getTile(int row, int col) {
+        return tile(this.chunks.get(chunkIndex(row, col, this.chunksPerRow)), row, col, this.preview);
+    }
+
+    /**
+     * Change a tile in the board.
+     *
+     * @param tile the new tile
+     * @rit.pre row and column constitute a valid board coordinate
+     */
+    synchronized void setTile(PlaceTile tile) {
+        int index = chunkIndex(tile.getRow(), tile.getCol(), this.chunksPerRow);
+        PlaceTile[] chunk = this.chunks.get(index).clone();
+        int cell = cellIndex(tile.getRow(), tile.getCol());
+        this.checksum.tileChanged(loaded(chunk, tile.getRow(), tile.getCol()), tile);
+        chunk[cell] = tile;
+        long seq = this.sequence;
+        this.sequence = seq + 1;
+        this.chunks.set(index, chunk);
+        this.sequence = seq + 2;
+    }
+
+    /**
+     * Change every tile in a region.  Each chunk the region touches is copied
+     * and swapped in once.  If keepNewer is set and the region has times, a
+     * tile is only replaced if the region's is not older, so changes that
+     * arrived after the region was read are kept.
+     *
+     * @param region the loaded region
+     * @param keepNewer keep tiles newer than the region's?
+     * @rit.pre the region lies within the board
+     */
+    synchronized void setRegion(PlaceRegion region, boolean keepNewer) {
+        int lastRow = region.getRow() + region.getHeight() - 1;
+        int lastCol = region.getCol() + region.getWidth() - 1;
+        for (int chunkRow = region.getRow() >> CHUNK_SHIFT; chunkRow <= lastRow >> CHUNK_SHIFT; ++chunkRow) {
+            for (int chunkCol = region.getCol() >> CHUNK_SHIFT; chunkCol <= lastCol >> CHUNK_SHIFT; ++chunkCol) {
+                int index = chunkRow * this.chunksPerRow + chunkCol;
+                PlaceTile[] chunk = this.chunks.get(index).clone();
+                int rowEnd = Math.min(lastRow, (chunkRow << CHUNK_SHIFT) + CHUNK_MASK);
+                int colEnd = Math.min(lastCol, (chunkCol << CHUNK_SHIFT) + CHUNK_MASK);
+                for (int row = Math.max(region.getRow(), chunkRow << CHUNK_SHIFT); row <= rowEnd; ++row) {
+                    for (int col = Math.max(region.getCol(), chunkCol << CHUNK_SHIFT); col <= colEnd; ++col) {
+                        PlaceTile previous = chunk[cellIndex(row, col)];
+                        long time = region.getTime(row, col);
+                        if (keepNewer && region.hasTimes() && previous != null && time < previous.getTime()) {
+                            continue;
+                        }
+                        PlaceColor color = region.getColor(row, col);
+                        String owner = region.getOwner(row, col);
+                        // blank tiles are left null, so loading costs nothing for them
+                        PlaceTile tile = color == PlaceColor.WHITE && owner.isEmpty() && time == 0 ? null
+                                : new PlaceTile(row, col, owner, color, time);
+                        if (tile != null || (previous != null && previous != UNLOADED)) {
+                            this.checksum.tileChanged(loaded(chunk, row, col),
+                                    tile != null ? tile : PlaceBoard.blankTile(row, col));
+                        }
+                        chunk[cellIndex(row, col)] = tile;
+                    }
+                }
+                long seq = this.sequence;
+                this.sequence = seq + 1;
+                this.chunks.set(index, chunk);
+                this.sequence = seq + 2;
+            }
+        }
+    }
+
+    /**
+     * Get the number of changes applied so far.
+     *
+     * @return the version
+     */
+    long getVersion() {
+        return this.sequence >>> 1;
+    }
+
+    /**
+     * Get the checksums over the board.
+     *
+     * @return the checksums
+     */
+    PlaceChecksum getChecksum() {
+        return this.checksum;
+    }
+
+    /**
+     * Take a consistent snapshot of the board.
+     *
+     * @return the snapshot
+     */
+    BoardSnapshot snapshot() {
+        PlaceTile[][] copy = new PlaceTile[this.chunks.length()][];
+        while (true) {
+            long before = this.sequence;
+            if ((before & 1) == 0) {
+                for (int i = 0; i < copy.length; ++i) {
+                    copy[i] = this.chunks.get(i);
+                }
+                if (this.sequence == before) {
+                    return new BoardSnapshot(this.DIM, before >>> 1, copy, this.chunksPerRow, this.preview);
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Read a tile from a chunk, building it if it is blank or not loaded.
+     *
+     * @param chunk the chunk holding the tile
+     * @param row row
+     * @param col column
+     * @param preview the preview unloaded tiles read as
+     * @return the tile
+     */
+    static PlaceTile tile(PlaceTile[] chunk, int row, int col, PlacePreview preview) {
+        PlaceTile tile = chunk[cellIndex(row, col)];
+        if (tile == UNLOADED) {
+            return new PlaceTile(row, col, "", preview.getColor(row, col));
+        }
+        return tile != null ? tile : PlaceBoard.blankTile(row, col);
+    }
+
+    /**
+     * Read a tile from a chunk as the checksum counts it, an unloaded tile
+     * being blank.
+     *
+     * @param chunk the chunk holding the tile
+     * @param row row
+     * @param col column
+     * @return the tile
+     */
+    private static PlaceTile loaded(PlaceTile[] chunk, int row, int col) {
+        PlaceTile tile = chunk[cellIndex(row, col)];
+        return tile != null && tile != UNLOADED ? tile : PlaceBoard.blankTile(row, col);
+    }
+
+    /**
+     * Read the color numbers of a run of tiles in one row of a snapshot's
+     * chunks, without building the blank and unloaded tiles.
+     *
+     * @param chunks the chunks, row major
+     * @param chunksPerRow the number of chunks across the board
+     * @param preview the preview unloaded tiles read as
+     * @param row row
+     * @param col the first column
+     * @param width the number of tiles
+     * @param dst where the color numbers are written, one per byte
+     * @param offset where in dst the first is written
+     */
+    static void readColors(PlaceTile[][] chunks, int chunksPerRow, PlacePreview preview,
+                           int row, int col, int width, byte[] dst, int offset) {
+        for (int i = 0; i < width; ++i) {
+            PlaceTile tile = chunks[chunkIndex(row, col + i, chunksPerRow)][cellIndex(row, col + i)];
+            PlaceColor color = tile == UNLOADED ? preview.getColor(row, col + i)
+                    : tile == null ? PlaceColor.WHITE : tile.getColor();
+            dst[offset + i] = (byte) color.getNumber();
+        }
+    }
+
+    /**
+     * Find the chunk holding a coordinate.
+     *
+     * @param row row
+     * @param col column
+     * @param chunksPerRow the number of chunks across the board
+     * @return the chunk index
+     */
+    static int chunkIndex(int row, int col, int chunksPerRow) {
+        return (row >> CHUNK_SHIFT) * chunksPerRow + (col >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Find a coordinate's position within its chunk.
+     *
+     * @param row row
+     * @param col column
+     * @return the index within the chunk
+     */
+    static int cellIndex(int row, int col) {
+        return ((row & CHUNK_MASK) << CHUNK_SHIFT) | (col & CHUNK_MASK);
+    }
+}
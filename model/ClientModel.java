@@ -1,11 +1,14 @@
 package place.model;
 
 import place.PlaceBoard;
+import place.PlaceChecksum;
+import place.PlacePreview;
+import place.PlaceRegion;
 import place.PlaceTile;
 import place.client.ptui.PlacePTUI;
 
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The client side model that is used as the "M" in the MVC paradigm.  All client
@@ -15,50 +18,97 @@ import java.util.List;
  * @author Frank Abbey @fra1489
  * @author Will Andrews @wta9748
  */
-public class ClientModel {
-    /** the actual board that holds the tiles */
-    private PlaceBoard board;
+public class ClientModel implements BoardModel {
+    /** the actual board that holds the tiles, safe to read from any thread */
+    private volatile ClientBoard board;
 
-    /** observers of the model (PlacePTUI and PlaceGUI - the "views") */
-    private List<Observer<ClientModel, PlaceTile>> observers = new LinkedList<>();
+    /** most distinct changed cells queued for a view before it is sent a full refresh */
+    public static final int DISPATCH_CAPACITY = 4096;
+
+    /**
+     * observers of the model (PlacePTUI and PlaceGUI - the "views").  Each
+     * one is updated on its own thread with batches of changed tiles, or
+     * null when the whole board should be redrawn.
+     */
+    private List<ObserverDispatcher> observers = new CopyOnWriteArrayList<>();
 
     /**
      * Add a new observer.
      *
      * @param observer the new observer
      */
-    public void addObserver(Observer<ClientModel, PlaceTile> observer) {
-        this.observers.add(observer);
+    public void addObserver(Observer<ClientModel, List<PlaceTile>> observer) {
+        this.observers.add(new ObserverDispatcher(this, observer, DISPATCH_CAPACITY));
     }
 
     /**
-     * Notify observers the model has changed.
+     * Notify observers the model has changed.  This only queues the change,
+     * so it never waits on a view.
+     *
+     * @param tile the changed tile, or null if the whole board changed
      */
     private void notifyObservers(PlaceTile tile){
-        for (Observer<ClientModel, PlaceTile> observer: observers) {
-            observer.update(this, tile);
+        for (ObserverDispatcher observer: observers) {
+            if (tile == null) {
+                observer.boardChanged();
+            } else {
+                observer.tileChanged(tile);
+            }
+        }
+    }
+
+    /**
+     * Stop notifying all observers.
+     */
+    public void close() {
+        for (ObserverDispatcher observer: observers) {
+            observer.stop();
         }
+        observers.clear();
     }
 
     /**
      * Sets initial Board
      * @param boardSent board to be set
      */
+    @Override
     public void setBoard(PlaceBoard boardSent) {
-        this.board = boardSent;
+        this.board = new ClientBoard(boardSent);
         notifyObservers(null);
 
     }
 
+    /**
+     * Sets initial Board from a preview, when the board is loaded
+     * progressively; the detail arrives later as regions
+     * @param preview the low resolution preview of the board
+     */
+    @Override
+    public void setPreview(PlacePreview preview) {
+        this.board = new ClientBoard(preview);
+        notifyObservers(null);
+    }
+
     /**
      * Changes a tile if it's a valid move
      * and notifies the PTUI
      * @param tile tile to be changed
      */
+    @Override
     public void changeTile(PlaceTile tile) {
         if(board.isValid(tile)) {
+            TileAppliedEvent event = new TileAppliedEvent();
+            event.begin();
             this.board.setTile(tile);
             notifyObservers(tile);
+            if (event.shouldCommit()) {
+                event.user = tile.getOwner();
+                event.row = tile.getRow();
+                event.col = tile.getCol();
+                event.color = tile.getColor().getNumber();
+                event.version = this.board.getVersion();
+                event.commit();
+            }
         }
         else {
             System.out.println("Invalid Move!");
@@ -67,11 +117,67 @@ public class ClientModel {
     }
 
     /**
-     * Gets the Client Model's Board
+     * Applies a region fetched from the server and notifies
+     * the views to redraw.  If the region has times, tiles that
+     * have changed since it was read are kept
+     * @param region the loaded region
+     */
+    @Override
+    public void applyRegion(PlaceRegion region) {
+        if (region.isWithin(board.DIM)) {
+            this.board.setRegion(region, true);
+            notifyObservers(null);
+        }
+    }
+
+    /**
+     * Replaces a region with a copy fetched from the server after its
+     * checksum was found to differ, and notifies the views to redraw.
+     * Unlike applyRegion, every tile is replaced
+     * @param region the loaded region
+     */
+    @Override
+    public void repairRegion(PlaceRegion region) {
+        if (region.isWithin(board.DIM)) {
+            this.board.setRegion(region, false);
+            notifyObservers(null);
+        }
+    }
+
+    /**
+     * Gets the checksums over the board, to compare with the server's
+     * @return the board's checksums
+     */
+    @Override
+    public PlaceChecksum getChecksum() {
+        return board.getChecksum();
+    }
+
+    /**
+     * Gets a consistent snapshot of the Client Model's Board.  Later changes
+     * do not affect it, so take a new one on each refresh.
      * @return the client model's board
      */
-    public PlaceBoard getBoard() {
-        return board;
+    public BoardSnapshot getBoard() {
+        return board.snapshot();
+    }
+
+    /**
+     * Gets the current version of a single tile, without taking a snapshot
+     * @param row row
+     * @param col column
+     * @return the tile
+     */
+    public PlaceTile getTile(int row, int col) {
+        return board.getTile(row, col);
+    }
+
+    /**
+     * Gets the number of tile changes applied since the board was set
+     * @return the board version
+     */
+    public long getVersion() {
+        return board.getVersion();
     }
 
 }
@@ -0,0 +1,123 @@
+package place.model;
+
+import place.PlaceTile;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers model changes to a single observer on its own thread, so a slow
+ * view never holds up the network listener or any other view.
+ *
+ * Changes are queued per cell: if the same tile changes several times
+ * before the observer gets to it, only the latest tile is delivered.  The
+ * queue is bounded; once more than {@code capacity} distinct cells are
+ * waiting, they are dropped and the observer is sent a single full refresh
+ * (a null batch) instead.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class ObserverDispatcher implements Runnable {
+    /** the model passed to the observer */
+    private final ClientModel model;
+    /** the view being notified */
+    private final Observer<ClientModel, List<PlaceTile>> observer;
+    /** most distinct cells held before falling back to a full refresh */
+    private final int capacity;
+    /** changes waiting for delivery, keyed by cell, oldest first */
+    private final Map<Long, PlaceTile> pending = new LinkedHashMap<>();
+    /** does the observer need to redraw everything? */
+    private boolean refreshAll;
+    /** keeps the dispatch thread running */
+    private boolean go = true;
+
+    /**
+     * Create a dispatcher and start its thread.
+     *
+     * @param model the model passed to the observer
+     * @param observer the view being notified
+     * @param capacity most distinct cells held before a full refresh
+     */
+    ObserverDispatcher(ClientModel model, Observer<ClientModel, List<PlaceTile>> observer, int capacity) {
+        this.model = model;
+        this.observer = observer;
+        this.capacity = capacity;
+        Thread thread = new Thread(this, "observer-" + observer.getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a changed tile, replacing any undelivered change to the same cell.
+     *
+     * @param tile the changed tile
+     */
+    synchronized void tileChanged(PlaceTile tile) {
+        if (!this.refreshAll) {
+            long key = ((long) tile.getRow() << 32) | (tile.getCol() & 0xFFFFFFFFL);
+            // re-insert so the cell moves to the back of the delivery order
+            this.pending.remove(key);
+            this.pending.put(key, tile);
+            if (this.pending.size() > this.capacity) {
+                this.pending.clear();
+                this.refreshAll = true;
+            }
+        }
+        notify();
+    }
+
+    /**
+     * Ask for a full refresh, discarding any queued tiles.
+     */
+    synchronized void boardChanged() {
+        this.pending.clear();
+        this.refreshAll = true;
+        notify();
+    }
+
+    /**
+     * Stop delivering changes.
+     */
+    synchronized void stop() {
+        this.go = false;
+        notify();
+    }
+
+    /**
+     * Wait for changes and hand them to the observer in batches.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            List<PlaceTile> batch;
+            synchronized (this) {
+                while (this.go && !this.refreshAll && this.pending.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!this.go) {
+                    return;
+                }
+                if (this.refreshAll) {
+                    batch = null;
+                    this.refreshAll = false;
+                } else {
+                    batch = new ArrayList<>(this.pending.values());
+                }
+                this.pending.clear();
+            }
+            try {
+                this.observer.update(this.model, batch);
+            } catch (RuntimeException e) {
+                // a broken view must not kill its dispatcher
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package place.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a tile change being applied to the client
+ * model and queued for its views.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@Name("place.TileApplied")
+@Label("Tile Applied")
+@Category({"Place", "Client"})
+@Description("Applying a TILE_CHANGED to the client model")
+public class TileAppliedEvent extends jdk.jfr.Event {
+    @Label("User")
+    String user;
+
+    @Label("Row")
+    int row;
+
+    @Label("Column")
+    int col;
+
+    @Label("Color")
+    int color;
+
+    @Label("Version")
+    @Description("The board version after the change")
+    long version;
+}
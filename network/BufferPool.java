@@ -0,0 +1,66 @@
+package place.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed set of direct ByteBuffers of one size, allocated up front and
+ * handed out and returned again, so code that fills buffers for the
+ * network does not allocate as it runs, and the operating system can read
+ * and write them without the copy a heap buffer needs.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class BufferPool {
+    /** the buffers not handed out */
+    private final ByteBuffer[] free;
+    /** how many buffers are not handed out */
+    private int available;
+
+    /**
+     * Allocate the buffers.
+     *
+     * @param count how many buffers there are
+     * @param size the capacity of each, in bytes
+     */
+    public BufferPool(int count, int size) {
+        this.free = new ByteBuffer[count];
+        for (int i = 0; i < count; ++i) {
+            this.free[i] = ByteBuffer.allocateDirect(size);
+        }
+        this.available = count;
+    }
+
+    /**
+     * Take a buffer, cleared.
+     *
+     * @return the buffer, or null if every buffer is handed out
+     */
+    public synchronized ByteBuffer acquire() {
+        if (this.available == 0) {
+            return null;
+        }
+        ByteBuffer buffer = this.free[--this.available];
+        this.free[this.available] = null;
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Give back a buffer taken from this pool.
+     *
+     * @param buffer the buffer, which the caller must not use again
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        this.free[this.available++] = buffer;
+    }
+
+    /**
+     * Get how many buffers are not handed out.
+     *
+     * @return the count
+     */
+    public synchronized int available() {
+        return this.available;
+    }
+}
@@ -0,0 +1,215 @@
+package place.network;
+
+import place.PlaceColor;
+import place.PlaceTile;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A view of one datagram of the multicast change feed watched by
+ * SpectatorClients.  It holds a run of consecutive changes, numbered with
+ * the server's change sequence: the first tile is change {@code first}, the
+ * next first + 1 and so on.  A packet with no tiles is a heartbeat, sent
+ * when the board is quiet, saying the next change will be {@code first}; it
+ * lets a spectator notice a lost packet without waiting for the next change.
+ *
+ * Tiles are packed as row, column, color and time, without their owner, so
+ * a packet fits in one unfragmented datagram:
+ *
+ * <pre>
+ *   int magic, long first, short count, count * (int row, int col, byte color, long time)
+ * </pre>
+ *
+ * A FeedPacket is a flyweight: it holds no tiles itself, but reads and
+ * writes them in place in the buffer it is bound to, so one view can be
+ * reused for every packet and neither sending nor receiving allocates.
+ * Bind it with {@link #wrap} to read a received packet, or {@link #start}
+ * to write one.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class FeedPacket {
+    /** marks a datagram as a Place feed packet */
+    public static final int MAGIC = 0x504C4346;
+    /** the largest packet, small enough not to be fragmented on Ethernet */
+    public static final int MAX_SIZE = 1400;
+    /** where the count is, from the start of the packet */
+    private static final int COUNT_OFFSET = 4 + 8;
+    /** bytes before the tiles */
+    private static final int HEADER_SIZE = COUNT_OFFSET + 2;
+    /** bytes per tile */
+    private static final int TILE_SIZE = 4 + 4 + 1 + 8;
+    /** the most tiles in one packet */
+    public static final int MAX_TILES = (MAX_SIZE - HEADER_SIZE) / TILE_SIZE;
+    /** the colors by number, since PlaceColor.values() copies them */
+    private static final PlaceColor[] COLORS = PlaceColor.values();
+
+    /** the buffer the packet is in, null if not bound */
+    private ByteBuffer buffer;
+    /** where the packet starts in the buffer */
+    private int base;
+    /** the sequence number of the first tile, or of the next change */
+    private long first;
+    /** how many tiles the packet holds */
+    private int count;
+
+    /**
+     * Bind the view to a received packet, checking it is well formed.
+     *
+     * @param src the buffer holding one datagram, from its position to its limit
+     * @return true if it is a feed packet, which the view now reads; false
+     *         if it is not, and the view is unbound
+     */
+    public boolean wrap(ByteBuffer src) {
+        this.buffer = null;
+        int base = src.position();
+        int length = src.remaining();
+        if (length < HEADER_SIZE || src.getInt(base) != MAGIC) {
+            return false;
+        }
+        int count = src.getShort(base + COUNT_OFFSET);
+        if (count < 0 || count > MAX_TILES || length < HEADER_SIZE + count * TILE_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < count; ++i) {
+            int color = src.get(base + HEADER_SIZE + i * TILE_SIZE + 8);
+            if (color < 0 || color >= PlaceColor.TOTAL_COLORS) {
+                return false;
+            }
+        }
+        this.buffer = src;
+        this.base = base;
+        this.first = src.getLong(base + 4);
+        this.count = count;
+        return true;
+    }
+
+    /**
+     * Bind the view to a buffer to write a packet into, with no tiles yet.
+     *
+     * @param dst the buffer, with at least MAX_SIZE bytes from its position
+     * @param first the sequence number the first tile will have
+     */
+    public void start(ByteBuffer dst, long first) {
+        this.buffer = dst;
+        this.base = dst.position();
+        this.first = first;
+        this.count = 0;
+        dst.putInt(this.base, MAGIC);
+        dst.putLong(this.base + 4, first);
+        dst.putShort(this.base + COUNT_OFFSET, (short) 0);
+    }
+
+    /**
+     * Write the next change into the packet.
+     *
+     * @param tile the tile as applied
+     * @return true if it was added; false if the packet is full
+     */
+    public boolean add(PlaceTile tile) {
+        if (this.count == MAX_TILES) {
+            return false;
+        }
+        int at = this.base + HEADER_SIZE + this.count * TILE_SIZE;
+        this.buffer.putInt(at, tile.getRow());
+        this.buffer.putInt(at + 4, tile.getCol());
+        this.buffer.put(at + 8, (byte) tile.getColor().getNumber());
+        this.buffer.putLong(at + 9, tile.getTime());
+        this.count++;
+        this.buffer.putShort(this.base + COUNT_OFFSET, (short) this.count);
+        return true;
+    }
+
+    /**
+     * Set the buffer's position and limit around the packet written, ready
+     * to be sent.
+     */
+    public void finish() {
+        this.buffer.limit(this.base + size());
+        this.buffer.position(this.base);
+    }
+
+    /**
+     * Get the packet's length.
+     *
+     * @return its length in bytes
+     */
+    public int size() { return HEADER_SIZE + this.count * TILE_SIZE; }
+
+    /**
+     * Get the sequence number of the first tile.
+     *
+     * @return the sequence number; for a heartbeat, that of the next change
+     */
+    public long getFirst() { return this.first; }
+
+    /**
+     * Get the sequence number the change after this packet's will have.
+     *
+     * @return the sequence number
+     */
+    public long getNext() { return this.first + this.count; }
+
+    /**
+     * Get how many tiles the packet holds.
+     *
+     * @return the count; 0 for a heartbeat
+     */
+    public int getCount() { return this.count; }
+
+    /**
+     * Get the row of a tile.
+     *
+     * @param i the tile's index in the packet
+     * @return its row
+     */
+    public int getRow(int i) { return this.buffer.getInt(tile(i)); }
+
+    /**
+     * Get the column of a tile.
+     *
+     * @param i the tile's index in the packet
+     * @return its column
+     */
+    public int getCol(int i) { return this.buffer.getInt(tile(i) + 4); }
+
+    /**
+     * Get the color of a tile.
+     *
+     * @param i the tile's index in the packet
+     * @return its color
+     */
+    public PlaceColor getColor(int i) { return COLORS[this.buffer.get(tile(i) + 8)]; }
+
+    /**
+     * Get the time a tile was placed.
+     *
+     * @param i the tile's index in the packet
+     * @return the time, in milliseconds
+     */
+    public long getTime(int i) { return this.buffer.getLong(tile(i) + 9); }
+
+    /**
+     * Copy a tile out of the packet, for keeping after the buffer is reused.
+     *
+     * @param i the tile's index in the packet
+     * @return the tile, with an empty owner
+     */
+    public PlaceTile getTile(int i) {
+        return new PlaceTile(getRow(i), getCol(i), "", getColor(i), getTime(i));
+    }
+
+    /**
+     * Find a tile in the buffer.
+     *
+     * @param i the tile's index in the packet
+     * @return where it starts
+     */
+    private int tile(int i) {
+        if (i < 0 || i >= this.count) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return this.base + HEADER_SIZE + i * TILE_SIZE;
+    }
+}
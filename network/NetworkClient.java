@@ -1,29 +1,71 @@
 package place.network;
 
 import place.PlaceBoard;
+import place.PlaceChecksum;
 import place.PlaceException;
+import place.PlaceLogin;
+import place.PlaceOwners;
+import place.PlacePreview;
+import place.PlaceRegion;
+import place.PlaceStatistics;
 import place.PlaceTile;
-import place.model.ClientModel;
+import place.PlaceTileBatch;
+import place.model.BoardModel;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.PrintStream;
+import java.io.Serializable;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * NetworkClient is the client side interface for the Place Server
  * Represents the controller part of the a MVC
  * Forwards user actions to the server it's connected to
  *
+ * Requests are queued and written by a separate writer thread, which
+ * flushes once per batch of queued requests.  Each request gets an id and
+ * a future that completes when the server's ACK or ERROR reply arrives,
+ * so callers never wait on the network.  Clients that are many to a
+ * process, like load generator bots, can share a pool of writer threads
+ * instead, each client's queue being written by one pool thread at a time.
+ *
+ * The client keeps the server's change sequence number of the latest change
+ * it has applied.  If the connection is lost, {@link #resume} connects to
+ * the same server, or a standby that has taken over, and asks for just the
+ * changes since then.
+ *
+ * The listener echoes the server's heartbeats, so a client that is only
+ * watching is not taken for a dead connection and disconnected.  Echoes go
+ * to the front of the queue and wait for room rather than being dropped,
+ * so a busy client is not taken for a dead one either.
+ *
  * @author Frank Abbey @fra1489
  * @author Will Andrews @wta9748
  */
 
 public class NetworkClient {
 
+    /**
+     * Most requests that may be waiting to be written
+     */
+    public static final int OUTBOUND_CAPACITY = 1024;
+
     /**
      * The ObjectInputStream receives PlaceRequests from the server
      */
@@ -33,14 +75,51 @@ public class NetworkClient {
      */
     private ObjectOutputStream networkOut;
     /**
-     * The ClientModel keeps track of the current PlaceBoard
+     * The model keeps track of the current PlaceBoard
      */
-    private ClientModel clientModel;
+    private BoardModel clientModel;
     /**
      * Go allows the NetworkClient's Listener to continue receiving
      * PlaceRequests from the server
      */
-    private boolean go;
+    private volatile boolean go;
+    /**
+     * Requests waiting for the writer thread, heartbeat echoes first
+     */
+    private final BlockingDeque<PlaceRequest<?>> outbound = new LinkedBlockingDeque<>(OUTBOUND_CAPACITY);
+    /**
+     * Requests that have been queued but not answered, by id
+     */
+    private final Map<Long, CompletableFuture<PlaceRequest<?>>> pending = new ConcurrentHashMap<>();
+    /**
+     * The id given to the last request
+     */
+    private final AtomicLong lastId = new AtomicLong();
+    /**
+     * The server's dictionary of tile owners, for the ids in received tiles
+     */
+    private final PlaceOwners owners = new PlaceOwners();
+    /**
+     * The username the client logged in as
+     */
+    private String userName;
+    /**
+     * The sequence number of the latest change applied to the board,
+     * -1 until the board arrives
+     */
+    private volatile long sequence = -1;
+    /**
+     * The thread writing queued requests to the server, if it has its own
+     */
+    private Thread writer;
+    /**
+     * The pool writing queued requests to the server, if it shares one
+     */
+    private Executor writers;
+    /**
+     * Is a pool thread writing, or about to write, the queued requests?
+     */
+    private final AtomicBoolean writing = new AtomicBoolean();
 
     /**
      * Returns the state of go
@@ -60,34 +139,139 @@ public class NetworkClient {
      * @param port the port of the server socket on which the server is running
      * @param model the object that is holding the current state of the board
      * @param userName the username of the client that is connected to the server
-     * @throws PlaceException If there's a problem connecting
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    public NetworkClient( String hostname, int port, BoardModel model, String userName) throws PlaceException {
+        this(hostname, port, model, userName, null);
+    }
+
+    /**
+     * Connects to a PlaceBoard server, asking for the board to be loaded
+     * progressively: a preview of the whole board first, then full detail
+     * starting with the viewport.
+     * Afterwards a Listener thread forwards updates to the ClientModel
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param userName the username of the client that is connected to the server
+     * @param viewport the part of the board shown first, or null to load the whole board at once
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
      */
-    public NetworkClient( String hostname, int port, ClientModel model, String userName) throws PlaceException {
+    public NetworkClient( String hostname, int port, BoardModel model, String userName, PlaceRegion viewport) throws PlaceException {
+        this(hostname, port, model, userName, viewport, -1);
+    }
+
+    /**
+     * Connects to a PlaceBoard server, resuming from the last change an
+     * earlier connection applied to the model, if the server still has the
+     * changes since.  Otherwise the board is sent as usual.
+     * Afterwards a Listener thread forwards updates to the ClientModel
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param userName the username of the client that is connected to the server
+     * @param viewport the part of the board shown first, or null to load the whole board at once
+     * @param resumeFrom the last change sequence number applied to the model, or -1
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    NetworkClient( String hostname, int port, BoardModel model, String userName, PlaceRegion viewport, long resumeFrom) throws PlaceException {
+        this(hostname, port, model, userName, viewport, resumeFrom, null, null);
+    }
+
+    /**
+     * Connects to a PlaceBoard server as an admin, with the server's relay
+     * key, which exempts the client from the placement delay and lets it
+     * send batches and paint regions.
+     * Afterwards a Listener thread forwards updates to the ClientModel
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param userName the username of the client that is connected to the server
+     * @param relayKey the server's relay key
+     * @return the connection
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    public static NetworkClient admin( String hostname, int port, BoardModel model, String userName, String relayKey) throws PlaceException {
+        return new NetworkClient(hostname, port, model, userName, null, -1, relayKey, null);
+    }
+
+    /**
+     * Connects to a PlaceBoard server, writing requests from a shared pool
+     * rather than a thread of the client's own.  The pool's threads may
+     * block on a slow server while writing, so give it as many as the
+     * clients sharing it should be able to write at once.
+     * Afterwards a Listener thread forwards updates to the model
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param userName the username of the client that is connected to the server
+     * @param writers the pool the client's requests are written from
+     * @return the connection
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    public static NetworkClient pooled( String hostname, int port, BoardModel model, String userName, Executor writers) throws PlaceException {
+        return new NetworkClient(hostname, port, model, userName, null, -1, null, writers);
+    }
+
+    /**
+     * Connects to a PlaceBoard server
+     * Afterwards a Listener thread forwards updates to the ClientModel
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param userName the username of the client that is connected to the server
+     * @param viewport the part of the board shown first, or null to load the whole board at once
+     * @param resumeFrom the last change sequence number applied to the model, or -1
+     * @param relayKey the server's relay key, or null
+     * @param writers the pool requests are written from, or null for a thread of the client's own
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    private NetworkClient( String hostname, int port, BoardModel model, String userName, PlaceRegion viewport,
+                           long resumeFrom, String relayKey, Executor writers) throws PlaceException {
+        this.userName = userName;
+        this.sequence = resumeFrom;
+        this.writers = writers;
         try {
             Socket socket = new Socket(hostname, port);
             this.networkIn = new ObjectInputStream( socket.getInputStream() );
-            this.networkOut = new ObjectOutputStream( socket.getOutputStream() );
+            // buffered so the writer thread's flushes actually coalesce requests
+            this.networkOut = new ObjectOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
             this.clientModel = model;
             this.go = true;
 
             // send login to server
-            this.networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN, userName));
+            if (viewport == null && resumeFrom < 0 && relayKey == null) {
+                this.networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN, userName));
+            }
+            else {
+                this.networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN,
+                        new PlaceLogin(userName, viewport, relayKey, resumeFrom)));
+            }
             this.networkOut.flush();
 
             // make sure login was success from server
             try {
-                PlaceRequest initial = (PlaceRequest)networkIn.readUnshared();
+                PlaceRequest<?> initial = (PlaceRequest<?>) networkIn.readUnshared();
                 if (initial.getType().equals(PlaceRequest.RequestType.LOGIN_SUCCESS)) {
+                    if (initial.getData() instanceof PlaceOwners) {
+                        owners.putAll((PlaceOwners) initial.getData());
+                    }
                     System.out.println("Successful login: " + hostname + " " + port);
                 }
                 else if(initial.getType().equals(PlaceRequest.RequestType.ERROR)) {
-                    System.out.println("Username \"" + userName + "\" taken");
-                    System.exit(1);
+                    socket.close();
+                    throw new PlaceException("Login refused for \"" + userName
+                            + "\": username taken or connecting too quickly");
                 }
             } catch (ClassNotFoundException e) {
                 e.printStackTrace();
             }
 
+            if (writers == null) {
+                this.writer = new Thread( () -> this.write() );
+                this.writer.setDaemon(true);
+                this.writer.start();
+            }
         }
         catch( IOException e ) {
             throw new PlaceException( e );
@@ -102,20 +286,67 @@ public class NetworkClient {
         netThread.start();
     }
 
+    /**
+     * Reconnects to a server, which may be a standby that took over from
+     * the one this client was connected to, resuming from the last change
+     * applied to the model.  This client should already be closed.  Call
+     * connect() and startListener() on the new client as usual.
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @return the new connection
+     * @throws PlaceException If there's a problem connecting, or the server refuses the login
+     */
+    public NetworkClient resume( String hostname, int port) throws PlaceException {
+        return new NetworkClient(hostname, port, clientModel, userName, null, sequence, null, writers);
+    }
+
     /**
      * Receives board from the server and sends initial state of
-     * the board to the ClientModel
+     * the board to the ClientModel.  When loading progressively this
+     * is the preview; the rest arrives once the listener is started.
+     * When resuming it is just the changes the model missed
      */
     public void connect(){
         // receive Board from Server
         try {
-            PlaceRequest board = (PlaceRequest) networkIn.readUnshared();
-            clientModel.setBoard((PlaceBoard)board.getData());
+            while (true) {
+                PlaceRequest<?> board = (PlaceRequest<?>) networkIn.readUnshared();
+                switch (board.getType()) {
+                    case BOARD_PREVIEW:
+                        clientModel.setPreview((PlacePreview)board.getData());
+                        sequence = board.getId();
+                        return;
+                    case BOARD:
+                        clientModel.setBoard((PlaceBoard)board.getData());
+                        sequence = board.getId();
+                        return;
+                    case BOARD_CHANGES:
+                        for (PlaceTile tile : ((PlaceTileBatch)board.getData()).getTiles()) {
+                            clientModel.changeTile(resolve(tile));
+                        }
+                        sequence = board.getId();
+                        return;
+                    case OWNERS:
+                        owners.putAll((PlaceOwners)board.getData());
+                        break;
+                    default:
+                        // changes broadcast before the board are already in it
+                        break;
+                }
+            }
         } catch (IOException | ClassNotFoundException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Returns the server's sequence number of the latest change applied to the board
+     * @return the sequence number, -1 before the board arrives
+     */
+    public long getSequence(){
+        return sequence;
+    }
+
     /**
      * The Listener Thread uses this method to continually
      * listen to messages sent from the server
@@ -125,13 +356,53 @@ public class NetworkClient {
 
         while (this.goodToGo()) {
             try {
-                PlaceRequest<?> request = (PlaceRequest)networkIn.readUnshared();
+                PlaceRequest<?> request = (PlaceRequest<?>) networkIn.readUnshared();
 
                 switch ( request.getType() ) {
                     case TILE_CHANGED:
-                        clientModel.changeTile((PlaceTile)request.getData());
+                        clientModel.changeTile(resolve((PlaceTile)request.getData()));
+                        sequence = Math.max(sequence, request.getId());
+                        break;
+                    case OWNERS:
+                        owners.putAll((PlaceOwners)request.getData());
+                        break;
+                    case REGION:
+                        clientModel.applyRegion((PlaceRegion)request.getData());
+                        break;
+                    case BOARD:
+                        // sent instead of the updates we fell too far behind on
+                        clientModel.setBoard((PlaceBoard)request.getData());
+                        sequence = Math.max(sequence, request.getId());
+                        break;
+                    case TILES_CHANGED:
+                        for (PlaceTile tile : ((PlaceTileBatch)request.getData()).getTiles()) {
+                            clientModel.changeTile(resolve(tile));
+                        }
+                        sequence = Math.max(sequence, request.getId());
+                        break;
+                    case HEARTBEAT:
+                        // answered ahead of queued requests so the server
+                        // knows we are still here, waiting for room if the
+                        // queue is full rather than dropping the echo
+                        outbound.putFirst(request);
+                        wake();
+                        break;
+                    case ACK:
+                        CompletableFuture<PlaceRequest<?>> acked = pending.remove(request.getId());
+                        if (request.getData() instanceof PlaceTile) {
+                            resolve((PlaceTile)request.getData());
+                        }
+                        if (acked != null) {
+                            acked.complete(request);
+                        }
                         break;
                     case ERROR:
+                        CompletableFuture<PlaceRequest<?>> failed = pending.remove(request.getId());
+                        // a reply to one of our requests only fails that request
+                        if (failed != null) {
+                            failed.completeExceptionally(new PlaceException(String.valueOf(request.getData())));
+                            break;
+                        }
                         System.out.println(request.getData());
                         stop();
                         break;
@@ -157,16 +428,239 @@ public class NetworkClient {
     }
 
     /**
-     * Sends a request to the server including the
-     * of changeTile and a given PlaceTile
-     * @param request request to be sent to the server
+     * The writer thread uses this method to send queued requests,
+     * flushing once for everything that was queued together
+     */
+    private void write() {
+        List<PlaceRequest<?>> batch = new ArrayList<>();
+        while (this.goodToGo()) {
+            try {
+                batch.add(outbound.take());
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            send(batch);
+        }
+    }
+
+    /**
+     * Has a pool thread write the queued requests, if the client shares a
+     * pool and none is already on its way
      */
-    public void changeTile(PlaceRequest request){
+    private void wake() {
+        if (writers != null && writing.compareAndSet(false, true)) {
+            writers.execute(this::writeQueued);
+        }
+    }
+
+    /**
+     * A pool thread uses this method to send everything queued, then
+     * hands the thread back.  Requests queued as it finishes are picked up
+     * again here or by the pool thread their wake() starts, never both
+     */
+    private void writeQueued() {
+        List<PlaceRequest<?>> batch = new ArrayList<>();
+        do {
+            if (this.goodToGo()) {
+                send(batch);
+            }
+            writing.set(false);
+        } while (!outbound.isEmpty() && this.goodToGo() && writing.compareAndSet(false, true));
+    }
+
+    /**
+     * Writes a batch of requests, with everything else queued, and flushes
+     * once for all of them
+     * @param batch the requests taken so far, emptied once they are sent
+     */
+    private void send(List<PlaceRequest<?>> batch) {
+        outbound.drainTo(batch);
         try {
-            networkOut.writeUnshared(request);
+            for (PlaceRequest<?> request : batch) {
+                networkOut.writeUnshared(request);
+            }
             networkOut.flush();
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+        catch (IOException e) {
+            for (PlaceRequest<?> request : batch) {
+                fail(request.getId(), e);
+            }
+            System.out.println( e.getMessage() + '?' );
+            this.stop();
+        }
+        batch.clear();
+    }
+
+    /**
+     * Queues a CHANGE_TILE request to the server with a given PlaceTile.
+     * Returns right away.
+     * @param request the CHANGE_TILE request to be sent to the server
+     * @return completes with the server's ACK, or exceptionally with a
+     *         PlaceException if the server replies with an ERROR
+     */
+    public CompletableFuture<PlaceRequest<?>> changeTile(PlaceRequest<?> request){
+        return request(request);
+    }
+
+    /**
+     * Queues any request that the server answers with an ACK or ERROR,
+     * giving it an id.  Returns right away.
+     * @param request request to be sent to the server
+     * @return completes with the server's ACK, or exceptionally with a
+     *         PlaceException if the server replies with an ERROR
+     */
+    public CompletableFuture<PlaceRequest<?>> request(PlaceRequest<?> request){
+        long id = lastId.incrementAndGet();
+        CompletableFuture<PlaceRequest<?>> reply = new CompletableFuture<>();
+        pending.put(id, reply);
+        if (!this.goodToGo()) {
+            fail(id, new PlaceException("Not connected"));
+        }
+        else if (!outbound.offer(withId(request, id))) {
+            fail(id, new PlaceException("Too many requests in flight"));
+        }
+        else {
+            wake();
+        }
+        return reply;
+    }
+
+    /**
+     * Queues a request to change many tiles at once.  Returns right away.
+     * The server only accepts batches from clients logged in with its relay
+     * key, e.g. with admin()
+     * @param batch the tiles to be changed
+     * @return completes with the server's ACK, whose data is a BitSet of
+     *         the tiles that were applied
+     */
+    public CompletableFuture<PlaceRequest<?>> changeTiles(PlaceTileBatch batch){
+        return request(new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILES, batch));
+    }
+
+    /**
+     * Asks the server to paint a rectangle of the board in one go.
+     * Returns right away.  Like batches, regions are only accepted from
+     * clients logged in with the server's relay key
+     * @param region the colors, made with PlaceRegion.paint
+     * @return completes with the number of tiles the server changed
+     */
+    public CompletableFuture<Integer> changeRegion(PlaceRegion region){
+        return request(new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_REGION, region))
+                .thenApply(reply -> (Integer) reply.getData());
+    }
+
+    /**
+     * Asks the server for a rectangle of the board.  Returns right away.
+     * Clients without the relay key may ask for up to PlaceServer.MAX_BATCH
+     * tiles at a time.
+     * @param bounds the region wanted, and whether owners and times are wanted
+     * @return completes with the region holding the tiles
+     */
+    public CompletableFuture<PlaceRegion> getRegion(PlaceRegion bounds){
+        return request(new PlaceRequest<>(PlaceRequest.RequestType.GET_REGION, bounds))
+                .thenApply(reply -> (PlaceRegion) reply.getData());
+    }
+
+    /**
+     * Looks up the owner of a tile that arrived with just an owner id
+     * @param tile the tile
+     * @return the tile, with its owner's name
+     */
+    private PlaceTile resolve(PlaceTile tile) {
+        if (tile.getOwner() == null) {
+            String name = owners.getName(tile.getOwnerId());
+            tile.setOwner(tile.getOwnerId(), name == null ? "" : name);
+        }
+        return tile;
+    }
+
+    /**
+     * Compares the board with the server's by walking down both Checksum
+     * trees from the root, fetching again every chunk whose checksum differs.
+     * Only the children of differing nodes are asked for, so a board that
+     * has not drifted costs one hash.  Returns right away.
+     * @return completes with the number of chunks fetched again
+     */
+    public CompletableFuture<Integer> verify(){
+        return verify(null, clientModel.getChecksum());
+    }
+
+    /**
+     * Compares some nodes of the Checksum trees, then repairs the differing
+     * chunks and compares the children of the other differing nodes
+     * @param nodes the nodes to compare, or null for the root
+     * @param local the client's checksums
+     * @return completes with the number of chunks fetched again
+     */
+    private CompletableFuture<Integer> verify(int[] nodes, PlaceChecksum local){
+        int[] asked = nodes == null ? new int[]{1} : nodes;
+        return request(new PlaceRequest<>(PlaceRequest.RequestType.CHECKSUMS, nodes))
+                .thenCompose(reply -> {
+                    long[] remote = (long[]) reply.getData();
+                    long[] mine = local.getNodes(asked);
+                    int[] children = new int[2 * asked.length];
+                    int count = 0;
+                    // chunks are fetched one after another so a badly drifted
+                    // board never floods the outbound queue
+                    CompletableFuture<Integer> repaired = CompletableFuture.completedFuture(0);
+                    for (int i = 0; i < asked.length; ++i) {
+                        if (remote[i] == mine[i]) {
+                            continue;
+                        }
+                        if (local.isLeaf(asked[i])) {
+                            PlaceRegion chunk = local.getChunk(asked[i], true, true);
+                            if (chunk != null) {
+                                repaired = repaired.thenCompose(n -> getRegion(chunk).thenApply(region -> {
+                                    clientModel.repairRegion(region);
+                                    return n + 1;
+                                }));
+                            }
+                        } else {
+                            children[count++] = 2 * asked[i];
+                            children[count++] = 2 * asked[i] + 1;
+                        }
+                    }
+                    for (int from = 0; from < count; from += PlaceChecksum.MAX_REQUEST_NODES) {
+                        int[] next = Arrays.copyOfRange(children, from, Math.min(count, from + PlaceChecksum.MAX_REQUEST_NODES));
+                        repaired = repaired.thenCombine(verify(next, local), Integer::sum);
+                    }
+                    return repaired;
+                });
+    }
+
+    /**
+     * Asks the server for the board's live statistics.  Returns right away.
+     * Like batches, statistics are only sent to clients logged in with the
+     * server's relay key
+     * @param k the most top users and busiest regions wanted
+     * @return completes with the statistics
+     */
+    public CompletableFuture<PlaceStatistics> getStatistics(int k){
+        return request(new PlaceRequest<>(PlaceRequest.RequestType.STATISTICS, k))
+                .thenApply(reply -> (PlaceStatistics) reply.getData());
+    }
+
+    /**
+     * Copy a request, giving it an id
+     * @param request the request
+     * @param id the id
+     * @param <E> the data type
+     * @return the request with the id
+     */
+    private static <E extends Serializable> PlaceRequest<E> withId(PlaceRequest<E> request, long id) {
+        return new PlaceRequest<>(request.getType(), request.getData(), id);
+    }
+
+    /**
+     * Fails the pending request with the given id, if any
+     * @param id the request id
+     * @param cause why it failed
+     */
+    private void fail(long id, Throwable cause) {
+        CompletableFuture<PlaceRequest<?>> reply = pending.remove(id);
+        if (reply != null) {
+            reply.completeExceptionally(cause);
         }
     }
 
@@ -176,6 +670,13 @@ public class NetworkClient {
      * the NetworkClient
      */
     public void close() {
+        this.stop();
+        if (writer != null) {
+            writer.interrupt();
+        }
+        for (Long id : pending.keySet()) {
+            fail(id, new PlaceException("Connection closed"));
+        }
 
         try {
             networkOut.close();
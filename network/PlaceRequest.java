@@ -7,25 +7,92 @@ import java.io.Serializable;
  * the server and clients.  These objects will be sent and received using
  * PlaceExchange.
  *
+ * Tiles are sent with their owner's id rather than name once the server has
+ * given the owner one; clients look the name up in the dictionary sent with
+ * LOGIN_SUCCESS and extended by OWNERS.
+ *
+ * Requests a client wants answered carry an id; the server's ACK or ERROR
+ * reply carries the same id so the client can match them up.  Unanswered
+ * requests and server broadcasts have an id of 0, except that BOARD,
+ * BOARD_CHANGES, BOARD_PREVIEW, TILE_CHANGED and TILES_CHANGED carry the
+ * server's change sequence number: every tile applied is numbered one more
+ * than the last, and the id is the number of the last change the board, or
+ * the message, holds.  A client keeps the highest it has seen so it can
+ * resume from it after reconnecting.
+ *
  * @param <E> the data type (depends on the request type):<br>
+ *      ACK: PlaceTile object, BitSet in reply to CHANGE_TILES,
+ *          PlaceRegion in reply to GET_REGION, long[] in reply to CHECKSUMS,
+ *          PlaceStatistics in reply to STATISTICS, or Integer in reply
+ *          to CHANGE_REGION<br>
  *      BOARD: PlaceBoard object<br>
+ *      BOARD_CHANGES: PlaceTileBatch object<br>
+ *      BOARD_PREVIEW: PlacePreview object<br>
+ *      CHANGE_REGION: PlaceRegion object<br>
  *      CHANGE_TILE: PlaceTile object<br>
+ *      CHANGE_TILES: PlaceTileBatch object<br>
+ *      CHECKSUMS: int[] of checksum tree nodes, or null for the root<br>
  *      ERROR: String<br>
- *      LOGIN: String<br>
- *      LOGIN_SUCCESS: String<br>
+ *      GET_REGION: PlaceRegion object<br>
+ *      HEARTBEAT: null<br>
+ *      LOGIN: String, or PlaceLogin object for progressive loading,
+ *          resuming or relays<br>
+ *      LOGIN_SUCCESS: PlaceOwners object<br>
+ *      OWNERS: PlaceOwners object<br>
+ *      REGION: PlaceRegion object<br>
+ *      STATISTICS: Integer<br>
  *      TILE_CHANGED: PlaceTile object<br>
+ *      TILES_CHANGED: PlaceTileBatch object<br>
  *
  * @author Sean Strout @ RIT CS
  */
 public class PlaceRequest<E extends Serializable> implements Serializable {
     public enum RequestType {
+        /**
+         * Used by the server to tell a client its request succeeded.  It has
+         * the id of the client's request and contains the Tile as placed.  In
+         * reply to CHANGE_TILES it contains a BitSet with a bit set for each
+         * tile of the batch that was applied.
+         */
+        ACK,
+
         /**
          * After a successful client login, the server will send the current
-         * Board to the client.  This is only sent once - afterwards the
-         * only information transmitted are the tile changes.
+         * Board to the client.  Afterwards the only information transmitted
+         * are the tile changes, unless the client falls so far behind that
+         * its queued changes are dropped and it is sent the board again.
          */
         BOARD,
 
+        /**
+         * Sent instead of BOARD to a client that logged in with a PlaceLogin
+         * holding the last change sequence number it saw, if the server still
+         * has every change since then.  It will contain a PlaceTileBatch of
+         * those changes, oldest first, to apply to the board the client
+         * already has.  It comes straight after LOGIN_SUCCESS.
+         */
+        BOARD_CHANGES,
+
+        /**
+         * Sent instead of BOARD to a client that logged in with a PlaceLogin.
+         * It will contain a low resolution Preview of the whole board.  It is
+         * followed by a REGION for every block of the board, nearest the
+         * client's viewport first; tile changes may arrive in between.
+         */
+        BOARD_PREVIEW,
+
+        /**
+         * A client's request to the server to paint a rectangle of the board
+         * in one go, e.g. an imported image.  It will contain a Region of
+         * colors, usually with a single owner.  Tiles already the right
+         * color are left alone; the rest are applied as if placed together,
+         * and broadcast as TILES_CHANGED.  The server replies with an ACK
+         * containing the Integer number of tiles changed, or an ERROR if the
+         * region is outside the board or larger than the server allows.  Like
+         * CHANGE_TILES, only clients logged in with the relay key may send it.
+         */
+        CHANGE_REGION,
+
         /**
          * A client's request to the server to change a tile.  It will contain
          * a Tile object.  It is important to note that the client should not
@@ -34,40 +101,113 @@ public class PlaceRequest<E extends Serializable> implements Serializable {
          */
         CHANGE_TILE,
 
+        /**
+         * A client's request to the server to change many tiles at once.  It
+         * will contain a PlaceTileBatch.  The server checks every tile first; an
+         * atomic batch is applied only if all its tiles are valid, otherwise
+         * the valid tiles are applied and the rest are skipped.  Only clients
+         * logged in with the relay key may send batches, which are exempt from
+         * the placement delay; batches from anyone else, or larger than the
+         * server allows, are rejected with an ERROR.
+         */
+        CHANGE_TILES,
+
+        /**
+         * A client's request for hashes from the server's Checksum tree, to
+         * find out which chunks of its board have drifted.  It will contain
+         * an int[] of node indexes, or null for just the root.  The server
+         * replies with an ACK containing a long[] of the hashes in the same
+         * order, or an ERROR if a node does not exist or too many are asked
+         * for.
+         */
+        CHECKSUMS,
+
         /**
          * Used for the server to tell the client there was an error.  It will
          * contain a message about the error. One place this is used is to tell
          * the client a login failed (because the username already exists).  It
          * is also used to indicate the server is shutting down, or any other
-         * unusual things happen.
+         * unusual things happen.  A reply to a client request has the id of
+         * that request.
          */
         ERROR,
 
+        /**
+         * A client's request for a rectangle of the board.  It will contain a
+         * Region with just the bounds, and whether owners and times are
+         * wanted.  The server replies with an ACK containing a Region holding
+         * the tiles, all as of the same moment, or an ERROR if the region is
+         * outside the board or too large.
+         */
+        GET_REGION,
+
+        /**
+         * Sent by the server to a client it has not heard from for a while,
+         * to check it is still there.  The client sends it straight back,
+         * with the same id.  Any request counts as hearing from a client; one
+         * that sends nothing until the server's idle timeout is disconnected.
+         */
+        HEARTBEAT,
+
         /**
          * Used by the client to login to the server.  It will contain a string
-         * that is the desired username for the client.
+         * that is the desired username for the client, or a Login with the
+         * username and viewport to load the board progressively.
          */
         LOGIN,
 
         /**
          * Used by the server to indicate to the client the login succeeded.
-         * It will contain a string indicating this.
+         * It will contain the Owners dictionary, so the client can look up
+         * the owner ids in the tiles it is sent.
          */
         LOGIN_SUCCESS,
 
+        /**
+         * Used by the server to tell all clients about new tile owners, just
+         * before the first tile they own is broadcast.  It will contain an
+         * Owners dictionary holding only the new names with their ids.
+         */
+        OWNERS,
+
+        /**
+         * Used by the server, after BOARD_PREVIEW, to send part of the board in
+         * full detail.  It will contain a Region with owners and times.  A
+         * tile in it only replaces the client's tile if it is not older.
+         */
+        REGION,
+
+        /**
+         * Used by a client (e.g. an admin dashboard) to ask for the board's
+         * live statistics.  It will contain the number of top users and
+         * busiest regions wanted.  The server replies with an ACK containing
+         * a PlaceStatistics object, or an ERROR unless the client logged in
+         * with the server's relay key.
+         */
+        STATISTICS,
+
         /**
          * Used by the server to indicate to all clients that a tile has
          * officially been changed.  It will contain the new Tile object.
          * The clients should update their view of the board each time
          * a tile change arrives.
          */
-        TILE_CHANGED
+        TILE_CHANGED,
+
+        /**
+         * Used by the server to indicate to all clients that a batch of tiles
+         * has officially been changed.  It will contain a PlaceTileBatch of the
+         * tiles that were applied, in order.
+         */
+        TILES_CHANGED
     }
 
     /** The request type */
     private RequestType type;
     /** The data associated with the request */
     private E data;
+    /** The id used to match a reply to its request, 0 if none */
+    private long id;
 
     /**
      * Create a new request.
@@ -76,8 +216,20 @@ public class PlaceRequest<E extends Serializable> implements Serializable {
      * @param data the data
      */
     public PlaceRequest(RequestType type, E data) {
+        this(type, data, 0L);
+    }
+
+    /**
+     * Create a new request with an id.
+     *
+     * @param type request type
+     * @param data the data
+     * @param id the id used to match a reply to its request
+     */
+    public PlaceRequest(RequestType type, E data, long id) {
         this.type = type;
         this.data = data;
+        this.id = id;
     }
 
     /**
@@ -94,6 +246,13 @@ public class PlaceRequest<E extends Serializable> implements Serializable {
      */
     public E getData() { return data; }
 
+    /**
+     * Get the id used to match a reply to its request.
+     *
+     * @return the id, 0 if none
+     */
+    public long getId() { return id; }
+
     /**
      * Utility method for debugging only.
      *
@@ -104,6 +263,7 @@ public class PlaceRequest<E extends Serializable> implements Serializable {
         return "PlaceRequest{" +
                 "type=" + type +
                 ", data=" + data +
+                ", id=" + id +
                 '}';
     }
 }
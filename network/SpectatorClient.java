@@ -0,0 +1,226 @@
+package place.network;
+
+import place.PlaceException;
+import place.model.ClientModel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.UUID;
+
+/**
+ * A read-only client for kiosk walls and spectator screens on the LAN.  It
+ * watches the server's multicast change feed (see PlaceServer's
+ * PLACE_MULTICAST_FEED) instead of holding a connection, so the server
+ * sends each change once however many spectators there are.
+ *
+ * The board is loaded over TCP when the spectator starts.  Every feed
+ * packet is numbered with the server's change sequence; if one is missing,
+ * the spectator logs in again over TCP, resuming from the last change it
+ * applied, and is sent just the changes it missed (or the board, if the
+ * server no longer has them), then carries on with the feed.  Tiles from
+ * the feed have no owner.
+ *
+ * Packets are received into one direct buffer and read in place through a
+ * reused FeedPacket view; only the tiles handed to the ClientModel, which
+ * keeps them, are allocated.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class SpectatorClient implements Closeable {
+    /** how many bytes of packets may wait to be read */
+    public static final int RECEIVE_BUFFER = 1 << 20;
+    /** how long to wait before logging in again after a refusal */
+    public static final int RETRY_MILLIS = 500;
+
+    /** the name of the host running the server */
+    private final String hostname;
+    /** the port of the server socket */
+    private final int port;
+    /** the object that is holding the current state of the board */
+    private final ClientModel clientModel;
+    /** the channel the feed is received on */
+    private final DatagramChannel channel;
+    /** the buffer each packet is received into */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(FeedPacket.MAX_SIZE);
+    /** reads the packet in the buffer */
+    private final FeedPacket packet = new FeedPacket();
+    /** the name used for TCP logins */
+    private final String userName = "spectator-" + UUID.randomUUID();
+    /** the sequence number of the latest change applied to the board */
+    private volatile long sequence = -1;
+    /** how many times the spectator has caught up over TCP */
+    private volatile int resyncs;
+    /** keeps the listener running */
+    private volatile boolean go = true;
+
+    /**
+     * Join the feed and load the board from the server.  Afterwards
+     * startListener() applies the feed to the ClientModel.
+     * @param hostname the name of the host running the server
+     * @param port the port of the server socket on which the server is running
+     * @param model the object that is holding the current state of the board
+     * @param group the feed's multicast group and port
+     * @param networkInterface the interface to receive on, or null for the
+     *                         first multicast interface that is up
+     * @throws PlaceException If the feed cannot be joined or the server cannot be reached
+     */
+    public SpectatorClient(String hostname, int port, ClientModel model, InetSocketAddress group,
+                           NetworkInterface networkInterface) throws PlaceException {
+        this.hostname = hostname;
+        this.port = port;
+        this.clientModel = model;
+        try {
+            // joined before the board is loaded, so no change falls in between
+            this.channel = DatagramChannel.open(group.getAddress() instanceof Inet6Address
+                    ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+            this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            this.channel.setOption(StandardSocketOptions.SO_RCVBUF, RECEIVE_BUFFER);
+            this.channel.bind(new InetSocketAddress(group.getPort()));
+            this.channel.join(group.getAddress(), networkInterface != null ? networkInterface : defaultInterface());
+        } catch (IOException e) {
+            throw new PlaceException(e);
+        }
+        resync();
+    }
+
+    /**
+     * Find an interface to receive the feed on when none is given.
+     *
+     * @return the first interface that is up and supports multicast, other
+     *         than the loopback, or the loopback if there is no other
+     * @throws IOException if there is none at all
+     */
+    private static NetworkInterface defaultInterface() throws IOException {
+        NetworkInterface loopback = null;
+        for (NetworkInterface candidate : NetworkInterface.networkInterfaces().toList()) {
+            if (candidate.isUp() && candidate.supportsMulticast()) {
+                if (!candidate.isLoopback()) {
+                    return candidate;
+                }
+                loopback = candidate;
+            }
+        }
+        if (loopback == null) {
+            throw new SocketException("No multicast network interface");
+        }
+        return loopback;
+    }
+
+    /**
+     * Start a thread applying the feed to the ClientModel.
+     */
+    public void startListener() {
+        Thread netThread = new Thread(this::run, "spectator");
+        netThread.setDaemon(true);
+        netThread.start();
+    }
+
+    /**
+     * The listener thread receives feed packets until the spectator is closed.
+     */
+    private void run() {
+        while (this.go) {
+            try {
+                this.buffer.clear();
+                this.channel.receive(this.buffer);
+                this.buffer.flip();
+                if (this.packet.wrap(this.buffer)) {
+                    apply(this.packet);
+                }
+            } catch (ClosedChannelException e) {
+                // closed
+                this.go = false;
+            } catch (IOException | PlaceException e) {
+                System.out.println(e.getMessage() + '?');
+            }
+        }
+    }
+
+    /**
+     * Apply the changes in a packet that the board does not have yet,
+     * catching up over TCP first if changes before them were missed.
+     * @param packet the packet
+     * @throws PlaceException if the spectator is closed while catching up
+     */
+    private void apply(FeedPacket packet) throws PlaceException {
+        if (packet.getFirst() > this.sequence + 1) {
+            resync();
+            if (packet.getFirst() > this.sequence + 1) {
+                return;
+            }
+        }
+        for (int i = (int) Math.min(this.sequence + 1 - packet.getFirst(), packet.getCount()); i < packet.getCount(); ++i) {
+            this.clientModel.changeTile(packet.getTile(i));
+        }
+        this.sequence = Math.max(this.sequence, packet.getNext() - 1);
+    }
+
+    /**
+     * Log in over TCP and be sent the changes since the last one applied,
+     * or the whole board the first time.  A refused login is retried.
+     * @throws PlaceException if the spectator is closed first
+     */
+    private void resync() throws PlaceException {
+        while (this.go) {
+            try {
+                NetworkClient client = new NetworkClient(this.hostname, this.port, this.clientModel,
+                        this.userName, null, this.sequence);
+                try {
+                    client.connect();
+                } finally {
+                    client.close();
+                }
+                this.sequence = client.getSequence();
+                this.resyncs++;
+                return;
+            } catch (PlaceException e) {
+                // e.g. connecting again too quickly
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ie) {
+                    throw new PlaceException(ie);
+                }
+            }
+        }
+        throw new PlaceException("Spectator closed");
+    }
+
+    /**
+     * Returns the server's sequence number of the latest change applied to the board
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * Returns how many times the board has been loaded or caught up over TCP
+     * @return the count, including the first load
+     */
+    public int getResyncs() {
+        return this.resyncs;
+    }
+
+    /**
+     * Leave the feed and stop the listener.
+     */
+    @Override
+    public void close() {
+        this.go = false;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package place.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a change to the server's board, covering the
+ * whole time the board lock is held, broadcast included.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@Name("place.BoardChange")
+@Label("Board Change")
+@Category({"Place", "Server"})
+@Description("Applying a tile to the board and broadcasting it while holding the board lock")
+public class BoardChangeEvent extends jdk.jfr.Event {
+    @Label("User")
+    String user;
+
+    @Label("Row")
+    int row;
+
+    @Label("Column")
+    int col;
+
+    @Label("Tiles")
+    @Description("The number of tiles applied, more than one for a batch")
+    int tiles;
+
+    @Label("Recipients")
+    int recipients;
+}
@@ -0,0 +1,71 @@
+package place.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import place.PlaceBoardExporter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Serves snapshots of a server's board over HTTP, as a PNG at /board.png
+ * and as a raw framebuffer at /board.fb (see {@link PlaceBoardExporter}),
+ * e.g. for a cron job archiving the canvas.  It is registered on the
+ * metrics endpoint's HttpServer and shares its threads, which is why those
+ * are more than one: exporting a large board does not hold up scrapes.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class BoardExportHandler implements HttpHandler {
+    /** the server whose board is exported */
+    private final PlaceServer server;
+    /** is the board sent as a PNG, rather than a raw framebuffer? */
+    private final boolean png;
+
+    /**
+     * Create a handler for one of the formats.
+     *
+     * @param server the server whose board is exported
+     * @param png true for a PNG, false for a raw framebuffer
+     */
+    private BoardExportHandler(PlaceServer server, boolean png) {
+        this.server = server;
+        this.png = png;
+    }
+
+    /**
+     * Serve a server's board at /board.png and /board.fb.
+     *
+     * @param http the HTTP endpoint
+     * @param server the server whose board is exported
+     */
+    static void register(HttpServer http, PlaceServer server) {
+        http.createContext("/board.png", new BoardExportHandler(server, true));
+        http.createContext("/board.fb", new BoardExportHandler(server, false));
+    }
+
+    /**
+     * Stream the board in reply to an HTTP request.  The board is read
+     * without the server's lock, so placements carry on while it is sent.
+     *
+     * @param exchange the request
+     * @throws IOException if the reply can't be sent
+     */
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", this.png ? "image/png" : "application/octet-stream");
+        // a length of 0 sends the body in chunks, as it is encoded
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = new BufferedOutputStream(exchange.getResponseBody(), 1 << 16)) {
+            PlaceBoardExporter exporter = new PlaceBoardExporter(this.server.getBoard());
+            if (this.png) {
+                exporter.writePng(out);
+            } else {
+                exporter.writeFramebuffer(out);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package place.server;
+
+import place.PlaceBoard;
+import place.PlaceColor;
+import place.PlaceStatistics;
+import place.PlaceTile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live statistics about the server's board, updated incrementally on every
+ * applied tile so queries never scan the board:
+ *      the number of tiles of each color, O(1) to read<br>
+ *      the users placing the most tiles, a Space-Saving top-K, O(K) to read<br>
+ *      recent activity per {@value #REGION_SIZE}x{@value #REGION_SIZE} region,
+ *          decaying exponentially, O(1) per region and O(K) for the busiest<br>
+ *
+ * Activity uses forward decay: each placement is weighted by
+ * e^(t/{@value #HEAT_TAU_MILLIS}ms) relative to a landmark time, so old
+ * counts never need to be touched; they are rescaled only when the weights
+ * grow too large.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class BoardStatistics {
+    /** log2 of the region size */
+    private static final int REGION_SHIFT = 4;
+    /** the width and height of a region, in tiles */
+    public static final int REGION_SIZE = 1 << REGION_SHIFT;
+    /** the most users and regions tracked by the top-K summaries */
+    private static final int TOP_CAPACITY = 256;
+    /** the time constant of the activity decay */
+    public static final long HEAT_TAU_MILLIS = 60_000;
+    /** how far the landmark may fall behind, in time constants, before rescaling */
+    private static final double MAX_EXPONENT = 100.0;
+
+    /** the number of tiles of each color, by color number */
+    private final long[] colorCounts = new long[PlaceColor.TOTAL_COLORS];
+    /** tiles placed per user */
+    private final SpaceSaving<String> users = new SpaceSaving<>(TOP_CAPACITY);
+    /** decayed activity per region, for the busiest regions */
+    private final SpaceSaving<Integer> regions = new SpaceSaving<>(TOP_CAPACITY);
+    /** decayed activity per region, scaled to the landmark */
+    private final double[] heat;
+    /** the number of regions across the board */
+    private final int regionsPerRow;
+    /** the time activity weights are relative to */
+    private long landmark = System.currentTimeMillis();
+
+    /**
+     * Create the statistics for a board, counting its colors once.
+     *
+     * @param board the board
+     */
+    public BoardStatistics(PlaceBoard board) {
+        // every tile that was never set is white
+        this.colorCounts[PlaceColor.WHITE.getNumber()] = (long) board.DIM * board.DIM;
+        board.forEachPainted(tile -> {
+            this.colorCounts[PlaceColor.WHITE.getNumber()]--;
+            this.colorCounts[tile.getColor().getNumber()]++;
+        });
+        this.regionsPerRow = (board.DIM + REGION_SIZE - 1) >> REGION_SHIFT;
+        this.heat = new double[this.regionsPerRow * this.regionsPerRow];
+    }
+
+    /**
+     * Count a tile that was applied to the board.
+     *
+     * @param previous the color the tile had before
+     * @param tile the new tile
+     */
+    public synchronized void tileChanged(PlaceColor previous, PlaceTile tile) {
+        this.colorCounts[previous.getNumber()]--;
+        this.colorCounts[tile.getColor().getNumber()]++;
+        this.users.add(tile.getOwner(), 1.0);
+
+        long now = System.currentTimeMillis();
+        double exponent = (double) (now - this.landmark) / HEAT_TAU_MILLIS;
+        if (exponent > MAX_EXPONENT) {
+            rescale(Math.exp(-exponent));
+            this.landmark = now;
+            exponent = 0.0;
+        }
+        double weight = Math.exp(exponent);
+        int region = (tile.getRow() >> REGION_SHIFT) * this.regionsPerRow + (tile.getCol() >> REGION_SHIFT);
+        this.heat[region] += weight;
+        this.regions.add(region, weight);
+    }
+
+    /**
+     * Scale every activity weight by the same factor.
+     *
+     * @param factor the factor
+     */
+    private void rescale(double factor) {
+        for (int i = 0; i < this.heat.length; i++) {
+            this.heat[i] *= factor;
+        }
+        this.regions.scale(factor);
+    }
+
+    /**
+     * Get the factor that turns a stored weight into activity as of now.
+     *
+     * @return the decay factor
+     */
+    private double decay() {
+        return Math.exp(-(double) (System.currentTimeMillis() - this.landmark) / HEAT_TAU_MILLIS);
+    }
+
+    /**
+     * Get the number of tiles of a color.
+     *
+     * @param color the color
+     * @return the count
+     */
+    public synchronized long getColorCount(PlaceColor color) {
+        return this.colorCounts[color.getNumber()];
+    }
+
+    /**
+     * Get the recent activity in the region holding a tile: its placements,
+     * each counted less the longer ago it happened.
+     *
+     * @param row row
+     * @param col column
+     * @rit.pre row and column constitute a valid board coordinate
+     * @return the heat
+     */
+    public synchronized double getHeat(int row, int col) {
+        return this.heat[(row >> REGION_SHIFT) * this.regionsPerRow + (col >> REGION_SHIFT)] * decay();
+    }
+
+    /**
+     * Take a copy of the statistics.
+     *
+     * @param k the most top users and busiest regions to include
+     * @return the statistics
+     */
+    public synchronized PlaceStatistics snapshot(int k) {
+        List<String> topUsers = new ArrayList<>();
+        List<Map.Entry<String, Double>> userEntries = this.users.top(k);
+        long[] userCounts = new long[userEntries.size()];
+        for (int i = 0; i < userEntries.size(); i++) {
+            topUsers.add(userEntries.get(i).getKey());
+            userCounts[i] = Math.round(userEntries.get(i).getValue());
+        }
+
+        List<Map.Entry<Integer, Double>> regionEntries = this.regions.top(k);
+        int[] rows = new int[regionEntries.size()];
+        int[] cols = new int[regionEntries.size()];
+        double[] heats = new double[regionEntries.size()];
+        double decay = decay();
+        for (int i = 0; i < regionEntries.size(); i++) {
+            int region = regionEntries.get(i).getKey();
+            rows[i] = (region / this.regionsPerRow) << REGION_SHIFT;
+            cols[i] = (region % this.regionsPerRow) << REGION_SHIFT;
+            // the summary picks the regions, the heat map has their exact activity
+            heats[i] = this.heat[region] * decay;
+        }
+        return new PlaceStatistics(this.colorCounts.clone(), topUsers, userCounts, REGION_SIZE, rows, cols, heats);
+    }
+}
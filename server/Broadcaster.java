@@ -0,0 +1,168 @@
+package place.server;
+
+import place.network.PlaceRequest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Sends the server's broadcasts to its clients from a few fan-out threads,
+ * so the server's lock is held for as long as it takes to queue a
+ * broadcast once per thread, not to queue it for every client.  Each
+ * client is given to one thread, which sends it every broadcast in the
+ * order they were queued; the threads share the clients between them, so
+ * the sending is spread over {@value #THREADS} cores at most.
+ *
+ * A client joins and leaves its thread in order with the broadcasts, so it
+ * is sent every broadcast queued after it was added and none queued
+ * before: those are already on the board, or in the changes, it is sent
+ * when it logs in.  Broadcasts and clients must be added under the
+ * server's lock, so the threads see them in sequence order.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class Broadcaster implements Closeable {
+    /** how many threads the clients are shared between */
+    static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** the fan-out threads */
+    private final Fanout[] threads = new Fanout[THREADS];
+    /** the thread each client was given to */
+    private final Map<ServerThread, Fanout> assigned = new HashMap<>();
+    /** the thread the next client is given to */
+    private int next;
+
+    /**
+     * Start the fan-out threads.
+     */
+    Broadcaster() {
+        for (int i = 0; i < THREADS; ++i) {
+            this.threads[i] = new Fanout("fanout-" + i);
+            this.threads[i].start();
+        }
+    }
+
+    /**
+     * Start sending broadcasts to a client, from the next one queued.
+     *
+     * @param user the client
+     */
+    synchronized void add(ServerThread user) {
+        Fanout thread = this.threads[this.next];
+        this.next = (this.next + 1) % THREADS;
+        this.assigned.put(user, thread);
+        thread.queue.add(new Member(user, true));
+    }
+
+    /**
+     * Stop sending broadcasts to a client, once those already queued are sent.
+     *
+     * @param user the client
+     */
+    synchronized void remove(ServerThread user) {
+        Fanout thread = this.assigned.remove(user);
+        if (thread != null) {
+            thread.queue.add(new Member(user, false));
+        }
+    }
+
+    /**
+     * Queue a broadcast for every client added so far.
+     *
+     * @param request the broadcast; the clients' writers only read it
+     */
+    synchronized void broadcast(PlaceRequest<?> request) {
+        for (Fanout thread : this.threads) {
+            thread.queue.add(request);
+        }
+    }
+
+    /**
+     * Stop the fan-out threads, dropping any broadcasts not yet sent.
+     */
+    @Override
+    public void close() {
+        for (Fanout thread : this.threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * A client joining or leaving a fan-out thread
+     */
+    private static class Member {
+        /** the client */
+        private final ServerThread user;
+        /** is it joining, rather than leaving? */
+        private final boolean joining;
+
+        /**
+         * Create a change of membership.
+         *
+         * @param user the client
+         * @param joining is it joining, rather than leaving?
+         */
+        Member(ServerThread user, boolean joining) {
+            this.user = user;
+            this.joining = joining;
+        }
+    }
+
+    /**
+     * Sends each broadcast queued for it to its share of the clients
+     */
+    private static class Fanout extends Thread {
+        /** broadcasts and changes of membership, in the order they were made */
+        private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+
+        /**
+         * Create a fan-out thread.
+         *
+         * @param name the thread's name
+         */
+        Fanout(String name) {
+            super(name);
+            setDaemon(true);
+        }
+
+        /**
+         * Send broadcasts until interrupted, each time taking everything queued.
+         */
+        @Override
+        public void run() {
+            List<ServerThread> users = new ArrayList<>();
+            List<Object> queued = new ArrayList<>();
+            try {
+                while (true) {
+                    queued.add(this.queue.take());
+                    this.queue.drainTo(queued);
+                    for (Object item : queued) {
+                        if (item instanceof Member) {
+                            Member member = (Member) item;
+                            if (member.joining) {
+                                users.add(member.user);
+                            } else {
+                                users.remove(member.user);
+                            }
+                        } else {
+                            PlaceRequest<?> request = (PlaceRequest<?>) item;
+                            // sending never waits, however far behind a client is
+                            for (ServerThread user : users) {
+                                user.send(request);
+                            }
+                        }
+                    }
+                    queued.clear();
+                }
+            } catch (InterruptedException e) {
+                // the server is closing
+            }
+        }
+    }
+}
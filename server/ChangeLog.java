@@ -0,0 +1,91 @@
+package place.server;
+
+import place.PlaceTile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recent changes to a board, numbered by a sequence that goes up by
+ * one for every tile applied.  A client that lost its connection tells the
+ * server the last sequence number it saw, and if the changes since then are
+ * still held it is sent just those instead of the whole board.
+ *
+ * The changes are kept in a ring, so the oldest are forgotten once
+ * {@code capacity} newer ones have been added.
+ *
+ * Not thread safe.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class ChangeLog {
+    /** the changes, the change numbered s at s % capacity */
+    private final PlaceTile[] tiles;
+    /** the sequence number of the newest change */
+    private long last;
+    /** the sequence number of the oldest change held */
+    private long first = 1;
+
+    /**
+     * Create an empty log.
+     *
+     * @param capacity the most changes held
+     */
+    ChangeLog(int capacity) {
+        this.tiles = new PlaceTile[capacity];
+    }
+
+    /**
+     * Add a change, forgetting the oldest if the log is full.
+     *
+     * @param tile the tile as applied
+     * @return the change's sequence number
+     */
+    long add(PlaceTile tile) {
+        this.last++;
+        this.tiles[(int) (this.last % this.tiles.length)] = tile;
+        if (this.last - this.first >= this.tiles.length) {
+            this.first++;
+        }
+        return this.last;
+    }
+
+    /**
+     * Get the sequence number of the newest change.
+     *
+     * @return the sequence number
+     */
+    long getSequence() {
+        return this.last;
+    }
+
+    /**
+     * Carry on from another sequence number, forgetting every change held,
+     * since the changes before it are not known.
+     *
+     * @param sequence the sequence number of the newest change
+     */
+    void reset(long sequence) {
+        this.last = sequence;
+        this.first = sequence + 1;
+    }
+
+    /**
+     * Get the changes made after a sequence number.
+     *
+     * @param from the last sequence number the caller saw
+     * @return the changes, oldest first, or null if some of them have been
+     *         forgotten or from is ahead of the log
+     */
+    List<PlaceTile> since(long from) {
+        if (from + 1 < this.first || from > this.last) {
+            return null;
+        }
+        List<PlaceTile> missed = new ArrayList<>((int) (this.last - from));
+        for (long s = from + 1; s <= this.last; ++s) {
+            missed.add(this.tiles[(int) (s % this.tiles.length)]);
+        }
+        return missed;
+    }
+}
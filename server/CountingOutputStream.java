@@ -0,0 +1,54 @@
+package place.server;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An output stream that counts the bytes written through it, both for its
+ * own client and towards the server's total.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    /** bytes written to this stream */
+    private final LongAdder count = new LongAdder();
+    /** bytes written to every client */
+    private final LongAdder total;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param out the stream to write to
+     * @param total where bytes written to every client are counted
+     */
+    public CountingOutputStream(OutputStream out, LongAdder total) {
+        super(out);
+        this.total = total;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.out.write(b);
+        this.count.increment();
+        this.total.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.out.write(b, off, len);
+        this.count.add(len);
+        this.total.add(len);
+    }
+
+    /**
+     * Get the number of bytes written to this stream.
+     *
+     * @return the byte count
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+}
@@ -0,0 +1,169 @@
+package place.server;
+
+import place.network.PlaceRequest;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds clients that have stopped talking to the server, such as those
+ * whose connection is half open after their host went away, and evicts
+ * them, so their thread, their place in the broadcasts and their queued
+ * updates are not held forever.
+ *
+ * Every request a client sends counts as hearing from it.  A client the
+ * server has not heard from for the heartbeat interval is sent a HEARTBEAT,
+ * which it echoes; one not heard from for the idle timeout is disconnected
+ * and removed.  One timing wheel, turned by a single thread every
+ * {@value #TICK_MILLIS} milliseconds, holds the next check for every
+ * client, so there is no timer per client and a client that keeps talking
+ * costs nothing until its check comes round.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class IdleReaper implements Closeable {
+    /** how often the wheel is turned, and so how late a check may be */
+    static final int TICK_MILLIS = 100;
+    /** how many ticks make up a turn of the wheel */
+    private static final int SLOTS = 512;
+
+    /** the server the clients are removed from */
+    private final PlaceServer server;
+    /** the next check for each client */
+    private final TimingWheel<ServerThread> wheel;
+    /** how long a client may be silent before it is sent a heartbeat */
+    private volatile int intervalMillis;
+    /** how long a client may be silent before it is evicted */
+    private volatile int timeoutMillis;
+    /** numbers the heartbeats */
+    private long lastId;
+    /** how many clients have been evicted */
+    private volatile long evicted;
+    /** turns the wheel */
+    private final Thread turner;
+    /** keeps the turner running */
+    private volatile boolean go = true;
+
+    /**
+     * Start checking clients.
+     *
+     * @param server the server the clients are removed from
+     * @param intervalMillis how long a client may be silent before it is sent a heartbeat
+     * @param timeoutMillis how long a client may be silent before it is evicted
+     */
+    IdleReaper(PlaceServer server, int intervalMillis, int timeoutMillis) {
+        this.server = server;
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.wheel = new TimingWheel<>(TICK_MILLIS, SLOTS, System.currentTimeMillis());
+        this.turner = new Thread(this::turn, "idle-reaper");
+        this.turner.setDaemon(true);
+        this.turner.start();
+    }
+
+    /**
+     * Change the interval and timeout.  Checks already scheduled keep their
+     * times; each client's next is scheduled with the new ones.
+     *
+     * @param intervalMillis how long a client may be silent before it is sent a heartbeat
+     * @param timeoutMillis how long a client may be silent before it is evicted
+     */
+    void setTimeouts(int intervalMillis, int timeoutMillis) {
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Start checking a client that has just been added.
+     *
+     * @param user the client
+     */
+    synchronized void add(ServerThread user) {
+        this.wheel.schedule(user, user.getLastHeard() + this.intervalMillis);
+    }
+
+    /**
+     * Get how many clients have been evicted since the server started.
+     *
+     * @return the count
+     */
+    long getEvicted() {
+        return this.evicted;
+    }
+
+    /**
+     * The turner thread expires the checks that are due every tick.
+     */
+    private void turn() {
+        List<ServerThread> silent = new ArrayList<>();
+        while (this.go) {
+            try {
+                Thread.sleep(TICK_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                this.wheel.advance(now, user -> check(user, now, silent));
+            }
+            // evicted outside the lock, since removing a user takes the
+            // server's, which is held while users are added
+            for (ServerThread user : silent) {
+                evict(user);
+            }
+            silent.clear();
+        }
+    }
+
+    /**
+     * Check on a client: mark it for eviction if it has been silent too
+     * long, otherwise send it a heartbeat if it has been quiet and schedule
+     * its next check.  A client that has already gone is forgotten.
+     *
+     * @param user the client
+     * @param now the current time, in milliseconds
+     * @param silent where clients to evict are added
+     */
+    private void check(ServerThread user, long now, List<ServerThread> silent) {
+        if (user.isClosed()) {
+            return;
+        }
+        long heard = user.getLastHeard();
+        if (now - heard >= this.timeoutMillis) {
+            silent.add(user);
+            return;
+        }
+        if (now - heard >= this.intervalMillis) {
+            // sending never waits
+            user.send(new PlaceRequest<>(PlaceRequest.RequestType.HEARTBEAT, null, ++this.lastId));
+            this.wheel.schedule(user, Math.min(now + this.intervalMillis, heard + this.timeoutMillis));
+        } else {
+            this.wheel.schedule(user, heard + this.intervalMillis);
+        }
+    }
+
+    /**
+     * Disconnect a client and remove it from the server.
+     *
+     * @param user the client
+     */
+    private void evict(ServerThread user) {
+        this.evicted++;
+        this.server.getLog().log("Evicting " + user.getUsername() + ", silent for "
+                + (System.currentTimeMillis() - user.getLastHeard()) + "ms");
+        // disconnected first, so a broadcast waiting on its full lane gives up
+        user.disconnect();
+        this.server.removeUser(user);
+    }
+
+    /**
+     * Stop checking clients.
+     */
+    @Override
+    public void close() {
+        this.go = false;
+        this.turner.interrupt();
+    }
+}
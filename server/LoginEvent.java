@@ -0,0 +1,22 @@
+package place.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the login handshake, from the client connecting
+ * to its LOGIN request being read.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@Name("place.Login")
+@Label("Login")
+@Category({"Place", "Server"})
+@Description("Reading a client's LOGIN request")
+public class LoginEvent extends jdk.jfr.Event {
+    @Label("User")
+    String user;
+}
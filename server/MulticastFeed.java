@@ -0,0 +1,223 @@
+package place.server;
+
+import place.PlaceException;
+import place.PlaceTile;
+import place.network.BufferPool;
+import place.network.FeedPacket;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+
+/**
+ * Sends the server's changes to a multicast group for SpectatorClients, so
+ * one datagram reaches any number of spectators on the LAN, however many
+ * there are.  Changes are batched into FeedPackets: a packet is sent once
+ * it is full, or {@value #FLUSH_MILLIS} milliseconds after its first
+ * change, and a heartbeat is sent whenever nothing has been sent for
+ * {@value #HEARTBEAT_MILLIS} milliseconds.
+ *
+ * Changes are written straight into pooled direct buffers through a
+ * reused FeedPacket view, and a sender thread hands the full buffers to the
+ * channel, so the feed does not allocate however many changes it carries.
+ *
+ * Delivery is not guaranteed; spectators notice a missing sequence number
+ * and catch up over TCP.  Changes are added under the server's lock, so
+ * when every buffer is waiting to be sent the change is dropped rather than
+ * waited for, leaving such a gap.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class MulticastFeed implements Closeable {
+    /** the longest a change waits for more to fill its packet */
+    static final int FLUSH_MILLIS = 20;
+    /** the longest the feed is silent */
+    static final int HEARTBEAT_MILLIS = 1000;
+    /** how many routers a packet may cross */
+    private static final int TIME_TO_LIVE = 1;
+    /** how many packets may be filling or waiting to be sent */
+    private static final int BUFFERS = 16;
+
+    /** the channel the packets are sent from */
+    private final DatagramChannel channel;
+    /** the group and port the packets are sent to */
+    private final InetSocketAddress group;
+    /** the server's log */
+    private final ServerLog log;
+    /** the buffers packets are written in */
+    private final BufferPool pool = new BufferPool(BUFFERS, FeedPacket.MAX_SIZE);
+    /** packets waiting to be sent, in sequence order */
+    private final ArrayDeque<ByteBuffer> ready = new ArrayDeque<>(BUFFERS);
+    /** writes changes into the filling packet */
+    private final FeedPacket packet = new FeedPacket();
+    /** the packet changes are being added to, null if none */
+    private ByteBuffer filling;
+    /** the sequence number of the next change */
+    private long next;
+    /** when the first change in the filling packet arrived, in milliseconds */
+    private long firstTime;
+    /** when the last packet was sent, in milliseconds */
+    private long lastSent;
+    /** sends the packets */
+    private final Thread sender;
+    /** keeps the sender running */
+    private boolean go = true;
+    /** changes dropped because every buffer was in use */
+    private long dropped;
+
+    /**
+     * Open the feed and start its sender.
+     *
+     * @param group the multicast group and port
+     * @param networkInterface the interface to send on, or null for the default
+     * @param next the sequence number of the next change
+     * @param log the server's log
+     * @throws PlaceException if the channel cannot be opened
+     */
+    MulticastFeed(InetSocketAddress group, NetworkInterface networkInterface, long next, ServerLog log) throws PlaceException {
+        this.group = group;
+        this.log = log;
+        this.next = next;
+        try {
+            this.channel = DatagramChannel.open(group.getAddress() instanceof Inet6Address
+                    ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+            this.channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, TIME_TO_LIVE);
+            this.channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            if (networkInterface != null) {
+                this.channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            }
+        } catch (IOException e) {
+            throw new PlaceException(e);
+        }
+        this.sender = new Thread(this::send, "multicast-feed");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    /**
+     * Write a change into the filling packet, handing the packet to the
+     * sender once it is full.  Changes must be added in sequence order; if
+     * the sequence jumps, the filling packet is handed over first.  If every
+     * buffer is in use the change is dropped, and spectators catch up on it
+     * over TCP.
+     *
+     * @param sequence the change's sequence number
+     * @param tile the tile as applied
+     */
+    synchronized void tileChanged(long sequence, PlaceTile tile) {
+        if (this.filling != null && sequence != this.packet.getNext()) {
+            seal();
+        }
+        if (this.filling == null) {
+            this.filling = this.go ? this.pool.acquire() : null;
+            if (this.filling == null) {
+                // closed, or the sender is behind; heartbeats carry on from here
+                if (this.go) {
+                    this.next = sequence + 1;
+                    if (++this.dropped == 1 || this.log.sample()) {
+                        this.log.log("Multicast feed: dropped " + this.dropped + " changes, every buffer in use");
+                    }
+                }
+                return;
+            }
+            this.packet.start(this.filling, sequence);
+            this.firstTime = System.currentTimeMillis();
+        }
+        this.packet.add(tile);
+        if (this.packet.getCount() == FeedPacket.MAX_TILES) {
+            seal();
+        }
+    }
+
+    /**
+     * Hand the filling packet to the sender.  Called with the lock held.
+     */
+    private void seal() {
+        this.packet.finish();
+        this.ready.add(this.filling);
+        this.next = this.packet.getNext();
+        this.filling = null;
+        notifyAll();
+    }
+
+    /**
+     * The sender thread sends each packet handed to it, and the filling
+     * packet once its first change has waited long enough, or a heartbeat
+     * while the board is quiet.  The packets are sent outside the lock, so
+     * changes are never held up by the network.
+     */
+    private void send() {
+        while (true) {
+            ByteBuffer buffer;
+            synchronized (this) {
+                try {
+                    while (this.ready.isEmpty()) {
+                        if (!this.go) {
+                            return;
+                        }
+                        long now = System.currentTimeMillis();
+                        long due = this.filling != null ? this.firstTime + FLUSH_MILLIS
+                                : this.lastSent + HEARTBEAT_MILLIS;
+                        if (now < due) {
+                            wait(due - now);
+                        } else if (this.filling != null) {
+                            seal();
+                        } else if ((this.filling = this.pool.acquire()) != null) {
+                            // a heartbeat is an empty packet
+                            this.packet.start(this.filling, this.next);
+                            seal();
+                        } else {
+                            wait(FLUSH_MILLIS);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                buffer = this.ready.poll();
+            }
+            try {
+                this.channel.send(buffer, this.group);
+            } catch (IOException e) {
+                // spectators will catch up over TCP
+                this.log.log("Multicast feed: " + e.getMessage());
+            }
+            synchronized (this) {
+                this.pool.release(buffer);
+                this.lastSent = System.currentTimeMillis();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Send what is waiting and stop the feed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.filling != null) {
+                seal();
+            }
+            this.go = false;
+            notifyAll();
+        }
+        try {
+            this.sender.join(HEARTBEAT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            this.log.log("Multicast feed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package place.server;
+
+import place.PlaceException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Starts a whole Place cluster on this host, run on the command line as:
+ *
+ * $ java PlaceCluster port DIM shards [connectionDelay [metricsPort]]
+ *
+ * Each of the shards is started as its own {@link PlaceShard} process,
+ * listening on the ports after port, and this process runs the
+ * {@link ShardRouter} that clients connect to on port.  The shards are
+ * stopped when the router stops.  connectionDelay and metricsPort apply to
+ * the router, as for {@link PlaceServer}.  The router logs in to the shards,
+ * and relays and admins to the router, with the key in the PLACE_RELAY_KEY
+ * environment variable; if it is not set a random key is made up, which
+ * the shards are given but nothing else can know.  Useful for testing; in
+ * production the shards and router are started separately.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceCluster {
+
+    /**
+     * Start the shards and the router.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 5) {
+            System.out.println("Usage: java PlaceCluster port DIM shards [connectionDelay [metricsPort]]");
+            System.exit(1);
+        }
+        int port = Integer.parseInt(args[0]);
+        String dim = args[1];
+        int count = Integer.parseInt(args[2]);
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            relayKey = UUID.randomUUID().toString();
+        }
+
+        List<Process> processes = new ArrayList<>();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> processes.forEach(Process::destroy)));
+        List<InetSocketAddress> shards = new ArrayList<>();
+        try {
+            for (int i = 0; i < count; ++i) {
+                int shardPort = port + 1 + i;
+                ProcessBuilder shard = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        PlaceShard.class.getName(), Integer.toString(shardPort), dim,
+                        Integer.toString(i), Integer.toString(count));
+                // in the environment, not the arguments, which anyone on the host can list
+                shard.environment().put(PlaceServer.RELAY_KEY_VARIABLE, relayKey);
+                processes.add(shard.inheritIO().start());
+                shards.add(InetSocketAddress.createUnresolved("localhost", shardPort));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to start shards!");
+            processes.forEach(Process::destroy);
+            System.exit(1);
+        }
+
+        try (PlaceServer server = new PlaceServer(port, Integer.parseInt(dim))) {
+            ShardRouter router = new ShardRouter(server, shards, relayKey);
+            try {
+                server.setRelayKey(relayKey);
+                server.setHeartbeat(System.getenv(PlaceServer.HEARTBEAT_VARIABLE));
+                if (args.length >= 4) {
+                    server.setConnectionDelay(Integer.parseInt(args[3]));
+                }
+                if (args.length == 5 && Integer.parseInt(args[4]) != 0) {
+                    server.startHttp(Integer.parseInt(args[4]));
+                }
+                server.serve();
+            } finally {
+                router.close();
+            }
+        } catch (PlaceException e) {
+            System.err.println("Failed to start router!");
+            System.out.println(e.getMessage());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+}
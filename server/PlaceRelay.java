@@ -0,0 +1,72 @@
+package place.server;
+
+import place.PlaceException;
+
+import java.io.IOException;
+import java.util.Collections;
+
+/**
+ * A relay that takes clients off a Place server, run on the command line as:
+ *
+ * $ java PlaceRelay port DIM upstreamHost:upstreamPort [connectionDelay [metricsPort]]
+ *
+ * The relay logs in to the upstream server (the primary, or another relay)
+ * with the key in the PLACE_RELAY_KEY environment variable, which the
+ * upstream server must have been started with.  It mirrors the upstream
+ * board, serves BOARD, GET_REGION, CHECKSUMS and STATISTICS to its own
+ * clients and broadcasts them every TILE_CHANGED, so the upstream server
+ * sends each change once per relay rather than once per client.  Its
+ * clients' placements are forwarded upstream, which has the final say; the
+ * relay applies the placement delay to them itself.  Relays accept other
+ * relays with the same key, so they can be chained.  Like a PlaceServer,
+ * a relay multicasts its changes to spectators if PLACE_MULTICAST_FEED is set,
+ * and disconnects silent clients as PLACE_HEARTBEAT says.
+ *
+ * A relay is a {@link ShardRouter} in front of a single shard that owns the
+ * whole board.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceRelay {
+
+    /**
+     * Start a relay.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 5) {
+            System.out.println("Usage: java PlaceRelay port DIM upstreamHost:upstreamPort [connectionDelay [metricsPort]]");
+            System.exit(1);
+        }
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            System.out.println(PlaceServer.RELAY_KEY_VARIABLE + " must be set to the upstream server's relay key");
+            System.exit(1);
+        }
+        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]))) {
+            ShardRouter upstream = new ShardRouter(server,
+                    Collections.singletonList(ShardRouter.address(args[2])), relayKey);
+            try {
+                server.setRelayKey(relayKey);
+                server.startFeed(System.getenv(PlaceServer.FEED_VARIABLE));
+                server.setHeartbeat(System.getenv(PlaceServer.HEARTBEAT_VARIABLE));
+                if (args.length >= 4) {
+                    server.setConnectionDelay(Integer.parseInt(args[3]));
+                }
+                if (args.length == 5 && Integer.parseInt(args[4]) != 0) {
+                    server.startHttp(Integer.parseInt(args[4]));
+                }
+                server.serve();
+            } finally {
+                upstream.close();
+            }
+        } catch (PlaceException e) {
+            System.err.println("Failed to start relay!");
+            System.out.println(e.getMessage());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+}
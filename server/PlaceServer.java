@@ -1,8 +1,14 @@
 package place.server;
 
+import place.MappedPlaceBoard;
 import place.PlaceBoard;
+import place.PlaceChecksum;
+import place.PlaceColor;
 import place.PlaceException;
+import place.PlacePreview;
+import place.PlaceRegion;
 import place.PlaceTile;
+import place.PlaceTileBatch;
 import place.network.PlaceRequest;
 
 import java.io.Closeable;
@@ -10,17 +16,44 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.util.*;
 
 /**
  * The Place server is run on the command line as:
  *
- * $ java PlaceServer port DIM
+ * $ java PlaceServer port DIM [connectionDelay [metricsPort [boardFile]]]
  *
  * Where port is the port number of the host and DIM is the square dimension
- * of the board.
+ * of the board.  The optional connectionDelay is how many milliseconds apart
+ * connections from the same IP must be (default 500, 0 to allow any rate,
+ * e.g. for load testing).  If metricsPort is given and not 0, metrics can be
+ * scraped from http://localhost:metricsPort/metrics; they are always
+ * available through JMX.  If boardFile is given, the board is kept in that
+ * memory mapped file instead of on the heap, and a restarted server carries
+ * on with the board already in it.  Relays (see PlaceRelay) are allowed if
+ * the PLACE_RELAY_KEY environment variable is set, and must log in with the
+ * same key.  Every tile applied is given the next number of a change
+ * sequence; a client that lost its connection can log in again with the
+ * last number it saw and be sent just the changes since, which is how
+ * clients carry on after a PlaceStandby takes over from a failed server.
+ * If the PLACE_MULTICAST_FEED environment variable is set to
+ * "group:port" or "group:port,interface", every change is also multicast to
+ * that group for SpectatorClients on the LAN.
+ * A client the server has not heard from for 15 seconds is sent a
+ * heartbeat, and one silent for 45 seconds is disconnected; set the
+ * PLACE_HEARTBEAT environment variable to "interval,timeout" in
+ * milliseconds to change them.
+ * For latency investigations, the server emits Flight
+ * Recorder events (category "Place") for logins, tile requests, board
+ * changes and sends; record them with -XX:StartFlightRecording.
  *
  * @author Sean Strout @ RIT CS
  * @author Frank Abbey @fra1489
@@ -31,25 +64,101 @@ public class PlaceServer implements Closeable {
 
     private ServerSocket serverSocket;
     private List<ServerThread> connections = new ArrayList<>();
+    // the connections logged in with the relay key, which are sent
+    // broadcasts under the lock, in order with the replies that follow them
+    private final List<ServerThread> relays = new ArrayList<>();
     private PlaceBoard board;
     private Set<InetAddress> IPs = new HashSet<>();
     // used for Thread bombing
-    private final int connectionDelay = 500;
+    private int connectionDelay = 500;
+    // how many milliseconds a client waits after each accepted placement
+    private int placementDelay = 500;
+    // the part of the board this server accepts placements for when it is a
+    // shard of a cluster, otherwise null
+    private PlaceRegion ownedRegion;
+    // forwards placements to the shards when this server is a cluster's
+    // router, otherwise null
+    private volatile ShardRouter router;
+    // the key relays log in with to be exempt from the placement delay,
+    // null if relays are not allowed
+    private String relayKey;
+    // most tiles a relay may place in one CHANGE_TILES request; other clients
+    // may not send batches, which would get round the placement delay
+    public static final int MAX_BATCH = 4096;
+    // most tiles a relay may read in one GET_REGION request, or paint in one
+    // CHANGE_REGION; other clients may read MAX_BATCH tiles at a time
+    public static final int MAX_REGION_AREA = 1 << 20;
+    // most cells across the preview sent for progressive loading
+    public static final int PREVIEW_SIDE = 128;
+    // the width and height of each REGION sent for progressive loading
+    public static final int PROGRESSIVE_BLOCK = 64;
+    // the environment variable holding the key relays log in with
+    public static final String RELAY_KEY_VARIABLE = "PLACE_RELAY_KEY";
+    // most recent changes kept for clients resuming after a reconnect
+    public static final int CHANGE_LOG_SIZE = 1 << 16;
+    // bytes of a client's requests the operating system may hold unsent
+    public static final int SEND_BUFFER = 64 * 1024;
+    // the environment variable holding the multicast feed's group and port
+    public static final String FEED_VARIABLE = "PLACE_MULTICAST_FEED";
+    // how long a client may be silent before it is sent a heartbeat
+    public static final int HEARTBEAT_INTERVAL = 15000;
+    // how long a client may be silent before it is disconnected
+    public static final int IDLE_TIMEOUT = 45000;
+    // the environment variable holding the heartbeat interval and idle timeout
+    public static final String HEARTBEAT_VARIABLE = "PLACE_HEARTBEAT";
+    // console output, printed in the background
+    private final ServerLog log = new ServerLog();
+    // throughput, latency and connection metrics
+    private final ServerMetrics metrics;
+    // live color, user and activity statistics
+    private final BoardStatistics statistics;
+    // checksums over the board, for clients to find chunks that have drifted
+    private final PlaceChecksum checksum;
+    // the recent changes and their sequence numbers
+    private final ChangeLog changes = new ChangeLog(CHANGE_LOG_SIZE);
+    // multicasts the changes to spectators, null if not started
+    private MulticastFeed feed;
+    // sends heartbeats to quiet clients and evicts silent ones
+    private final IdleReaper reaper;
+    // sends the broadcasts to every client but the relays, outside the lock
+    private final Broadcaster broadcaster;
 
     /**
      * constructor for PlaceSever which creates the Server Socket
      *
-     * @param port - the connection port
+     * @param port - the connection port (0 for any free port)
      * @param dim - the dimensions of the PlaceBoard
      * @throws PlaceException
      */
-    private PlaceServer(int port, int dim) throws PlaceException {
+    public PlaceServer(int port, int dim) throws PlaceException {
+        this(port, dim, null);
+    }
+
+    /**
+     * constructor for PlaceSever which creates the Server Socket, keeping
+     * the board in a memory mapped file
+     *
+     * @param port - the connection port (0 for any free port)
+     * @param dim - the dimensions of the PlaceBoard
+     * @param boardFile - the board file, created if missing; null to keep
+     *                    the board on the heap
+     * @throws PlaceException
+     */
+    public PlaceServer(int port, int dim, Path boardFile) throws PlaceException {
+        board = boardFile == null ? new PlaceBoard(dim) : new MappedPlaceBoard(boardFile, dim);
         try {
             this.serverSocket = new ServerSocket(port);
-            board = new PlaceBoard(dim);
         } catch (IOException e) {
             throw new PlaceException(e);
         }
+        statistics = new BoardStatistics(board);
+        checksum = new PlaceChecksum(board);
+        // start past any sequence number an earlier run of the server could
+        // have reached, so a client resuming from one is sent the board
+        changes.reset(System.currentTimeMillis() << 20);
+        metrics = new ServerMetrics(this);
+        reaper = new IdleReaper(this, HEARTBEAT_INTERVAL, IDLE_TIMEOUT);
+        broadcaster = new Broadcaster();
     }
 
     /**
@@ -68,9 +177,16 @@ public class PlaceServer implements Closeable {
         // This threads stops on its own at the end of the game and
         // does not need to rendezvous with other software components.
         Socket clientSocket = s.serverSocket.accept();
-        System.out.print("Client connecting... \n IP: " + clientSocket.getInetAddress() + "\n port: " + clientSocket.getLocalPort() + "\n");
+        log.log("Client connecting... \n IP: " + clientSocket.getInetAddress() + "\n port: " + clientSocket.getLocalPort());
         IPs.add(clientSocket.getInetAddress());
-        ServerThread netThread = new ServerThread(new ObjectOutputStream(clientSocket.getOutputStream()), new ObjectInputStream(clientSocket.getInputStream()), s);
+        // keep the board updates a slow client is behind on queued in its
+        // bulk lane, where replies can overtake them, not in the socket
+        clientSocket.setSendBufferSize(SEND_BUFFER);
+        // replies are small and wanted at once
+        clientSocket.setTcpNoDelay(true);
+        // count the bytes sent to each client for the metrics
+        CountingOutputStream counter = new CountingOutputStream(clientSocket.getOutputStream(), metrics.getBytesSentCounter());
+        ServerThread netThread = new ServerThread(new ObjectOutputStream(counter), new ObjectInputStream(clientSocket.getInputStream()), s, counter);
         boolean flag = false, flag2 = false;
         for (ServerThread current : connections) {
             // if the username is already connected
@@ -79,7 +195,7 @@ public class PlaceServer implements Closeable {
                 break;
             }
             // checking if the IP has connected in the last second
-            else if (current.getBornTime() + connectionDelay > new Date().getTime()){
+            else if (current.getBornTime() + connectionDelay > System.currentTimeMillis()){
                 if(IPs.contains(clientSocket.getInetAddress())){
                     flag = true;
                     flag2 = true;
@@ -89,34 +205,323 @@ public class PlaceServer implements Closeable {
         }
         // if the username isn't already used, and the IP hasn't recently connected
         if(!flag){
-            connections.add(netThread);
+            addUser(netThread);
+            reaper.add(netThread);
             netThread.start();
         } else {
             netThread.getNetworkOut().writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, null));
-            System.out.println("Failed to connect: ");
             // customized error messages for Server
             if(!flag2){
-                System.out.println(" User's name was taken");
+                log.log("Failed to connect: \n User's name was taken");
             }
             else{
-                System.out.println(" IP Address is connecting too quickly");
+                log.log("Failed to connect: \n IP Address is connecting too quickly");
+            }
+        }
+    }
+
+    /**
+     * accept clients until the server socket is closed
+     *
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public void serve() throws IOException, ClassNotFoundException {
+        while(true) {
+            startListener(this);
+        }
+    }
+
+    /**
+     * set how many milliseconds apart connections from the same IP must be
+     *
+     * @param connectionDelay - the delay, 0 to allow any rate
+     */
+    public void setConnectionDelay(int connectionDelay) {
+        this.connectionDelay = connectionDelay;
+    }
+
+    /**
+     * set how many milliseconds a client waits after each accepted placement
+     *
+     * @param placementDelay - the delay, 0 for none (e.g. for a cluster's
+     *                         router, which delays its own clients)
+     */
+    public void setPlacementDelay(int placementDelay) {
+        this.placementDelay = placementDelay;
+    }
+
+    /**
+     * get how many milliseconds a client waits after each accepted placement
+     *
+     * @return int - the delay
+     */
+    public int getPlacementDelay() {
+        return placementDelay;
+    }
+
+    /**
+     * set how long a client may be silent before it is sent a heartbeat,
+     * and before it is disconnected
+     *
+     * @param interval - the heartbeat interval in milliseconds
+     * @param timeout - the idle timeout in milliseconds, longer than the interval
+     */
+    public void setHeartbeat(int interval, int timeout) {
+        if (interval <= 0 || timeout <= interval) {
+            throw new IllegalArgumentException("idle timeout must be longer than the heartbeat interval");
+        }
+        reaper.setTimeouts(interval, timeout);
+    }
+
+    /**
+     * set the heartbeat interval and idle timeout as given in the
+     * HEARTBEAT_VARIABLE environment variable
+     *
+     * @param setting - "interval,timeout" in milliseconds, or null to keep the defaults
+     * @throws PlaceException if the setting is malformed
+     */
+    public void setHeartbeat(String setting) throws PlaceException {
+        if (setting == null) {
+            return;
+        }
+        String[] parts = setting.split(",");
+        try {
+            setHeartbeat(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[parts.length - 1].trim()));
+        } catch (IllegalArgumentException e) {
+            throw new PlaceException("Bad " + HEARTBEAT_VARIABLE + " \"" + setting + "\": " + e.getMessage());
+        }
+    }
+
+    /**
+     * get how many silent clients have been disconnected
+     *
+     * @return long - the count
+     */
+    public long getEvictions() {
+        return reaper.getEvicted();
+    }
+
+    /**
+     * start multicasting every change to spectators
+     *
+     * @param group - the multicast group and port
+     * @param networkInterface - the interface to send on, or null for the default
+     * @throws PlaceException if the feed cannot be opened
+     */
+    public synchronized void startFeed(InetSocketAddress group, NetworkInterface networkInterface) throws PlaceException {
+        if (feed != null) {
+            feed.close();
+        }
+        feed = new MulticastFeed(group, networkInterface, changes.getSequence() + 1, log);
+        log.log("Multicasting changes to " + group);
+    }
+
+    /**
+     * start multicasting every change to spectators, as given in the
+     * FEED_VARIABLE environment variable
+     *
+     * @param setting - "group:port" or "group:port,interface", or null to not start the feed
+     * @throws PlaceException if the feed cannot be opened
+     */
+    public void startFeed(String setting) throws PlaceException {
+        if (setting == null) {
+            return;
+        }
+        String[] parts = setting.split(",", 2);
+        int colon = parts[0].lastIndexOf(':');
+        try {
+            NetworkInterface networkInterface = null;
+            if (parts.length == 2) {
+                networkInterface = NetworkInterface.getByName(parts[1]);
+                if (networkInterface == null) {
+                    throw new PlaceException("No network interface " + parts[1]);
+                }
             }
+            startFeed(new InetSocketAddress(InetAddress.getByName(parts[0].substring(0, colon)),
+                    Integer.parseInt(parts[0].substring(colon + 1))), networkInterface);
+        } catch (IOException e) {
+            throw new PlaceException(e);
         }
     }
 
+    /**
+     * make this server a shard of a cluster, accepting placements only
+     * within a region of the board
+     *
+     * @param ownedRegion - the region, or null to accept the whole board
+     */
+    public synchronized void setOwnedRegion(PlaceRegion ownedRegion) {
+        this.ownedRegion = ownedRegion;
+    }
+
+    /**
+     * make this server a cluster's router, forwarding placements to the
+     * shards that own them rather than applying them itself
+     *
+     * @param router - the router, or null to apply placements here
+     */
+    public void setRouter(ShardRouter router) {
+        this.router = router;
+    }
+
+    /**
+     * allow relays that log in with a key; they are not delayed after each
+     * placement, since they place on behalf of all their own clients
+     *
+     * @param relayKey - the key, or null to allow no relays
+     */
+    public void setRelayKey(String relayKey) {
+        this.relayKey = relayKey;
+    }
+
+    /**
+     * check the key a client logged in with is the relay key
+     *
+     * @param key - the client's key, or null
+     * @return boolean - is the client a relay?
+     */
+    public boolean isRelayKey(String key) {
+        return relayKey != null && key != null && MessageDigest.isEqual(
+                relayKey.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * access the cluster router placements are forwarded to
+     *
+     * @return ShardRouter - the router, or null if placements are applied here
+     */
+    public ShardRouter getRouter() {
+        return router;
+    }
+
+    /**
+     * check a tile is on the board, and in the owned region if this is a shard
+     *
+     * @param tile - the tile
+     * @return boolean - may the tile be placed here?
+     */
+    private boolean accepts(PlaceTile tile) {
+        return board.isValid(tile) && (ownedRegion == null || ownedRegion.contains(tile.getRow(), tile.getCol()));
+    }
+
+    /**
+     * check a region holds colors for every tile and lies on the board, and
+     * in the owned region if this is a shard
+     *
+     * @param region - the region
+     * @return boolean - may the region be painted here?
+     */
+    private boolean accepts(PlaceRegion region) {
+        return region.isLoaded() && region.isWithin(board.DIM) && (ownedRegion == null
+                || region.getHeight() == 0 || region.getWidth() == 0
+                || (ownedRegion.contains(region.getRow(), region.getCol())
+                    && ownedRegion.contains(region.getRow() + region.getHeight() - 1, region.getCol() + region.getWidth() - 1)));
+    }
+
+    /**
+     * add a user that has passed the login checks, so it receives broadcasts,
+     * and send it LOGIN_SUCCESS with the dictionary of tile owners.  A user
+     * resuming from a sequence number the change log still covers is then
+     * sent the changes it missed as BOARD_CHANGES, instead of the board.
+     * This is done under the lock, so the user knows every owner id in the
+     * broadcasts that follow, and misses no change between the two.
+     *
+     * @param userThread - the user to be added, represented as a ServerThread
+     * @throws IOException
+     */
+    synchronized void addUser(ServerThread userThread) throws IOException {
+        connections.add(userThread);
+        userThread.send(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN_SUCCESS, board.getOwners().since(0)));
+        List<PlaceTile> missed = userThread.getResumeFrom() < 0 ? null : changes.since(userThread.getResumeFrom());
+        if (missed != null) {
+            userThread.send(new PlaceRequest<>(PlaceRequest.RequestType.BOARD_CHANGES,
+                    new PlaceTileBatch(missed, false), changes.getSequence()));
+            userThread.setResumed(true);
+        }
+        if (userThread.isRelay()) {
+            relays.add(userThread);
+        } else {
+            broadcaster.add(userThread);
+        }
+    }
+
+    /**
+     * get the sequence number of the last change applied to the board
+     *
+     * @return long - the sequence number
+     */
+    public synchronized long getSequence() {
+        return changes.getSequence();
+    }
+
+    /**
+     * carry on the change sequence from another server's, when mirroring
+     * it.  The change log is emptied if the numbers do not already follow on.
+     *
+     * @param sequence - the sequence number of the last change applied
+     */
+    synchronized void setSequence(long sequence) {
+        if (changes.getSequence() != sequence) {
+            changes.reset(sequence);
+        }
+    }
+
+    /**
+     * tell every client about owners added to the dictionary since a change
+     * began, before broadcasting tiles with their ids
+     *
+     * @param known - the size of the dictionary before the change
+     * @throws IOException
+     */
+    private void announceOwners(int known) throws IOException {
+        if (board.getOwners().size() > known) {
+            broadcast(new PlaceRequest<>(PlaceRequest.RequestType.OWNERS, board.getOwners().since(known)));
+        }
+    }
+
+    /**
+     * send a request to every client: straight away to relays, which must
+     * have each change before the reply that follows it, and through the
+     * fan-out threads to the rest, so the lock is not held while it is
+     * queued for every one of them
+     *
+     * @param request - the request; the writers only read it
+     */
+    private void broadcast(PlaceRequest<?> request) {
+        for (ServerThread relay : relays) {
+            relay.send(request);
+        }
+        broadcaster.broadcast(request);
+    }
+
     /**
      * remove a user from the server once they disconnect
      *
      * @param userThread - the user to be removed, represented as a ServerThread
      */
     public synchronized void removeUser(ServerThread userThread) {
-        connections.remove(userThread);
-        System.out.println("Removed user: " + userThread.getUsername());
-        System.out.println("Current connected users: ");
+        // an evicted user's reader removes it again when its socket closes
+        if (!connections.remove(userThread)) {
+            return;
+        }
+        relays.remove(userThread);
+        broadcaster.remove(userThread);
+        StringBuilder message = new StringBuilder("Removed user: " + userThread.getUsername());
+        message.append("\nCurrent connected users: \n");
         for (ServerThread current : connections) {
-            System.out.print(current.getUsername() + " ");
+            message.append(current.getUsername()).append(" ");
         }
-        System.out.println();
+        log.log(message.toString());
+    }
+
+    /**
+     * get a copy of the connected users, safe to iterate while users come and go
+     *
+     * @return the connected users
+     */
+    public synchronized List<ServerThread> getUsers() {
+        return new ArrayList<>(connections);
     }
 
     /**
@@ -127,26 +532,302 @@ public class PlaceServer implements Closeable {
      * @throws IOException
      */
     public synchronized boolean changeTile(PlaceTile tile) throws IOException {
-        if(board.isValid(tile)){
+        long locked = System.nanoTime();
+        BoardChangeEvent event = new BoardChangeEvent();
+        event.begin();
+        if(accepts(tile)){
+            PlaceTile previous = board.getTile(tile.getRow(), tile.getCol());
+            int known = board.getOwners().size();
             board.setTile(tile);
-            for (ServerThread current: connections) {
-                current.getNetworkOut().writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.TILE_CHANGED, tile));
+            statistics.tileChanged(previous.getColor(), tile);
+            checksum.tileChanged(previous, tile);
+            long sequence = changes.add(tile);
+            if (feed != null) {
+                feed.tileChanged(sequence, tile);
+            }
+            long broadcastStart = System.nanoTime();
+            announceOwners(known);
+            // one request for every client; the writers only read it
+            broadcast(new PlaceRequest<>(PlaceRequest.RequestType.TILE_CHANGED, tile, sequence));
+            long done = System.nanoTime();
+            metrics.placementsAccepted(1, done - locked, done - broadcastStart);
+            if (event.shouldCommit()) {
+                event.user = tile.getOwner();
+                event.row = tile.getRow();
+                event.col = tile.getCol();
+                event.tiles = 1;
+                event.recipients = connections.size();
+                event.commit();
             }
             return true;
         }
+        metrics.placementsRejected(1);
         return false;
     }
 
+    /**
+     * Validate a batch of tiles in one pass, apply it and broadcast the applied
+     * tiles to every client as a single TILES_CHANGED request.
+     *
+     * @param batch - the tiles to be changed
+     * @return BitSet - a bit set for each tile of the batch that was applied;
+     *                  empty if the batch is atomic and any tile was invalid
+     * @throws IOException
+     */
+    public synchronized BitSet changeTiles(PlaceTileBatch batch) throws IOException {
+        long locked = System.nanoTime();
+        BoardChangeEvent event = new BoardChangeEvent();
+        event.begin();
+        List<PlaceTile> tiles = batch.getTiles();
+        BitSet applied = new BitSet(tiles.size());
+        for (int i = 0; i < tiles.size(); i++) {
+            if (accepts(tiles.get(i))) {
+                applied.set(i);
+            } else if (batch.isAtomic()) {
+                metrics.placementsRejected(tiles.size());
+                return new BitSet();
+            }
+        }
+        List<PlaceTile> changed = new ArrayList<>(applied.cardinality());
+        int known = board.getOwners().size();
+        for (int i = applied.nextSetBit(0); i >= 0; i = applied.nextSetBit(i + 1)) {
+            PlaceTile tile = tiles.get(i);
+            PlaceTile previous = board.getTile(tile.getRow(), tile.getCol());
+            board.setTile(tile);
+            statistics.tileChanged(previous.getColor(), tile);
+            checksum.tileChanged(previous, tile);
+            long sequence = changes.add(tile);
+            if (feed != null) {
+                feed.tileChanged(sequence, tile);
+            }
+            changed.add(tile);
+        }
+        if (!changed.isEmpty()) {
+            long broadcastStart = System.nanoTime();
+            announceOwners(known);
+            broadcast(new PlaceRequest<>(PlaceRequest.RequestType.TILES_CHANGED,
+                    new PlaceTileBatch(changed, batch.isAtomic()), changes.getSequence()));
+            long done = System.nanoTime();
+            metrics.placementsAccepted(changed.size(), done - locked, done - broadcastStart);
+            if (event.shouldCommit()) {
+                event.user = changed.get(0).getOwner();
+                event.row = changed.get(0).getRow();
+                event.col = changed.get(0).getCol();
+                event.tiles = changed.size();
+                event.recipients = connections.size();
+                event.commit();
+            }
+        }
+        metrics.placementsRejected(tiles.size() - changed.size());
+        return applied;
+    }
+
+    /**
+     * Paint a region of the board in one go, e.g. an imported image.  Tiles
+     * already the region's color are left alone; the rest are applied in
+     * row order and broadcast as TILES_CHANGED requests of up to MAX_BATCH
+     * tiles each, so clients and mirrors handle them like batches.
+     *
+     * @param region - the colors, with the single owner of every tile
+     * @param time - the time to give the changed tiles
+     * @return int - the number of tiles changed, or -1 if the region does
+     *               not have one owner, lacks colors, lies outside the board
+     *               or is not owned here
+     * @throws IOException
+     */
+    public synchronized int changeRegion(PlaceRegion region, long time) throws IOException {
+        long locked = System.nanoTime();
+        BoardChangeEvent event = new BoardChangeEvent();
+        event.begin();
+        List<String> painters = region.getOwners();
+        if (painters.size() != 1 || !accepts(region)) {
+            return -1;
+        }
+        String owner = painters.get(0);
+        int known = board.getOwners().size();
+        int total = 0;
+        long broadcastNanos = 0;
+        List<PlaceTile> changed = new ArrayList<>();
+        for (int row = region.getRow(); row < region.getRow() + region.getHeight(); row++) {
+            for (int col = region.getCol(); col < region.getCol() + region.getWidth(); col++) {
+                PlaceColor color = region.getColor(row, col);
+                PlaceTile previous = board.getTile(row, col);
+                if (previous.getColor() == color) {
+                    continue;
+                }
+                PlaceTile tile = new PlaceTile(row, col, owner, color, time);
+                board.setTile(tile);
+                statistics.tileChanged(previous.getColor(), tile);
+                checksum.tileChanged(previous, tile);
+                long sequence = changes.add(tile);
+                if (feed != null) {
+                    feed.tileChanged(sequence, tile);
+                }
+                changed.add(tile);
+                if (changed.size() == MAX_BATCH) {
+                    broadcastNanos += broadcastChanges(changed, known);
+                    known = board.getOwners().size();
+                    total += changed.size();
+                    changed = new ArrayList<>();
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            broadcastNanos += broadcastChanges(changed, known);
+            total += changed.size();
+        }
+        if (total > 0) {
+            metrics.placementsAccepted(total, System.nanoTime() - locked, broadcastNanos);
+            if (event.shouldCommit()) {
+                event.user = owner;
+                event.row = region.getRow();
+                event.col = region.getCol();
+                event.tiles = total;
+                event.recipients = connections.size();
+                event.commit();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * broadcast changes just applied as one TILES_CHANGED request, numbered
+     * with the last of them
+     *
+     * @param changed - the changed tiles, in sequence order
+     * @param known - the size of the owner dictionary before the changes
+     * @return long - how many nanoseconds the broadcast took
+     * @throws IOException
+     */
+    private long broadcastChanges(List<PlaceTile> changed, int known) throws IOException {
+        long start = System.nanoTime();
+        announceOwners(known);
+        broadcast(new PlaceRequest<>(PlaceRequest.RequestType.TILES_CHANGED,
+                new PlaceTileBatch(changed, false), changes.getSequence()));
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Read a region of the board.  The board lock is held while the region is
+     * copied, so the region never mixes tiles from before and after a change;
+     * it is copied a row at a time from the board's planes, without building
+     * a tile for every cell.
+     *
+     * @param bounds - the region to read, and whether owners and times are wanted
+     * @return PlaceRegion - the region holding the tiles, or null if it lies
+     *                       outside the board or is larger than MAX_REGION_AREA
+     */
+    public synchronized PlaceRegion readRegion(PlaceRegion bounds) {
+        if (!bounds.isWithin(board.DIM) || (long) bounds.getHeight() * bounds.getWidth() > MAX_REGION_AREA) {
+            return null;
+        }
+        return PlaceRegion.read(board, bounds);
+    }
+
+    /**
+     * Read hashes from the board's checksum tree.
+     *
+     * @param nodes - the node indexes, or null for the root
+     * @return long[] - the hashes, or null if a node does not exist or more
+     *                  than PlaceChecksum.MAX_REQUEST_NODES are asked for
+     */
+    public long[] readChecksums(int[] nodes) {
+        if (nodes == null) {
+            return new long[]{checksum.getRoot()};
+        }
+        if (nodes.length > PlaceChecksum.MAX_REQUEST_NODES) {
+            return null;
+        }
+        try {
+            return checksum.getNodes(nodes);
+        } catch (IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Build a low resolution preview of the board for progressive loading.
+     *
+     * @return PlacePreview - the preview
+     */
+    public synchronized PlacePreview readPreview() {
+        return PlacePreview.of(board, PREVIEW_SIDE);
+    }
+
     /**
      * Closes the client {@link Socket}.
      */
     @Override
     public void close() {
+        metrics.close();
+        reaper.close();
+        broadcaster.close();
+        synchronized (this) {
+            if (feed != null) {
+                feed.close();
+            }
+        }
         try {
             this.serverSocket.close();
         } catch (IOException ioe) {
             System.out.println(ioe.getMessage());
         }
+        if (board instanceof MappedPlaceBoard) {
+            synchronized (this) {
+                try {
+                    ((MappedPlaceBoard) board).close();
+                } catch (IOException ioe) {
+                    System.out.println(ioe.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     *  access the server's console log
+     *
+     * @return ServerLog - the log
+     */
+    public ServerLog getLog(){
+        return log;
+    }
+
+    /**
+     *  access the server's metrics
+     *
+     * @return ServerMetrics - the metrics
+     */
+    public ServerMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     *  start the HTTP endpoint on the loopback interface, serving the
+     *  metrics and the board
+     *
+     * @param port the port to listen on
+     * @throws IOException if the port can't be bound
+     */
+    public void startHttp(int port) throws IOException {
+        BoardExportHandler.register(metrics.startHttp(port), this);
+    }
+
+    /**
+     *  access the board's live statistics
+     *
+     * @return BoardStatistics - the statistics
+     */
+    public BoardStatistics getStatistics(){
+        return statistics;
+    }
+
+    /**
+     *  access the board's checksums
+     *
+     * @return PlaceChecksum - the checksums
+     */
+    public PlaceChecksum getChecksum(){
+        return checksum;
     }
 
     /**
@@ -165,15 +846,23 @@ public class PlaceServer implements Closeable {
      * @param args the command line arguments
      */
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.out.println("Usage: java PlaceServer port DIM");
+        if (args.length < 2 || args.length > 5) {
+            System.out.println("Usage: java PlaceServer port DIM [connectionDelay [metricsPort [boardFile]]]");
             System.exit(1);
         }
 
-        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]))) {
-            while(true) {
-                server.startListener(server);
+        Path boardFile = args.length == 5 ? Paths.get(args[4]) : null;
+        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]), boardFile)) {
+            server.setRelayKey(System.getenv(RELAY_KEY_VARIABLE));
+            server.startFeed(System.getenv(FEED_VARIABLE));
+            server.setHeartbeat(System.getenv(HEARTBEAT_VARIABLE));
+            if (args.length >= 3) {
+                server.setConnectionDelay(Integer.parseInt(args[2]));
+            }
+            if (args.length >= 4 && Integer.parseInt(args[3]) != 0) {
+                server.startHttp(Integer.parseInt(args[3]));
             }
+            server.serve();
 
         } catch (PlaceException e) {
             System.err.println("Failed to start server!");
@@ -184,4 +873,4 @@ public class PlaceServer implements Closeable {
         }
 
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package place.server;
+
+import place.PlaceException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * One shard of a Place cluster, run on the command line as:
+ *
+ * $ java PlaceShard port DIM index count [boardFile]
+ *
+ * It is an ordinary PlaceServer that only accepts placements within its
+ * stripe of the board, stripe index of count, and does not delay its
+ * clients, since its only client is the cluster's {@link ShardRouter}.  The
+ * router logs in with the key in the PLACE_RELAY_KEY environment variable,
+ * which must be set, so it may forward batches and regions.  If boardFile
+ * is given, the shard's board is kept in that memory mapped file.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceShard {
+
+    /**
+     * Start a shard.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 5) {
+            System.out.println("Usage: java PlaceShard port DIM index count [boardFile]");
+            System.exit(1);
+        }
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            System.out.println(PlaceServer.RELAY_KEY_VARIABLE + " must be set to the cluster's relay key");
+            System.exit(1);
+        }
+        int dim = Integer.parseInt(args[1]);
+        int index = Integer.parseInt(args[2]);
+        int count = Integer.parseInt(args[3]);
+        Path boardFile = args.length == 5 ? Paths.get(args[4]) : null;
+        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), dim, boardFile)) {
+            server.setOwnedRegion(ShardRouter.stripe(dim, index, count));
+            server.setRelayKey(relayKey);
+            server.setConnectionDelay(0);
+            server.setPlacementDelay(0);
+            server.setHeartbeat(System.getenv(PlaceServer.HEARTBEAT_VARIABLE));
+            server.serve();
+        } catch (PlaceException e) {
+            System.err.println("Failed to start shard!");
+            System.out.println(e.getMessage());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package place.server;
+
+import place.PlaceException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * A hot standby for a Place server, run on the command line as:
+ *
+ * $ java PlaceStandby port DIM primaryHost:primaryPort [connectionDelay [metricsPort [boardFile]]]
+ *
+ * The standby logs in to the primary with the key in the PLACE_RELAY_KEY
+ * environment variable, which the primary must have been started with, and
+ * tails its stream of changes onto a warm copy of the board, numbering them
+ * as the primary did.  Until then it serves clients like a relay.  As soon
+ * as the connection to the primary is lost the standby is promoted: it stops
+ * forwarding placements and applies them itself, carrying on the primary's
+ * change sequence.  Clients of the primary reconnect to the standby with
+ * NetworkClient.resume and are sent only the changes they missed, as long as
+ * the standby still holds them (see PlaceServer.CHANGE_LOG_SIZE).
+ *
+ * The standby cannot tell a primary that has died from one it can no longer
+ * reach, so it should run where the primary's connection only breaks when
+ * the primary does, e.g. on the same host.  If boardFile is given, the
+ * standby's copy of the board is kept in that memory mapped file.  Like a
+ * PlaceServer, the standby multicasts its changes to spectators if
+ * PLACE_MULTICAST_FEED is set; they are numbered as the primary's were, so
+ * spectators can watch a feed from either.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class PlaceStandby {
+
+    /**
+     * Start a standby.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length > 6) {
+            System.out.println("Usage: java PlaceStandby port DIM primaryHost:primaryPort [connectionDelay [metricsPort [boardFile]]]");
+            System.exit(1);
+        }
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            System.out.println(PlaceServer.RELAY_KEY_VARIABLE + " must be set to the primary's relay key");
+            System.exit(1);
+        }
+        Path boardFile = args.length == 6 ? Paths.get(args[5]) : null;
+        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]), boardFile)) {
+            ShardRouter primary = new ShardRouter(server,
+                    Collections.singletonList(ShardRouter.address(args[2])), relayKey, true);
+            try {
+                server.setRelayKey(relayKey);
+                server.startFeed(System.getenv(PlaceServer.FEED_VARIABLE));
+                server.setHeartbeat(System.getenv(PlaceServer.HEARTBEAT_VARIABLE));
+                if (args.length >= 4) {
+                    server.setConnectionDelay(Integer.parseInt(args[3]));
+                }
+                if (args.length >= 5 && Integer.parseInt(args[4]) != 0) {
+                    server.startHttp(Integer.parseInt(args[4]));
+                }
+                server.serve();
+            } finally {
+                primary.close();
+            }
+        } catch (PlaceException e) {
+            System.err.println("Failed to start standby!");
+            System.out.println(e.getMessage());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package place.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for writing one request to one client, including
+ * the time it spent queued in its lane and waiting for the client's stream.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@Name("place.Send")
+@Label("Send")
+@Category({"Place", "Server"})
+@Description("Writing a request (broadcast or reply) to one client")
+public class SendEvent extends jdk.jfr.Event {
+    @Label("Recipient")
+    String user;
+
+    @Label("Request Type")
+    String type;
+
+    @Label("Lane")
+    @Description("control for replies, bulk for board updates")
+    String lane;
+
+    @Label("Backlog")
+    @Description("Writes queued for, or waiting on, the client's stream, this one included")
+    int backlog;
+}
@@ -0,0 +1,84 @@
+package place.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The server's console log.  Messages are printed by a background thread so
+ * threads handling clients never wait on the console, and per-placement
+ * messages are sampled so a busy board doesn't flood it.
+ *
+ * If the queue fills up, new messages are dropped and counted rather than
+ * blocking the caller.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class ServerLog implements Runnable {
+    /** most messages waiting to be printed */
+    private static final int CAPACITY = 1024;
+    /** one in this many sampled events is printed */
+    public static final int SAMPLE_RATE = 100;
+
+    /** messages waiting to be printed */
+    private final BlockingQueue<String> messages = new ArrayBlockingQueue<>(CAPACITY);
+    /** the number of sampled events seen */
+    private final AtomicLong sampled = new AtomicLong();
+    /** the number of messages dropped because the queue was full */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Create a log and start its printing thread.
+     */
+    public ServerLog() {
+        Thread thread = new Thread(this, "server-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a message to be printed.
+     *
+     * @param message the message
+     */
+    public void log(String message) {
+        if (!this.messages.offer(message)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count a frequent event and tell whether this one should be logged.
+     * Check this before building the message, so unlogged events cost
+     * nothing more than an increment.
+     *
+     * @return true for one in every {@link #SAMPLE_RATE} events
+     */
+    public boolean sample() {
+        return this.sampled.getAndIncrement() % SAMPLE_RATE == 0;
+    }
+
+    /**
+     * Get the number of messages dropped because the queue was full.
+     *
+     * @return the number dropped
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Print messages as they arrive.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                System.out.println(this.messages.take());
+            }
+        } catch (InterruptedException e) {
+            // the server is shutting down
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package place.server;
+
+import com.sun.net.httpserver.HttpServer;
+import place.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for a {@link PlaceServer}.  Recording is
+ * lock free and allocation free, so it is safe to call on every placement.
+ *
+ * The metrics can be read through JMX (see {@link ServerMetricsMXBean}) or
+ * scraped over HTTP, in the Prometheus text format, from a local endpoint
+ * started with {@link #startHttp(int)}, on which the server also serves its
+ * board (see {@link BoardExportHandler}).  A summary is also logged every
+ * {@value #SUMMARY_SECONDS} seconds.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+    /** the JMX name the metrics are registered under */
+    public static final String OBJECT_NAME = "place:type=ServerMetrics";
+    /** how often a summary line is logged */
+    private static final int SUMMARY_SECONDS = 10;
+
+    /** the server being measured */
+    private final PlaceServer server;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram lockHold = new LatencyHistogram();
+    private final LatencyHistogram broadcast = new LatencyHistogram();
+
+    /** placements applied over the last second, updated by the sampler */
+    private volatile double placementsPerSecond;
+    /** accepted placements at the last sample */
+    private long lastAccepted;
+    /** runs the once a second sampling */
+    private final ScheduledExecutorService sampler;
+    /** the HTTP endpoint, if started */
+    private HttpServer http;
+    /** handles HTTP requests, for the metrics and any other handlers registered */
+    private ExecutorService httpThreads;
+
+    /**
+     * Create the metrics for a server, register them with JMX and start
+     * sampling the placement rate.
+     *
+     * @param server the server being measured
+     */
+    public ServerMetrics(PlaceServer server) {
+        this.server = server;
+        this.sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "server-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sampler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            // only one server per JVM can be published, e.g. not in benchmarks
+            server.getLog().log("Metrics not registered with JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Update the placement rate, and log a summary now and then.
+     */
+    private void sample() {
+        long now = this.accepted.sum();
+        this.placementsPerSecond = now - this.lastAccepted;
+        this.lastAccepted = now;
+        if (now > 0 && (System.currentTimeMillis() / 1000) % SUMMARY_SECONDS == 0) {
+            this.server.getLog().log(String.format("placements: %.0f/s, %d total, %d rejected, sessions: %d",
+                    this.placementsPerSecond, now, this.rejected.sum(), getConnectedSessions()));
+        }
+    }
+
+    /**
+     * Record a change to the board: one placement, or a batch of them.
+     *
+     * @param count the number of tiles applied
+     * @param lockNanos how long the board lock was held
+     * @param broadcastNanos how long it took to write the change to every client
+     */
+    public void placementsAccepted(int count, long lockNanos, long broadcastNanos) {
+        this.accepted.add(count);
+        this.lockHold.record(lockNanos);
+        this.broadcast.record(broadcastNanos);
+    }
+
+    /**
+     * Record rejected placements.
+     *
+     * @param count the number of tiles rejected
+     */
+    public void placementsRejected(int count) {
+        this.rejected.add(count);
+    }
+
+    /**
+     * Get the counter for bytes written to clients, to be shared by each
+     * client's {@link CountingOutputStream}.
+     *
+     * @return the counter
+     */
+    public LongAdder getBytesSentCounter() {
+        return this.bytesSent;
+    }
+
+    @Override
+    public long getPlacementsAccepted() { return this.accepted.sum(); }
+
+    @Override
+    public long getPlacementsRejected() { return this.rejected.sum(); }
+
+    @Override
+    public double getPlacementsPerSecond() { return this.placementsPerSecond; }
+
+    @Override
+    public int getConnectedSessions() { return this.server.getUsers().size(); }
+
+    @Override
+    public long getIdleEvictions() { return this.server.getEvictions(); }
+
+    @Override
+    public long getBytesSent() { return this.bytesSent.sum(); }
+
+    @Override
+    public int getMaxOutboundBacklog() {
+        int max = 0;
+        for (ServerThread user : this.server.getUsers()) {
+            max = Math.max(max, user.getOutboundBacklog());
+        }
+        return max;
+    }
+
+    @Override
+    public long getLockHoldMicrosP50() { return this.lockHold.getPercentile(50) / 1000; }
+
+    @Override
+    public long getLockHoldMicrosP99() { return this.lockHold.getPercentile(99) / 1000; }
+
+    @Override
+    public long getLockHoldMicrosMax() { return this.lockHold.getMax() / 1000; }
+
+    @Override
+    public long getBroadcastMicrosP50() { return this.broadcast.getPercentile(50) / 1000; }
+
+    @Override
+    public long getBroadcastMicrosP99() { return this.broadcast.getPercentile(99) / 1000; }
+
+    @Override
+    public long getBroadcastMicrosMax() { return this.broadcast.getMax() / 1000; }
+
+    @Override
+    public long getDroppedLogMessages() { return this.server.getLog().getDropped(); }
+
+    /**
+     * Start an HTTP endpoint on the loopback interface serving the metrics
+     * at /metrics.
+     *
+     * @param port the port to listen on
+     * @return the endpoint, for other handlers to be registered on
+     * @throws IOException if the port can't be bound
+     */
+    public HttpServer startHttp(int port) throws IOException {
+        this.http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.http.createContext("/metrics", exchange -> {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        this.httpThreads = Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "server-metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.http.setExecutor(this.httpThreads);
+        this.http.start();
+        this.server.getLog().log("Metrics at http://localhost:" + port + "/metrics");
+        return this.http;
+    }
+
+    /**
+     * Render the metrics in the Prometheus text format.
+     *
+     * @return the metrics
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        counter(out, "place_placements_accepted_total", getPlacementsAccepted());
+        counter(out, "place_placements_rejected_total", getPlacementsRejected());
+        out.append("# TYPE place_placements_per_second gauge\n")
+                .append("place_placements_per_second ").append(getPlacementsPerSecond()).append('\n');
+        out.append("# TYPE place_connected_sessions gauge\n")
+                .append("place_connected_sessions ").append(getConnectedSessions()).append('\n');
+        counter(out, "place_idle_evictions_total", getIdleEvictions());
+        counter(out, "place_bytes_sent_total", getBytesSent());
+        counter(out, "place_log_dropped_total", getDroppedLogMessages());
+        summary(out, "place_lock_hold_seconds", this.lockHold);
+        summary(out, "place_broadcast_seconds", this.broadcast);
+        out.append("# TYPE place_client_outbound_backlog gauge\n");
+        out.append("# TYPE place_client_bytes_sent_total counter\n");
+        for (ServerThread user : this.server.getUsers()) {
+            String label = escape(user.getUsername());
+            out.append("place_client_outbound_backlog{user=\"").append(label).append("\"} ")
+                    .append(user.getOutboundBacklog()).append('\n');
+            out.append("place_client_bytes_sent_total{user=\"").append(label).append("\"} ")
+                    .append(user.getBytesSent()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Escape a label value for the Prometheus text format, so a username
+     * cannot end the label early or break the line.
+     *
+     * @param value the value
+     * @return the value with backslashes, double quotes and newlines escaped
+     */
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '"':
+                    escaped.append("\\\"");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Render a counter.
+     *
+     * @param out where it is rendered
+     * @param name the metric name
+     * @param value the value
+     */
+    private static void counter(StringBuilder out, String name, long value) {
+        out.append("# TYPE ").append(name).append(" counter\n")
+                .append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Render a histogram as a summary with quantiles, in seconds.
+     *
+     * @param out where it is rendered
+     * @param name the metric name
+     * @param histogram the histogram
+     */
+    private static void summary(StringBuilder out, String name, LatencyHistogram histogram) {
+        out.append("# TYPE ").append(name).append(" summary\n");
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(histogram.getPercentile(quantile * 100) / 1e9).append('\n');
+        }
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+        out.append(name).append("_sum ").append(histogram.getMean() * histogram.getCount() / 1e9).append('\n');
+    }
+
+    /**
+     * Stop sampling and close the HTTP endpoint.
+     */
+    public void close() {
+        this.sampler.shutdownNow();
+        if (this.http != null) {
+            this.http.stop(0);
+            this.httpThreads.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package place.server;
+
+/**
+ * The server metrics published through JMX as
+ * {@value ServerMetrics#OBJECT_NAME}.  Latencies are in microseconds.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public interface ServerMetricsMXBean {
+    /** @return placements applied since the server started */
+    long getPlacementsAccepted();
+
+    /** @return placements rejected as invalid since the server started */
+    long getPlacementsRejected();
+
+    /** @return placements applied over the last second */
+    double getPlacementsPerSecond();
+
+    /** @return clients currently connected */
+    int getConnectedSessions();
+
+    /** @return clients disconnected for going silent since the server started */
+    long getIdleEvictions();
+
+    /** @return bytes written to all clients since the server started */
+    long getBytesSent();
+
+    /** @return the most writes waiting on any one client's stream */
+    int getMaxOutboundBacklog();
+
+    /** @return median time the board lock is held per change */
+    long getLockHoldMicrosP50();
+
+    /** @return 99th percentile time the board lock is held per change */
+    long getLockHoldMicrosP99();
+
+    /** @return longest time the board lock was held for a change */
+    long getLockHoldMicrosMax();
+
+    /** @return median time to write a change to every client */
+    long getBroadcastMicrosP50();
+
+    /** @return 99th percentile time to write a change to every client */
+    long getBroadcastMicrosP99();
+
+    /** @return longest time to write a change to every client */
+    long getBroadcastMicrosMax();
+
+    /** @return log messages dropped because the log was backed up */
+    long getDroppedLogMessages();
+}
@@ -1,18 +1,50 @@
 package place.server;
 
+import place.PlaceLogin;
+import place.PlaceRegion;
 import place.PlaceTile;
+import place.PlaceTileBatch;
 import place.network.PlaceRequest;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.SocketException;
-import java.util.Date;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a client connection as a Thread for
  * a PlaceServer to handle
  *
+ * Requests to the client are queued in one of two lanes and written by a
+ * separate writer thread.  Replies the client is waiting on go in the
+ * control lane, which is always written first, so they are not stuck
+ * behind thousands of board updates in the bulk lane when the client is
+ * behind.  Replies that are snapshots of the board (regions and checksums)
+ * stay in the bulk lane, so they never overtake updates already queued.  An
+ * older update the fan-out threads have yet to queue may follow one, but
+ * then so does every update after it, so the client still ends up with
+ * the board as it is.  Every ACK to a relay stays in the bulk lane too: a
+ * relay is sent each change under the server's lock, before the reply to
+ * the placement that made it, and completes the placement once it has read
+ * the change, so the ACK must not overtake it.
+ *
+ * Sending never waits, as broadcasts to relays are sent under the server's
+ * lock, and to other clients by the server's fan-out threads.  A client
+ * that falls MAX_BULK_BACKLOG updates behind has its queued updates
+ * dropped and is sent the whole board instead, once.
+ *
+ * Every request read from the client is noted, so the server's IdleReaper
+ * can send a HEARTBEAT to a client that has gone quiet and evict one that
+ * stops answering.
+ *
  * @author Frank Abbey @fra1489
  * @author Will Andrews @wta9748
  *
@@ -24,6 +56,36 @@ public class ServerThread extends Thread{
     private ObjectOutputStream networkOut;
     private PlaceServer server;
     private long bornTime;
+    // counts the bytes written to the client, null if not counted
+    private CountingOutputStream counter;
+    // writes queued for, or waiting on, this client's stream
+    private final AtomicInteger backlog = new AtomicInteger();
+    // most board updates queued before the client is sent the board instead
+    public static final int MAX_BULK_BACKLOG = 1024;
+    // replies, written before any board update
+    private final ArrayDeque<Outbound> controlLane = new ArrayDeque<>();
+    // board updates
+    private final ArrayDeque<Outbound> bulkLane = new ArrayDeque<>();
+    // guards both lanes
+    private final Object lanes = new Object();
+    // has the connection closed, so nothing more is written?
+    private boolean closed;
+    // were the client's updates dropped, with the board yet to be queued?
+    private boolean resyncing;
+    // blocks of the board a progressive client is yet to be sent, or null
+    private ArrayDeque<int[]> blocks;
+    // most top users and regions a client may ask for
+    private static final int MAX_STATISTICS = 100;
+    // the client's viewport if it loads the board progressively, otherwise null
+    private PlaceRegion viewport;
+    // is this a relay or router logged in with the server's relay key?
+    private boolean relay;
+    // the last change sequence number the client saw, -1 if it is not resuming
+    private long resumeFrom = -1;
+    // was the client sent the changes it missed instead of the board?
+    private volatile boolean resumed;
+    // when a request was last read from the client, in milliseconds
+    private volatile long lastHeard;
 
     /**
      * create a new ServerThread, and read the initial LOGIN request
@@ -35,16 +97,47 @@ public class ServerThread extends Thread{
      * @throws ClassNotFoundException
      */
     public ServerThread(ObjectOutputStream out, ObjectInputStream in, PlaceServer s) throws IOException, ClassNotFoundException {
+        this(out, in, s, null);
+    }
+
+    /**
+     * create a new ServerThread that reports the bytes it sends, and read
+     * the initial LOGIN request
+     *
+     * @param out ObjectOutputStream - the client's output stream
+     * @param in - ObjectInputStream - the client's input stream
+     * @param s PlaceServer - the server that is handling this client
+     * @param counter CountingOutputStream - the stream under out, or null
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public ServerThread(ObjectOutputStream out, ObjectInputStream in, PlaceServer s, CountingOutputStream counter) throws IOException, ClassNotFoundException {
         networkIn = in;
         networkOut = out;
         server = s;
+        this.counter = counter;
         // store the time of creation to prevent thread bombing
-        bornTime = new Date().getTime();
-        PlaceRequest request = (PlaceRequest) networkIn.readUnshared();
+        bornTime = System.currentTimeMillis();
+        lastHeard = bornTime;
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        PlaceRequest<?> request = (PlaceRequest<?>) networkIn.readUnshared();
         if(request.getType() == PlaceRequest.RequestType.LOGIN){
-            username = (String) request.getData();
-            System.out.println(" username: " + username);
+            // a PlaceLogin asks for the board to be loaded progressively
+            if(request.getData() instanceof PlaceLogin) {
+                PlaceLogin login = (PlaceLogin) request.getData();
+                username = login.getUsername();
+                viewport = login.getViewport();
+                relay = server.isRelayKey(login.getRelayKey());
+                resumeFrom = login.getResumeFrom();
+            }
+            else {
+                username = (String) request.getData();
+            }
+            server.getLog().log(" username: " + username);
         }
+        event.user = username;
+        event.commit();
     }
 
     /**
@@ -57,36 +150,159 @@ public class ServerThread extends Thread{
     @Override
     public void run() {
         boolean flag = true;
-        try {
-            networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN_SUCCESS, null));
-            networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.BOARD, server.getBoard()));
-            System.out.println("Success!");
-        } catch (IOException e) {
-            e.printStackTrace();
+        startWriter();
+        // LOGIN_SUCCESS, and BOARD_CHANGES if resuming, were sent when
+        // the user was added; the board is numbered with the sequence
+        // before it is read, so it holds at least those changes
+        if(resumed) {
+            server.getLog().log(username + " resumed from change " + resumeFrom);
+        }
+        else if(viewport == null) {
+            send(new PlaceRequest<>(PlaceRequest.RequestType.BOARD, server.getBoard(), server.getSequence()));
         }
+        else {
+            sendProgressive();
+        }
+        server.getLog().log("Success!");
 
         while (flag) {
             try {
                 // read a request from the client
-                PlaceRequest<?> request = (PlaceRequest) networkIn.readUnshared();
+                PlaceRequest<?> request = (PlaceRequest<?>) networkIn.readUnshared();
+                // any request shows the client is still there, heartbeats included
+                lastHeard = System.currentTimeMillis();
                 // if a PlaceTile was changed
                 if(request.getType() == PlaceRequest.RequestType.CHANGE_TILE) {
+                        TileRequestEvent event = new TileRequestEvent();
+                        event.begin();
                         PlaceTile tile = (PlaceTile) request.getData();
-                        tile.setTime(new Date().getTime());
-                        // try to make the move, if the move is invalid send an ERROR
-                        if(!server.changeTile(tile)) {
-                            networkOut.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "Invalid Placement"));
+                        tile.setTime(System.currentTimeMillis());
+                        boolean accepted;
+                        if(server.getRouter() == null) {
+                            // try to make the move, if the move is invalid send an ERROR
+                            accepted = server.changeTile(tile);
+                            placed(request, tile, accepted, event);
                         }
-                        // otherwise the move was valid, make the thread sleep to delay moves
                         else {
-                            System.out.println(username + " updated board");
-                            sleep(500);
+                            // a cluster's router has the shard that owns the tile
+                            // make it, and replies when the shard does
+                            CompletableFuture<Boolean> reply = server.getRouter().changeTile(tile);
+                            reply.thenAccept(done -> placed(request, tile, done, event));
+                            // the delay starts once the tile is on its way; only
+                            // an invalid tile is refused straight away
+                            accepted = !Boolean.FALSE.equals(reply.getNow(null));
+                        }
+                        // if the move was valid, make the thread sleep to delay
+                        // moves; a relay delays its own clients instead
+                        if(accepted && !relay) {
+                            sleep(server.getPlacementDelay());
+                        }
+                }
+                // if a region of the board was asked for
+                else if(request.getType() == PlaceRequest.RequestType.GET_REGION) {
+                        PlaceRegion bounds = (PlaceRegion) request.getData();
+                        // reads hold the board lock, so only relays may read
+                        // more than a batch's worth of tiles at once
+                        if(!relay && (long) bounds.getHeight() * bounds.getWidth() > PlaceServer.MAX_BATCH) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Region larger than " + PlaceServer.MAX_BATCH + " tiles", request.getId()));
+                            continue;
+                        }
+                        PlaceRegion region = server.readRegion(bounds);
+                        if(region == null) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "Invalid Region", request.getId()));
+                        }
+                        else {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ACK, region, request.getId()));
+                        }
+                }
+                // if a region of the board was painted, e.g. an imported image
+                else if(request.getType() == PlaceRequest.RequestType.CHANGE_REGION) {
+                        PlaceRegion region = (PlaceRegion) request.getData();
+                        // like a batch, a region would get round the placement
+                        // delay, so only relays and admins may paint one
+                        if(!relay) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Regions need the relay key", request.getId()));
+                            continue;
+                        }
+                        if((long) region.getHeight() * region.getWidth() > PlaceServer.MAX_REGION_AREA) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Region larger than " + PlaceServer.MAX_REGION_AREA + " tiles", request.getId()));
+                            continue;
+                        }
+                        int changed = server.getRouter() == null ? server.changeRegion(region, System.currentTimeMillis())
+                                : server.getRouter().changeRegion(region);
+                        if(changed < 0) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "Invalid Region", request.getId()));
+                        }
+                        else {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ACK, changed, request.getId()));
+                        }
+                        if(changed > 0) {
+                            if(server.getLog().sample()) {
+                                server.getLog().log(username + " painted board (" + changed + " tiles)");
+                            }
+                        }
+                }
+                // if checksums were asked for, to find drifted chunks
+                else if(request.getType() == PlaceRequest.RequestType.CHECKSUMS) {
+                        long[] hashes = server.readChecksums((int[]) request.getData());
+                        if(hashes == null) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "Invalid Checksum nodes", request.getId()));
+                        }
+                        else {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ACK, hashes, request.getId()));
+                        }
+                }
+                // if the board's statistics were asked for
+                else if(request.getType() == PlaceRequest.RequestType.STATISTICS) {
+                        // they name every busy user and where they paint, so
+                        // only relays and admins may see them
+                        if(!relay) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Statistics need the relay key", request.getId()));
+                            continue;
+                        }
+                        Integer wanted = (Integer) request.getData();
+                        int k = wanted == null ? MAX_STATISTICS : Math.min(Math.max(wanted, 0), MAX_STATISTICS);
+                        send(new PlaceRequest<>(PlaceRequest.RequestType.ACK,
+                                server.getStatistics().snapshot(k), request.getId()));
+                }
+                // if a batch of PlaceTiles was changed
+                else if(request.getType() == PlaceRequest.RequestType.CHANGE_TILES) {
+                        PlaceTileBatch batch = (PlaceTileBatch) request.getData();
+                        // a batch would get round the one tile per placement
+                        // delay, so only relays and admins may send them
+                        if(!relay) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Batches need the relay key", request.getId()));
+                            continue;
+                        }
+                        if(batch.size() > PlaceServer.MAX_BATCH) {
+                            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR,
+                                    "Batch larger than " + PlaceServer.MAX_BATCH + " tiles", request.getId()));
+                            continue;
+                        }
+                        long time = System.currentTimeMillis();
+                        for(PlaceTile tile : batch.getTiles()) {
+                            tile.setTime(time);
+                        }
+                        // reply with which tiles were applied; relays delay their own clients
+                        BitSet applied = server.getRouter() == null ? server.changeTiles(batch)
+                                : server.getRouter().changeTiles(batch);
+                        send(new PlaceRequest<>(PlaceRequest.RequestType.ACK, applied, request.getId()));
+                        if(!applied.isEmpty()) {
+                            if(server.getLog().sample()) {
+                                server.getLog().log(username + " updated board (" + applied.cardinality() + " tiles)");
+                            }
                         }
                 }
             }
-            // caught when Client disconnects
-            catch(SocketException e) {
+            // caught when Client disconnects, abruptly or by closing its stream
+            catch(SocketException | EOFException e) {
                 server.removeUser(this);
+                closeLanes();
                 flag = false;
             }
 
@@ -98,6 +314,304 @@ public class ServerThread extends Thread{
 
     }
 
+    /**
+     * reply to a placement once it has been made or refused
+     *
+     * @param request - the CHANGE_TILE request
+     * @param tile - the tile, with its time set if it was placed
+     * @param accepted - was the tile placed?
+     * @param event - the request's event, begun when it was read
+     */
+    private void placed(PlaceRequest<?> request, PlaceTile tile, boolean accepted, TileRequestEvent event) {
+        if(!accepted) {
+            send(new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "Invalid Placement", request.getId()));
+        }
+        else {
+            send(new PlaceRequest<>(PlaceRequest.RequestType.ACK, tile, request.getId()));
+            // sampled, so a busy board doesn't flood the console
+            if(server.getLog().sample()) {
+                server.getLog().log(username + " updated board");
+            }
+        }
+        if(event.shouldCommit()) {
+            event.user = username;
+            event.row = tile.getRow();
+            event.col = tile.getCol();
+            event.color = tile.getColor().getNumber();
+            event.accepted = accepted;
+            event.commit();
+        }
+    }
+
+    /**
+     * start the writer thread, which writes the queued requests to the client
+     */
+    void startWriter() {
+        Thread writer = new Thread(this::write, "writer-" + username);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * send the board coarse to fine: a preview of the whole board, then every
+     * block of the board in full detail, those nearest the viewport first.
+     * The blocks are read and written by the writer thread, one whenever
+     * both lanes are empty, so this thread goes on to read the client's
+     * requests and heartbeats while they load.
+     */
+    private void sendProgressive() {
+        send(new PlaceRequest<>(PlaceRequest.RequestType.BOARD_PREVIEW, server.readPreview(), server.getSequence()));
+
+        int dim = server.getBoard().DIM;
+        int block = PlaceServer.PROGRESSIVE_BLOCK;
+        double centerRow = viewport.getRow() + viewport.getHeight() / 2.0;
+        double centerCol = viewport.getCol() + viewport.getWidth() / 2.0;
+        List<int[]> blocks = new ArrayList<>();
+        for(int row = 0; row < dim; row += block) {
+            for(int col = 0; col < dim; col += block) {
+                // blocks overlapping the viewport come first, then by distance from its center
+                int gap = Math.max(Math.max(viewport.getRow() - (row + block), row - (viewport.getRow() + viewport.getHeight())),
+                        Math.max(viewport.getCol() - (col + block), col - (viewport.getCol() + viewport.getWidth())));
+                double distance = Math.hypot(row + block / 2.0 - centerRow, col + block / 2.0 - centerCol);
+                blocks.add(new int[]{row, col, Math.max(gap, -1), (int) distance});
+            }
+        }
+        blocks.sort(Comparator.<int[]>comparingInt(b -> b[2]).thenComparingInt(b -> b[3]));
+
+        synchronized (lanes) {
+            this.blocks = new ArrayDeque<>(blocks);
+            lanes.notifyAll();
+        }
+    }
+
+    /**
+     * read the next block of the board for a progressive client.  It is
+     * read once every older update has been written, so it is never
+     * overtaken by one, and only then, so the blocks are not all held in
+     * memory at once.
+     *
+     * @param b - the block's first row and column
+     * @return Outbound - the block, ready to write
+     */
+    private Outbound readBlock(int[] b) {
+        int dim = server.getBoard().DIM;
+        int block = PlaceServer.PROGRESSIVE_BLOCK;
+        PlaceRegion region = server.readRegion(new PlaceRegion(b[0], b[1],
+                Math.min(block, dim - b[0]), Math.min(block, dim - b[1]), true, true));
+        return new Outbound(new PlaceRequest<>(PlaceRequest.RequestType.REGION, region), backlog.incrementAndGet());
+    }
+
+    /**
+     * send a request to the client, by queueing it in its lane for the
+     * writer thread.  This never waits.  If the bulk lane is full the board
+     * updates in it are dropped and the client is sent the board instead;
+     * replies to its requests are kept.  Requests to a closed connection
+     * are dropped; its reader removes the user.
+     *
+     * @param request the request to send
+     */
+    public void send(PlaceRequest<?> request) {
+        boolean control = isControl(request);
+        boolean reply = request.getType() == PlaceRequest.RequestType.ACK;
+        synchronized (lanes) {
+            if (closed) {
+                return;
+            }
+            if (!control && !reply && resyncing) {
+                // the change is already on the board the client will be sent
+                return;
+            }
+            if (control || bulkLane.size() < MAX_BULK_BACKLOG) {
+                (control ? controlLane : bulkLane).add(new Outbound(request, backlog.incrementAndGet()));
+                lanes.notifyAll();
+                return;
+            }
+            int dropped = bulkLane.size();
+            bulkLane.removeIf(queued -> queued.request.getType() != PlaceRequest.RequestType.ACK);
+            backlog.addAndGet(bulkLane.size() - dropped);
+            resyncing = true;
+            // the board has every block still to load
+            blocks = null;
+            if (reply) {
+                bulkLane.add(new Outbound(request, backlog.incrementAndGet()));
+            }
+        }
+        resync();
+    }
+
+    /**
+     * queue the board for a client whose board updates were dropped.  The
+     * board is written as it is when the writer reaches it, so it has every
+     * change dropped, and at least every change up to its sequence number.
+     */
+    private void resync() {
+        // read outside the lanes' lock, as the server's lock is taken first
+        PlaceRequest<?> board = new PlaceRequest<>(PlaceRequest.RequestType.BOARD,
+                server.getBoard(), server.getSequence());
+        synchronized (lanes) {
+            resyncing = false;
+            if (closed) {
+                return;
+            }
+            bulkLane.add(new Outbound(board, backlog.incrementAndGet()));
+            lanes.notifyAll();
+        }
+        server.getLog().log(username + " fell " + MAX_BULK_BACKLOG + " updates behind and is sent the board");
+    }
+
+    /**
+     * decide which lane a request goes in
+     *
+     * @param request the request
+     * @return boolean - true for the control lane, false for the bulk lane
+     */
+    private boolean isControl(PlaceRequest<?> request) {
+        switch (request.getType()) {
+            case LOGIN_SUCCESS:
+            case BOARD_CHANGES:
+            case ERROR:
+            case HEARTBEAT:
+            // owners go ahead of the tiles and replies that use their ids
+            case OWNERS:
+                return true;
+            case ACK:
+                // a relay or router completes a placement once it has the
+                // change, so the ACK must not overtake it
+                return !relay && !(request.getData() instanceof PlaceRegion || request.getData() instanceof long[]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The writer thread writes queued requests, the control lane first,
+     * flushing whenever both lanes are empty.  When both are empty it
+     * writes the next block of the board a progressive client is loading.
+     */
+    private void write() {
+        try {
+            while (true) {
+                Outbound next;
+                int[] block = null;
+                synchronized (lanes) {
+                    while (!closed && controlLane.isEmpty() && bulkLane.isEmpty()
+                            && (blocks == null || blocks.isEmpty())) {
+                        lanes.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    next = controlLane.isEmpty() ? bulkLane.poll() : controlLane.poll();
+                    if (next == null) {
+                        block = blocks.poll();
+                    }
+                }
+                if (block != null) {
+                    // not under the lanes' lock, as the server's lock is taken first
+                    next = readBlock(block);
+                }
+                networkOut.writeUnshared(next.request);
+                int waiting = backlog.decrementAndGet();
+                if (waiting == 0) {
+                    networkOut.flush();
+                }
+                SendEvent event = next.event;
+                if (event != null && event.shouldCommit()) {
+                    event.user = username;
+                    event.type = next.request.getType().name();
+                    event.lane = isControl(next.request) ? "control" : "bulk";
+                    event.commit();
+                }
+            }
+        } catch (IOException e) {
+            // the reader notices the client has gone
+            closeLanes();
+        } catch (InterruptedException e) {
+            closeLanes();
+        }
+    }
+
+    /**
+     * stop writing to the client, dropping anything queued
+     */
+    void closeLanes() {
+        synchronized (lanes) {
+            closed = true;
+            backlog.addAndGet(-(controlLane.size() + bulkLane.size()));
+            controlLane.clear();
+            bulkLane.clear();
+            lanes.notifyAll();
+        }
+    }
+
+    /**
+     * disconnect the client, so its reader stops and nothing more is
+     * written; used to evict a client that has stopped answering
+     */
+    void disconnect() {
+        closeLanes();
+        try {
+            // closes the socket, so a blocked read or write fails
+            networkIn.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * check whether the connection has closed
+     *
+     * @return boolean - true once nothing more is written to the client
+     */
+    boolean isClosed() {
+        synchronized (lanes) {
+            return closed;
+        }
+    }
+
+    /**
+     * retrieve when a request was last read from the client
+     *
+     * @return long - the time, in milliseconds
+     */
+    public long getLastHeard(){return lastHeard;}
+
+    /**
+     * retrieve the number of writes waiting on, or in, this client's stream
+     *
+     * @return int - the outbound backlog
+     */
+    public int getOutboundBacklog(){return backlog.get();}
+
+    /**
+     * retrieve the number of bytes sent to the client
+     *
+     * @return long - bytes sent, 0 if not counted
+     */
+    public long getBytesSent(){return counter == null ? 0L : counter.getCount();}
+
+    /**
+     * retrieve the last change sequence number the client saw before
+     * reconnecting
+     *
+     * @return long - the sequence number, -1 if the client is not resuming
+     */
+    public long getResumeFrom(){return resumeFrom;}
+
+    /**
+     * record that the client was sent the changes it missed, so it needs no board
+     *
+     * @param resumed - was the client sent the changes?
+     */
+    void setResumed(boolean resumed){this.resumed = resumed;}
+
+    /**
+     * check whether the client logged in with the relay key
+     *
+     * @return boolean - true for a relay, router or admin
+     */
+    public boolean isRelay(){return relay;}
+
     /**
      * retrieve the Thread's time of creation
      *
@@ -126,4 +640,33 @@ public class ServerThread extends Thread{
      */
     public ObjectInputStream getNetworkIn(){return networkIn;}
 
+    /**
+     * A request queued for the writer thread
+     */
+    private static class Outbound {
+        // the request
+        final PlaceRequest<?> request;
+        // timed from when it was queued; null unless the event is recorded,
+        // so an unrecorded event never leaves the constructor and costs nothing
+        final SendEvent event;
+
+        /**
+         * queue a request
+         *
+         * @param request the request
+         * @param backlog the writes queued for the client, this one included
+         */
+        Outbound(PlaceRequest<?> request, int backlog) {
+            this.request = request;
+            SendEvent event = new SendEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                event.backlog = backlog;
+                this.event = event;
+            } else {
+                this.event = null;
+            }
+        }
+    }
+
 }
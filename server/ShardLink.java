@@ -0,0 +1,377 @@
+package place.server;
+
+import place.PlaceBoard;
+import place.PlaceException;
+import place.PlaceLogin;
+import place.PlaceOwners;
+import place.PlaceTile;
+import place.PlaceTileBatch;
+import place.network.PlaceRequest;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A router's or relay's connection to one shard of a cluster, or to the
+ * server a relay mirrors.  It logs in like any client, with the relay key
+ * if it has one, forwards placements and completes a future with the shard's ACK or
+ * ERROR reply, and applies the tiles the shard broadcasts to the router's
+ * own board, which broadcasts them on to the router's clients.  A relay's
+ * or standby's link also carries on the upstream server's change sequence,
+ * so its clients can resume from the same numbers on either.
+ *
+ * The link's thread only reads from the shard, answering heartbeats
+ * straight away; a second thread applies what was read.  Whatever has
+ * queued up while the last changes were applied is applied together, as
+ * one batch of up to PlaceServer.MAX_BATCH tiles, so the more the shards
+ * place, the fewer times per change the router takes its lock; the
+ * router's server sends the batches on to its clients outside the lock.
+ * Replies are completed in order with the changes, so a client is never
+ * told its placement succeeded before the router has it.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class ShardLink extends Thread {
+    /** queued by the reader once the shard has gone away */
+    private static final PlaceRequest<?> LOST = new PlaceRequest<>(PlaceRequest.RequestType.ERROR, "lost");
+
+    /** the shard's socket */
+    private final Socket socket;
+    /** requests to the shard */
+    private final ObjectOutputStream out;
+    /** replies and broadcasts from the shard */
+    private final ObjectInputStream in;
+    /** the router this link belongs to */
+    private final ShardRouter owner;
+    /** the router's server, which holds the merged board */
+    private final PlaceServer router;
+    /** the upstream's sequence number of the latest change applied */
+    private long upstreamSequence;
+    /** the shard's dictionary of tile owners */
+    private final PlaceOwners owners = new PlaceOwners();
+    /** forwarded requests waiting for a reply, by id */
+    private final Map<Long, CompletableFuture<PlaceRequest<?>>> pending = new ConcurrentHashMap<>();
+    /** the id given to the last forwarded request */
+    private final AtomicLong lastId = new AtomicLong();
+    /** requests read from the shard, waiting to be applied */
+    private final BlockingQueue<PlaceRequest<?>> inbox = new LinkedBlockingQueue<>();
+    /** the shard's changes read but not yet applied to the router's board */
+    private final List<PlaceTile> merged = new ArrayList<>();
+    /** the upstream's sequence number of the last merged change */
+    private long mergedSequence;
+    /** the shard's replies to complete once the merged changes are applied */
+    private final List<PlaceRequest<?>> replies = new ArrayList<>();
+
+    /**
+     * Connect to a shard and copy the tiles it holds onto the router's board.
+     *
+     * @param host the shard's host
+     * @param port the shard's port
+     * @param username the name the router logs in as
+     * @param relayKey the shard's relay key, or null
+     * @param owner the router
+     * @throws PlaceException if the shard cannot be reached, refuses the
+     *                        login or has a board of another size
+     */
+    ShardLink(String host, int port, String username, String relayKey, ShardRouter owner) throws PlaceException {
+        super("shard-" + host + ":" + port);
+        setDaemon(true);
+        this.owner = owner;
+        this.router = owner.getServer();
+        try {
+            this.socket = new Socket(host, port);
+            this.socket.setTcpNoDelay(true);
+            this.out = new ObjectOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+            this.out.writeUnshared(new PlaceRequest<>(PlaceRequest.RequestType.LOGIN,
+                    new PlaceLogin(username, null, relayKey)));
+            this.out.flush();
+            this.in = new ObjectInputStream(this.socket.getInputStream());
+            PlaceRequest<?> login = (PlaceRequest<?>) this.in.readUnshared();
+            if (login.getType() != PlaceRequest.RequestType.LOGIN_SUCCESS) {
+                this.socket.close();
+                throw new PlaceException("Shard " + host + ":" + port + " refused the router");
+            }
+            this.owners.putAll((PlaceOwners) login.getData());
+            // changes may be broadcast before the board is sent
+            while (!handle((PlaceRequest<?>) this.in.readUnshared())) {
+                // applied
+            }
+            flush();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new PlaceException(e);
+        }
+    }
+
+    /**
+     * Forward a request to the shard.
+     *
+     * @param request the request; its id is replaced
+     * @return completes with the shard's ACK, or exceptionally with its ERROR,
+     *         if the link is lost or after ShardRouter.SHARD_TIMEOUT_MILLIS
+     */
+    CompletableFuture<PlaceRequest<?>> forward(PlaceRequest<?> request) {
+        long id = this.lastId.incrementAndGet();
+        CompletableFuture<PlaceRequest<?>> reply = new CompletableFuture<>();
+        this.pending.put(id, reply);
+        // a reply that never comes is not waited for forever
+        reply.orTimeout(ShardRouter.SHARD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .whenComplete((ack, e) -> this.pending.remove(id));
+        try {
+            synchronized (this.out) {
+                this.out.writeUnshared(new PlaceRequest<>(request.getType(), request.getData(), id));
+                this.out.flush();
+            }
+        } catch (IOException e) {
+            fail(new PlaceException(e));
+        }
+        return reply;
+    }
+
+    /**
+     * Look up the name of the owner of a tile the shard sent, and drop the
+     * shard's id, which means nothing to the router's clients.
+     *
+     * @param tile the tile
+     * @return the tile
+     */
+    PlaceTile resolve(PlaceTile tile) {
+        String name = tile.getOwner() != null ? tile.getOwner() : this.owners.getName(tile.getOwnerId());
+        tile.setOwner(name == null ? "" : name);
+        return tile;
+    }
+
+    /**
+     * Read the shard's broadcasts and replies until the shard goes away,
+     * queueing them for the applying thread.
+     */
+    @Override
+    public void run() {
+        Thread applier = new Thread(this::apply, getName() + "-apply");
+        applier.setDaemon(true);
+        applier.start();
+        try {
+            while (true) {
+                PlaceRequest<?> request = (PlaceRequest<?>) this.in.readUnshared();
+                if (request.getType() == PlaceRequest.RequestType.HEARTBEAT) {
+                    // the upstream disconnects a router or relay that stops
+                    // answering, however far behind the applying thread is
+                    synchronized (this.out) {
+                        this.out.writeUnshared(request);
+                        this.out.flush();
+                    }
+                } else {
+                    this.inbox.add(request);
+                }
+            }
+        } catch (SocketException | EOFException e) {
+            this.router.getLog().log("Lost shard " + getName());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+        this.inbox.add(LOST);
+    }
+
+    /**
+     * Apply the shard's broadcasts and complete the replies to forwarded
+     * requests, each time taking everything queued, until the shard goes
+     * away.
+     */
+    private void apply() {
+        List<PlaceRequest<?>> queued = new ArrayList<>();
+        try {
+            while (true) {
+                queued.add(this.inbox.take());
+                this.inbox.drainTo(queued);
+                for (PlaceRequest<?> request : queued) {
+                    if (request == LOST) {
+                        flush();
+                        break;
+                    }
+                    handle(request);
+                }
+                if (queued.get(queued.size() - 1) == LOST) {
+                    break;
+                }
+                queued.clear();
+                flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the reader stops too, if it has not already
+        close();
+        fail(new PlaceException("Lost shard " + getName()));
+        this.owner.linkLost(this);
+    }
+
+    /**
+     * Handle one request from the shard.
+     *
+     * @param request the request
+     * @return true if it was the shard's board, which has been copied
+     * @throws IOException if the router's clients cannot be written to
+     */
+    private boolean handle(PlaceRequest<?> request) throws IOException {
+        switch (request.getType()) {
+            case BOARD:
+                PlaceBoard board = (PlaceBoard) request.getData();
+                if (board.DIM != this.router.getBoard().DIM) {
+                    throw new IOException(getName() + " has a board of dimension " + board.DIM);
+                }
+                flush();
+                List<PlaceTile> painted = painted(board);
+                for (int from = 0; from < painted.size(); from += PlaceServer.MAX_BATCH) {
+                    this.router.changeTiles(new PlaceTileBatch(
+                            painted.subList(from, Math.min(painted.size(), from + PlaceServer.MAX_BATCH)), false));
+                }
+                // changes broadcast just before the board may be newer
+                mirrorSequence(Math.max(this.upstreamSequence, request.getId()), 0);
+                return true;
+            case OWNERS:
+                this.owners.putAll((PlaceOwners) request.getData());
+                break;
+            case TILE_CHANGED:
+                merge(resolve((PlaceTile) request.getData()), request.getId());
+                break;
+            case TILES_CHANGED:
+                List<PlaceTile> tiles = ((PlaceTileBatch) request.getData()).getTiles();
+                // numbered with the last of them
+                long first = request.getId() - tiles.size();
+                for (int i = 0; i < tiles.size(); ++i) {
+                    merge(resolve(tiles.get(i)), first + i + 1);
+                }
+                break;
+            case ACK:
+            case ERROR:
+                // completed once the changes before it are applied
+                this.replies.add(request);
+                break;
+            case HEARTBEAT:
+                // the upstream disconnects a router or relay that stops answering
+                synchronized (this.out) {
+                    this.out.writeUnshared(request);
+                    this.out.flush();
+                }
+                break;
+            default:
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Add one of the shard's changes to the next batch applied to the
+     * router's board, applying the batch once it is full.
+     *
+     * @param tile the changed tile
+     * @param sequence the upstream's number for the change
+     * @throws IOException if the router's clients cannot be written to
+     */
+    private void merge(PlaceTile tile, long sequence) throws IOException {
+        this.merged.add(tile);
+        this.mergedSequence = sequence;
+        if (this.merged.size() == PlaceServer.MAX_BATCH) {
+            flush();
+        }
+    }
+
+    /**
+     * Apply the merged changes to the router's board, which broadcasts them
+     * to its clients as one TILES_CHANGED, or one TILE_CHANGED if there is
+     * just one, then complete the replies read since the last flush.
+     *
+     * @throws IOException if the router's clients cannot be written to
+     */
+    private void flush() throws IOException {
+        if (!this.merged.isEmpty()) {
+            mirrorSequence(this.mergedSequence, this.merged.size());
+            if (this.merged.size() == 1) {
+                this.router.changeTile(this.merged.get(0));
+            } else {
+                this.router.changeTiles(new PlaceTileBatch(new ArrayList<>(this.merged), false));
+            }
+            this.merged.clear();
+        }
+        for (PlaceRequest<?> reply : this.replies) {
+            CompletableFuture<PlaceRequest<?>> waiting = this.pending.remove(reply.getId());
+            if (waiting == null) {
+                continue;
+            }
+            if (reply.getType() == PlaceRequest.RequestType.ACK) {
+                waiting.complete(reply);
+            } else {
+                waiting.completeExceptionally(new PlaceException(String.valueOf(reply.getData())));
+            }
+        }
+        this.replies.clear();
+    }
+
+    /**
+     * Number the router's next changes as the upstream numbered them, if
+     * this link is a relay's or standby's.  A cluster's router numbers its
+     * own, since its shards each have a sequence.
+     *
+     * @param sequence the upstream's number for the last of the changes
+     * @param count how many changes are about to be applied
+     */
+    private void mirrorSequence(long sequence, int count) {
+        if (this.owner.isMirror()) {
+            this.router.setSequence(sequence - count);
+            this.upstreamSequence = sequence;
+        }
+    }
+
+    /**
+     * Collect the tiles that have been set on a board.
+     *
+     * @param board the board
+     * @return the painted tiles
+     */
+    private static List<PlaceTile> painted(PlaceBoard board) {
+        List<PlaceTile> tiles = new ArrayList<>();
+        board.forEachPainted(tiles::add);
+        return tiles;
+    }
+
+    /**
+     * Fail every forwarded request still waiting for a reply.
+     *
+     * @param cause why they failed
+     */
+    private void fail(PlaceException cause) {
+        for (Long id : this.pending.keySet()) {
+            CompletableFuture<PlaceRequest<?>> reply = this.pending.remove(id);
+            if (reply != null) {
+                reply.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Close the connection to the shard.
+     */
+    void close() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package place.server;
+
+import place.PlaceException;
+import place.PlaceRegion;
+import place.PlaceTile;
+import place.PlaceTileBatch;
+import place.network.PlaceRequest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The front end of a cluster of Place servers, run on the command line as:
+ *
+ * $ java ShardRouter port DIM shardHost:shardPort...
+ *
+ * The board is split into horizontal stripes of rows, one per shard, each
+ * shard being a PlaceServer that only accepts placements in its own stripe
+ * (see {@link PlaceShard}).  Clients connect to the router exactly as they
+ * would to a single server.  The router forwards each CHANGE_TILE to the
+ * shard that owns the tile, so placements are validated and applied by the
+ * shards in parallel, and merges the shards' TILE_CHANGED broadcasts into
+ * its own copy of the board, which it serves and broadcasts to its clients.
+ * A client's placement is forwarded without its thread waiting for the
+ * shard, and answered when the shard replies.
+ *
+ * The router copies every change onto its own board, under its lock, so
+ * it can send the board to clients that log in, but that is all it holds
+ * the lock for: each shard's broadcasts are merged into batches when they
+ * queue up (see ShardLink), and the batches are sent on to the router's
+ * clients by the server's fan-out threads (see Broadcaster), not under the
+ * lock.  What the router does for each change in turn is small and does
+ * not grow with its clients, so adding shards adds to the placements a
+ * cluster can validate and apply.
+ *
+ * The router logs in to the shards with the key in the PLACE_RELAY_KEY
+ * environment variable, which the shards must have been started with, and
+ * accepts relays and admins logging in with the same key, so batches and
+ * regions can be sent through it.  A CHANGE_TILES batch is split between
+ * the shards.  An atomic batch can only be applied by one shard, so an
+ * atomic batch spanning several stripes is rejected.  A CHANGE_REGION is
+ * split into the rows of each stripe.
+ *
+ * A router in front of a single server mirrors it exactly, carrying on its
+ * change sequence; that is how PlaceRelay and PlaceStandby work.  A standby
+ * router is promoted when its link is lost: the server stops forwarding
+ * and applies placements to its own copy of the board.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+public class ShardRouter implements Closeable {
+    /** how long a client waits for a shard to reply before its placement fails */
+    public static final long SHARD_TIMEOUT_MILLIS = 10_000;
+    /** how long the router waits for a shard to start listening */
+    public static final long STARTUP_TIMEOUT_MILLIS = 30_000;
+
+    /** the router's server, holding the merged board */
+    private final PlaceServer server;
+    /** the connections to the shards, in stripe order */
+    private final ShardLink[] links;
+    /** the key the router logs in to the shards with, or null */
+    private final String relayKey;
+    /** does the router take over when its upstream server is lost? */
+    private final boolean standby;
+    /** has a link been lost? */
+    private volatile boolean lost;
+
+    /**
+     * Connect to the shards and start routing the server's placements.
+     * Shards that are not listening yet are retried for up to
+     * {@value #STARTUP_TIMEOUT_MILLIS} milliseconds, so a cluster's
+     * processes can be started in any order.
+     *
+     * @param server the router's server
+     * @param shards the shards' addresses, in stripe order
+     * @throws PlaceException if a shard cannot be reached
+     */
+    public ShardRouter(PlaceServer server, List<InetSocketAddress> shards) throws PlaceException {
+        this(server, shards, null);
+    }
+
+    /**
+     * Connect to the shards, logging in with their relay key, and start
+     * routing the server's placements.
+     *
+     * @param server the router's server
+     * @param shards the shards' addresses, in stripe order
+     * @param relayKey the shards' relay key, or null
+     * @throws PlaceException if a shard cannot be reached
+     */
+    public ShardRouter(PlaceServer server, List<InetSocketAddress> shards, String relayKey) throws PlaceException {
+        this(server, shards, relayKey, false);
+    }
+
+    /**
+     * Connect to the shards, logging in with their relay key, and start
+     * routing the server's placements.
+     *
+     * @param server the router's server
+     * @param shards the shards' addresses, in stripe order
+     * @param relayKey the shards' relay key, or null
+     * @param standby should the server be promoted if a shard is lost?
+     * @throws PlaceException if a shard cannot be reached
+     */
+    public ShardRouter(PlaceServer server, List<InetSocketAddress> shards, String relayKey, boolean standby) throws PlaceException {
+        this.server = server;
+        this.relayKey = relayKey;
+        this.standby = standby;
+        this.links = new ShardLink[shards.size()];
+        String name = "router-" + UUID.randomUUID();
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+        try {
+            for (int i = 0; i < this.links.length; ++i) {
+                this.links[i] = connect(shards.get(i), name, deadline);
+                this.links[i].start();
+            }
+        } catch (PlaceException e) {
+            close();
+            throw e;
+        }
+        server.setRouter(this);
+        // a link lost before routing began could not promote the standby
+        if (this.standby && this.lost) {
+            promote();
+        }
+    }
+
+    /**
+     * Connect to a shard, retrying until it is listening.
+     *
+     * @param shard the shard's address
+     * @param name the name the router logs in as
+     * @param deadline when to give up, in milliseconds
+     * @return the connection
+     * @throws PlaceException if the shard cannot be reached by the deadline
+     */
+    private ShardLink connect(InetSocketAddress shard, String name, long deadline) throws PlaceException {
+        while (true) {
+            try {
+                return new ShardLink(shard.getHostString(), shard.getPort(), name, this.relayKey, this);
+            } catch (PlaceException e) {
+                if (!(e.getCause() instanceof ConnectException) || System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                throw new PlaceException(e);
+            }
+        }
+    }
+
+    /**
+     * Get the router's server.
+     *
+     * @return the server holding the merged board
+     */
+    PlaceServer getServer() {
+        return this.server;
+    }
+
+    /**
+     * Does the router mirror a single server, rather than merge the stripes
+     * of a cluster?
+     *
+     * @return true if there is one shard, which owns the whole board
+     */
+    boolean isMirror() {
+        return this.links.length == 1;
+    }
+
+    /**
+     * Called by a link once its shard has gone away.  A standby is promoted;
+     * otherwise placements for that shard fail from now on.
+     *
+     * @param link the lost link
+     */
+    void linkLost(ShardLink link) {
+        this.lost = true;
+        if (this.standby) {
+            promote();
+        }
+    }
+
+    /**
+     * Take over from the upstream server: stop forwarding placements and
+     * apply them to the server's own board, numbering the changes on from
+     * the last one mirrored, so clients that fail over resume with just the
+     * changes they missed.  Does nothing if already promoted.
+     */
+    public synchronized void promote() {
+        if (this.server.getRouter() != this) {
+            return;
+        }
+        long start = System.nanoTime();
+        this.server.setRouter(null);
+        close();
+        this.server.getLog().log("Promoted to primary at change " + this.server.getSequence()
+                + " in " + (System.nanoTime() - start) / 1000 + "us");
+    }
+
+    /**
+     * The stripe of rows one shard of a cluster owns.
+     *
+     * @param dim the square dimension of the board
+     * @param index the shard's index
+     * @param count the number of shards
+     * @return the shard's region
+     */
+    public static PlaceRegion stripe(int dim, int index, int count) {
+        int first = firstRow(dim, index, count);
+        return new PlaceRegion(first, 0, firstRow(dim, index + 1, count) - first, dim, false, false);
+    }
+
+    /**
+     * The first row of a shard's stripe.
+     *
+     * @param dim the square dimension of the board
+     * @param index the shard's index
+     * @param count the number of shards
+     * @return the row
+     */
+    private static int firstRow(int dim, int index, int count) {
+        return (int) ((long) dim * index / count);
+    }
+
+    /**
+     * Find the shard owning a row.
+     *
+     * @param row the row
+     * @return the shard's index
+     */
+    private int shardFor(int row) {
+        int shard = (int) (((long) row * this.links.length) / this.server.getBoard().DIM);
+        // rounding can put the row one stripe early
+        while (shard + 1 < this.links.length
+                && firstRow(this.server.getBoard().DIM, shard + 1, this.links.length) <= row) {
+            shard++;
+        }
+        return shard;
+    }
+
+    /**
+     * Have the owning shard place a tile, without waiting for its reply, so
+     * the client's thread goes on reading while the shard places it.
+     *
+     * @param tile the tile; given the shard's time if it is placed
+     * @return completes with true once the router has the tile, or false if
+     *         it is invalid or the shard refused, failed or took too long
+     */
+    public CompletableFuture<Boolean> changeTile(PlaceTile tile) {
+        if (!this.server.getBoard().isValid(tile)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return this.links[shardFor(tile.getRow())]
+                .forward(new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILE, tile))
+                .handle((reply, e) -> {
+                    if (e != null) {
+                        return false;
+                    }
+                    tile.setTime(((PlaceTile) reply.getData()).getTime());
+                    return true;
+                });
+    }
+
+    /**
+     * Have the owning shards place a batch of tiles, waiting for their replies.
+     *
+     * @param batch the tiles
+     * @return a bit set for each tile of the batch that was applied; empty if
+     *         the batch is atomic and any tile was invalid or the batch spans
+     *         several shards
+     */
+    public BitSet changeTiles(PlaceTileBatch batch) {
+        List<PlaceTile> tiles = batch.getTiles();
+        List<List<Integer>> indexes = new ArrayList<>();
+        List<List<PlaceTile>> parts = new ArrayList<>();
+        for (int i = 0; i < this.links.length; ++i) {
+            indexes.add(new ArrayList<>());
+            parts.add(new ArrayList<>());
+        }
+        int shards = 0;
+        for (int i = 0; i < tiles.size(); ++i) {
+            if (!this.server.getBoard().isValid(tiles.get(i))) {
+                if (batch.isAtomic()) {
+                    return new BitSet();
+                }
+                continue;
+            }
+            int shard = shardFor(tiles.get(i).getRow());
+            if (parts.get(shard).isEmpty()) {
+                shards++;
+            }
+            indexes.get(shard).add(i);
+            parts.get(shard).add(tiles.get(i));
+        }
+        if (batch.isAtomic() && shards > 1) {
+            return new BitSet();
+        }
+        List<CompletableFuture<PlaceRequest<?>>> replies = new ArrayList<>();
+        for (int shard = 0; shard < this.links.length; ++shard) {
+            replies.add(parts.get(shard).isEmpty() ? null : this.links[shard].forward(
+                    new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_TILES,
+                            new PlaceTileBatch(parts.get(shard), batch.isAtomic()))));
+        }
+        BitSet applied = new BitSet(tiles.size());
+        for (int shard = 0; shard < this.links.length; ++shard) {
+            PlaceRequest<?> reply = replies.get(shard) == null ? null : await(replies.get(shard));
+            if (reply != null) {
+                BitSet part = (BitSet) reply.getData();
+                for (int i = part.nextSetBit(0); i >= 0; i = part.nextSetBit(i + 1)) {
+                    applied.set(indexes.get(shard).get(i));
+                }
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Have the owning shards paint a region, each its own rows of it,
+     * waiting for their replies.
+     *
+     * @param region the colors, with the single owner of every tile
+     * @return the number of tiles the shards changed, or -1 if the region
+     *         does not have one owner, lacks colors or lies outside the board
+     */
+    public int changeRegion(PlaceRegion region) {
+        int dim = this.server.getBoard().DIM;
+        if (region.getOwners().size() != 1 || !region.isLoaded() || !region.isWithin(dim)) {
+            return -1;
+        }
+        List<CompletableFuture<PlaceRequest<?>>> replies = new ArrayList<>();
+        for (int shard = 0; shard < this.links.length; ++shard) {
+            int first = Math.max(region.getRow(), firstRow(dim, shard, this.links.length));
+            int end = Math.min(region.getRow() + region.getHeight(), firstRow(dim, shard + 1, this.links.length));
+            if (first < end) {
+                PlaceRegion part = this.links.length == 1 ? region
+                        : region.crop(new PlaceRegion(first, region.getCol(), end - first, region.getWidth(), false, false));
+                replies.add(this.links[shard].forward(new PlaceRequest<>(PlaceRequest.RequestType.CHANGE_REGION, part)));
+            }
+        }
+        int changed = 0;
+        for (CompletableFuture<PlaceRequest<?>> reply : replies) {
+            PlaceRequest<?> ack = await(reply);
+            if (ack != null) {
+                changed += (Integer) ack.getData();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Wait for a shard's reply.
+     *
+     * @param reply the reply, which times out after SHARD_TIMEOUT_MILLIS
+     * @return the ACK, or null if the shard refused, failed or took too long
+     */
+    private static PlaceRequest<?> await(CompletableFuture<PlaceRequest<?>> reply) {
+        try {
+            return reply.get();
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Close the connections to the shards.
+     */
+    @Override
+    public void close() {
+        for (ShardLink link : this.links) {
+            if (link != null) {
+                link.close();
+            }
+        }
+    }
+
+    /**
+     * Parse a host:port address.
+     *
+     * @param address the address
+     * @return the socket address
+     */
+    static InetSocketAddress address(String address) {
+        int colon = address.lastIndexOf(':');
+        return InetSocketAddress.createUnresolved(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    /**
+     * Start a router in front of running shards.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java ShardRouter port DIM shardHost:shardPort...");
+            System.exit(1);
+        }
+        String relayKey = System.getenv(PlaceServer.RELAY_KEY_VARIABLE);
+        if (relayKey == null) {
+            System.out.println(PlaceServer.RELAY_KEY_VARIABLE + " must be set to the shards' relay key");
+            System.exit(1);
+        }
+        List<InetSocketAddress> shards = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            shards.add(address(args[i]));
+        }
+        try (PlaceServer server = new PlaceServer(Integer.parseInt(args[0]), Integer.parseInt(args[1]))) {
+            ShardRouter router = new ShardRouter(server, shards, relayKey);
+            try {
+                server.setRelayKey(relayKey);
+                server.serve();
+            } finally {
+                router.close();
+            }
+        } catch (PlaceException e) {
+            System.err.println("Failed to start router!");
+            System.out.println(e.getMessage());
+        } catch (IOException | ClassNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package place.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Space-Saving streaming top-K algorithm.  It keeps at most
+ * {@code capacity} counters; when a new key arrives and every counter is in
+ * use, the smallest counter is handed to the new key, which inherits its
+ * count as possible overestimate.  Any key whose true weight is more than
+ * 1/capacity of the total is guaranteed to be tracked.
+ *
+ * The counters are kept in a binary min-heap, each knowing its place in
+ * it, so the smallest is always at the root and a count changes in
+ * O(log capacity).  Scaling every count by the same factor keeps their
+ * order, so the heap stays valid.
+ *
+ * Not thread safe.
+ *
+ * @param <K> the key type
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class SpaceSaving<K> {
+    /** the tracked keys' counters */
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    /** the counters as a min-heap on their counts */
+    private final Counter<K>[] heap;
+    /** the number of counters in use */
+    private int size;
+
+    /**
+     * Create an empty summary.
+     *
+     * @param capacity the most keys tracked at once
+     */
+    @SuppressWarnings("unchecked")
+    SpaceSaving(int capacity) {
+        this.heap = (Counter<K>[]) new Counter<?>[capacity];
+    }
+
+    /**
+     * Count weight for a key, in O(log capacity).
+     *
+     * @param key the key
+     * @param weight the weight to add
+     */
+    void add(K key, double weight) {
+        Counter<K> counter = this.counters.get(key);
+        if (counter == null) {
+            if (this.size < this.heap.length) {
+                counter = new Counter<>();
+                counter.index = this.size;
+                this.heap[this.size++] = counter;
+            } else {
+                // the new key inherits the smallest count
+                counter = this.heap[0];
+                this.counters.remove(counter.key);
+            }
+            counter.key = key;
+            this.counters.put(key, counter);
+        }
+        counter.count += weight;
+        siftUp(counter.index);
+        siftDown(counter.index);
+    }
+
+    /**
+     * Move a counter towards the root while it is smaller than its parent.
+     *
+     * @param index the counter's place in the heap
+     */
+    private void siftUp(int index) {
+        Counter<K> counter = this.heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (this.heap[parent].count <= counter.count) {
+                break;
+            }
+            place(this.heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    /**
+     * Move a counter away from the root while it is larger than a child.
+     *
+     * @param index the counter's place in the heap
+     */
+    private void siftDown(int index) {
+        Counter<K> counter = this.heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= this.size) {
+                break;
+            }
+            if (child + 1 < this.size && this.heap[child + 1].count < this.heap[child].count) {
+                child++;
+            }
+            if (counter.count <= this.heap[child].count) {
+                break;
+            }
+            place(this.heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    /**
+     * Put a counter at a place in the heap.
+     *
+     * @param counter the counter
+     * @param index the place
+     */
+    private void place(Counter<K> counter, int index) {
+        this.heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * Multiply every counter by the same factor, which must be positive.
+     *
+     * @param factor the factor
+     */
+    void scale(double factor) {
+        for (int i = 0; i < this.size; ++i) {
+            this.heap[i].count *= factor;
+        }
+    }
+
+    /**
+     * Get the heaviest keys, heaviest first.
+     *
+     * @param k the most keys to return
+     * @return the keys with their counted weights
+     */
+    List<Map.Entry<K, Double>> top(int k) {
+        List<Map.Entry<K, Double>> entries = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; ++i) {
+            entries.add(Map.entry(this.heap[i].key, this.heap[i].count));
+        }
+        entries.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    /**
+     * A tracked key's count and its place in the heap
+     *
+     * @param <K> the key type
+     */
+    private static class Counter<K> {
+        /** the key counted, which changes when the counter is taken over */
+        K key;
+        /** the weight counted */
+        double count;
+        /** where the counter is in the heap */
+        int index;
+    }
+}
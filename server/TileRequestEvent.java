@@ -0,0 +1,34 @@
+package place.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a CHANGE_TILE request, from it being received
+ * to the client being answered.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+@Name("place.TileRequest")
+@Label("Tile Request")
+@Category({"Place", "Server"})
+@Description("Handling a client's CHANGE_TILE request")
+public class TileRequestEvent extends jdk.jfr.Event {
+    @Label("User")
+    String user;
+
+    @Label("Row")
+    int row;
+
+    @Label("Column")
+    int col;
+
+    @Label("Color")
+    int color;
+
+    @Label("Accepted")
+    boolean accepted;
+}
@@ -0,0 +1,115 @@
+package place.server;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel: timeouts for any number of items, kept in a ring
+ * of slots one tick wide, so scheduling a timeout and expiring a tick's
+ * worth of them costs the same however many are waiting.  A deadline more
+ * than a turn of the wheel away goes in the slot it hashes to and is passed
+ * over until the wheel comes round to its tick.
+ *
+ * Timeouts cannot be cancelled; whoever handles an expired item decides
+ * whether it still matters, and schedules it again if it does.
+ *
+ * Not thread safe.
+ *
+ * @author Frank Abbey @fra1489
+ * @author Will Andrews @wta9748
+ */
+class TimingWheel<T> {
+    /** the width of a slot, in milliseconds */
+    private final long tickMillis;
+    /** the slots, the items due at tick t in t % slots.length */
+    private final ArrayDeque<Timeout<T>>[] slots;
+    /** the last tick expired */
+    private long tick;
+    /** how many items are waiting */
+    private int size;
+
+    /**
+     * Create an empty wheel.
+     *
+     * @param tickMillis the width of a slot, in milliseconds
+     * @param slots how many slots make up a turn of the wheel
+     * @param now the current time, in milliseconds
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long tickMillis, int slots, long now) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayDeque[slots];
+        for (int i = 0; i < slots; ++i) {
+            this.slots[i] = new ArrayDeque<>();
+        }
+        this.tick = now / tickMillis;
+    }
+
+    /**
+     * Schedule an item to expire at a deadline, or on the next tick if the
+     * deadline has passed.
+     *
+     * @param item the item
+     * @param deadline when it expires, in milliseconds
+     */
+    void schedule(T item, long deadline) {
+        long due = Math.max(deadline / this.tickMillis, this.tick + 1);
+        this.slots[(int) (due % this.slots.length)].add(new Timeout<>(item, due));
+        this.size++;
+    }
+
+    /**
+     * Expire every item due by a time, in deadline order to within a tick.
+     * The handler may schedule items again.
+     *
+     * @param now the current time, in milliseconds
+     * @param expired handles each expired item
+     */
+    void advance(long now, Consumer<T> expired) {
+        long until = now / this.tickMillis;
+        while (this.tick < until) {
+            this.tick++;
+            ArrayDeque<Timeout<T>> slot = this.slots[(int) (this.tick % this.slots.length)];
+            // items the handler schedules are added behind these
+            for (int n = slot.size(); n > 0; --n) {
+                Timeout<T> timeout = slot.poll();
+                if (timeout.due <= this.tick) {
+                    this.size--;
+                    expired.accept(timeout.item);
+                } else {
+                    slot.add(timeout);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get how many items are waiting.
+     *
+     * @return the count
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * An item and the tick it is due at
+     */
+    private static class Timeout<T> {
+        /** the item */
+        final T item;
+        /** the tick it expires at */
+        final long due;
+
+        /**
+         * Create a timeout.
+         *
+         * @param item the item
+         * @param due the tick it expires at
+         */
+        Timeout(T item, long due) {
+            this.item = item;
+            this.due = due;
+        }
+    }
+}